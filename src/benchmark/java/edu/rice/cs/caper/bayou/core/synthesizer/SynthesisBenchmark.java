@@ -0,0 +1,80 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import com.google.googlejavaformat.java.Formatter;
+import com.google.googlejavaformat.java.FormatterException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the stages of the synthesis hot path on the fixed corpus of SynthesisCorpus, without a model server.
+ * Run with "-prof gc" (see run.sh) to get the allocation rate of each stage as well.
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SynthesisBenchmark {
+
+    @Benchmark
+    public CompilationUnit parse(SynthesisCorpus corpus) throws ParseException {
+        Parser parser = new Parser(corpus.source, corpus.environment);
+        parser.parse();
+        return parser.getCompilationUnit();
+    }
+
+    @Benchmark
+    public String extractEvidence(SynthesisCorpus corpus) {
+        return new EvidenceExtractor().execute(corpus.parser);
+    }
+
+    @Benchmark
+    public List<String> synthesizeConditionalProgramGenerator(SynthesisCorpus corpus) {
+        return new Synthesizer(Synthesizer.Mode.CONDITIONAL_PROGRAM_GENERATOR).execute(corpus.parser, corpus.astJson);
+    }
+
+    @Benchmark
+    public List<String> synthesizeCombinatorialEnumerator(SynthesisCorpus corpus) {
+        return new Synthesizer(Synthesizer.Mode.COMBINATORIAL_ENUMERATOR).execute(corpus.parser, corpus.astJson);
+    }
+
+    /**
+     * Eliminates dead code in the synthesized bodies. Each body is copied first since elimination deletes statements,
+     * so the time includes that of copying the body.
+     */
+    @Benchmark
+    public void eliminateDeadCode(SynthesisCorpus corpus, Blackhole blackhole) {
+        for (int i = 0; i < corpus.synthesizedBodies.size(); i++) {
+            Block body = corpus.synthesizedBodies.get(i);
+            Block copy = (Block) ASTNode.copySubtree(body.getAST(), body);
+            blackhole.consume(new DCEOptimizor().apply(copy, corpus.sketches.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void format(SynthesisCorpus corpus, Blackhole blackhole) throws FormatterException {
+        for (String program : corpus.unformattedPrograms)
+            blackhole.consume(new Formatter().formatSource(program));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import edu.rice.cs.caper.bayou.core.dsl.*;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jface.text.Document;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A draft program of the fixed corpus together with the model ASTs recorded for it, and the intermediate results of
+ * synthesizing it that the benchmarks of the later stages start from.
+ *
+ * The corpus is the synthesizer test corpus (src/test/resources/synthesizer), where each TestX.java has its recorded
+ * model output in TestX.json, so no model server is needed. The corpus directory and the classpath can be overridden
+ * with the system properties bayou.benchmark.corpus and bayou.benchmark.classpath.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark) // not the synthesizer's Scope
+public class SynthesisCorpus {
+
+    @Param({ "TestIO1", "TestIO2", "TestIO_exception", "TestIO_not", "TestUtil", "TestBluetooth", "TestCamera",
+            "TestDialog", "TestSecurity", "TestSpeech", "TestWifi" })
+    public String program;
+
+    /**
+     * The source of the draft program
+     */
+    String source;
+
+    /**
+     * The recorded model output for the draft program, as sent by the model server
+     */
+    String astJson;
+
+    ParserEnvironment environment;
+
+    /**
+     * The draft program, already parsed
+     */
+    Parser parser;
+
+    /**
+     * The synthesized programs before formatting, one per sketch that could be synthesized
+     */
+    final List<String> unformattedPrograms = new ArrayList<>();
+
+    /**
+     * The bodies of the methods with synthesized code and their sketches, as inputs to dead code elimination
+     */
+    final List<Block> synthesizedBodies = new ArrayList<>();
+    final List<DSubTree> sketches = new ArrayList<>();
+
+    private static class JSONInput {
+        DSubTree ast;
+    }
+
+    private static class JSONInputWrapper {
+        List<JSONInput> asts;
+    }
+
+    @Setup
+    public void setup() throws IOException, ParseException {
+        String corpus = System.getProperty("bayou.benchmark.corpus");
+        if (corpus == null)
+            corpus = new File(getSrcFolder(), "test" + File.separator + "resources" + File.separator + "synthesizer")
+                    .getPath();
+        String classpath = System.getProperty("bayou.benchmark.classpath");
+        if (classpath == null)
+            classpath = getDefaultClasspath(getSrcFolder());
+
+        source = new String(Files.readAllBytes(Paths.get(corpus, program + ".java")));
+        astJson = new String(Files.readAllBytes(Paths.get(corpus, program + ".json")));
+        environment = ParserEnvironment.forClasspath(classpath);
+        parser = new Parser(source, environment);
+        parser.parse();
+
+        int evidenceMethod = findEvidenceMethod(parser.getCompilationUnit());
+        ClassResolver classResolver = ClassResolver.forClasspath(environment.getClasspathURLs());
+        EnumerationMemo enumerationMemo = new EnumerationMemo();
+        List<DSubTree> asts = readSketches(astJson);
+        List<DSubTree> freshAsts = readSketches(astJson); // synthesis cleans up the sketches it is given
+        for (int i = 0; i < asts.size(); i++) {
+            Visitor visitor = new Visitor(asts.get(i), new Document(source), parser.getCompilationUnit(),
+                    Synthesizer.Mode.CONDITIONAL_PROGRAM_GENERATOR, ApiTypeIndex.getShared(), classResolver,
+                    enumerationMemo);
+            try {
+                parser.getCompilationUnit().accept(visitor);
+            } catch (SynthesisException e) {
+                continue;
+            }
+            if (visitor.synthesizedProgram == null)
+                continue;
+            unformattedPrograms.add(visitor.synthesizedProgram);
+
+            Parser synthesized = new Parser(visitor.synthesizedProgram, environment);
+            synthesized.parse();
+            synthesizedBodies.add(getMethods(synthesized.getCompilationUnit())[evidenceMethod].getBody());
+            sketches.add(freshAsts.get(i));
+        }
+        if (unformattedPrograms.isEmpty())
+            throw new IllegalStateException("no sketch of " + program + " could be synthesized");
+    }
+
+    /* the src folder of the project, assuming that the benchmarks are run from tool_files/maven_3_3_9/benchmark */
+    private static File getSrcFolder() {
+        File projRoot = new File(System.getProperty("user.dir")).getParentFile().getParentFile().getParentFile();
+        return new File(projRoot, "src");
+    }
+
+    private static String getDefaultClasspath(File srcFolder) {
+        File artifactsFolder = new File(srcFolder, "main" + File.separator + "resources" + File.separator +
+                "artifacts");
+        File classesFolder = new File(artifactsFolder, "classes");
+        File androidJar = new File(artifactsFolder, "jar" + File.separator + "android.jar");
+        return classesFolder.getAbsolutePath() + File.pathSeparator + androidJar.getAbsolutePath();
+    }
+
+    static List<DSubTree> readSketches(String astJson) {
+        RuntimeTypeAdapterFactory<DASTNode> nodeAdapter = RuntimeTypeAdapterFactory.of(DASTNode.class, "node")
+                .registerSubtype(DAPICall.class)
+                .registerSubtype(DBranch.class)
+                .registerSubtype(DExcept.class)
+                .registerSubtype(DLoop.class)
+                .registerSubtype(DSubTree.class);
+        Gson gson = new GsonBuilder().serializeNulls()
+                .registerTypeAdapterFactory(nodeAdapter)
+                .create();
+        List<DSubTree> sketches = new ArrayList<>();
+        for (JSONInput input : gson.fromJson(astJson, JSONInputWrapper.class).asts)
+            sketches.add(input.ast);
+        return sketches;
+    }
+
+    private static MethodDeclaration[] getMethods(CompilationUnit cu) {
+        return ((TypeDeclaration) cu.types().get(0)).getMethods();
+    }
+
+    /* the index of the method that has the evidence block, which is where synthesized code goes */
+    private static int findEvidenceMethod(CompilationUnit cu) {
+        MethodDeclaration[] methods = getMethods(cu);
+        for (int i = 0; i < methods.length; i++)
+            if (methods[i].getBody() != null && methods[i].getBody().toString().contains("Evidence."))
+                return i;
+        throw new IllegalStateException("draft program has no evidence block");
+    }
+}
@@ -16,8 +16,11 @@ limitations under the License.
 package edu.rice.cs.caper.bayou.application.api_synthesis_server;
 
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.servlet.ApiSynthesisHealthCheckServlet;
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.servlet.ApiSynthesisMetricsServlet;
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.servlet.ApiSynthesisResultCacheServlet;
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.servlet.ApiSynthesisResultQualityFeedbackServlet;
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.servlet.ApiSynthesisServlet;
+import edu.rice.cs.caper.bayou.core.synthesizer.ApiTypeIndex;
 import edu.rice.cs.caper.programming.numbers.NatNum32;
 import edu.rice.cs.caper.servlet.ServerIdHttpServlet;
 import org.apache.logging.log4j.LogManager;
@@ -102,6 +105,13 @@ class ApiSynthesisServerRest
 
         _startCalled = true;
 
+        /*
+         * Build (or load from disk) the API type index once so that synthesis requests don't scan the classpath.
+         * Skipped in echo mode because no synthesis takes place.
+         */
+        if(!Configuration.UseSynthesizeEchoMode)
+            ApiTypeIndex.initShared(Configuration.ApiTypeIndexPath);
+
         /*
          * Create and configure the HTTP server that processes non-heartbeat related requests.
          */
@@ -131,7 +141,8 @@ class ApiSynthesisServerRest
             apiSynthServer.setHandler(handler);
 
             // register a servlet for performing apisynthesis
-            handler.addServletWithMapping(ApiSynthesisServlet.class, "/apisynthesis");
+            // async so that the Jetty threads are released while requests are processed on the servlet's own pool
+            handler.addServletWithMapping(ApiSynthesisServlet.class, "/apisynthesis").setAsyncSupported(true);
 
             // register a servlet for collecting user feedback on result quality
             handler.addServletWithMapping(ApiSynthesisResultQualityFeedbackServlet.class, "/apisynthesisfeedback");
@@ -172,6 +183,14 @@ class ApiSynthesisServerRest
             // register a servlet for checking on the health of the entire apisynthesis process
             // only allow requests on port _httpHeartbeatListenPort
             handler.addServletWithMapping(ApiSynthesisHealthCheckServlet.class, "/apisynthesishealth");
+
+            // register a servlet for inspecting (GET) and flushing (POST) the synthesis result cache
+            // only allow requests on port _httpHeartbeatListenPort since it is an administrative action
+            handler.addServletWithMapping(ApiSynthesisResultCacheServlet.class, "/apisynthesiscache");
+
+            // register a servlet for scraping the synthesis pipeline metrics
+            // only allow requests on port _httpHeartbeatListenPort so that scrapes are not rejected under load
+            handler.addServletWithMapping(ApiSynthesisMetricsServlet.class, "/apisynthesismetrics");
         }
 
         /*
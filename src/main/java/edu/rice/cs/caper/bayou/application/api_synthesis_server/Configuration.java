@@ -55,12 +55,80 @@ public class Configuration
 
     public static final Synthesizer.Mode ApiSynthMode;
 
-    public static final String AstServerAuthority;
+    /**
+     * The AST servers (model replicas) to dispatch to, each of the form host:port or host:port/concurrencyLimit.
+     */
+    public static final String[] AstServerAuthority;
+
+    /**
+     * The number of consecutive failed requests after which an AST server is ejected from selection.
+     */
+    public static final NatNum32 AstServerEjectionFailureCount;
+
+    /**
+     * How long in milliseconds an ejected AST server is excluded from selection.
+     */
+    public static final NatNum32 AstServerEjectionMs;
+
+    /**
+     * How long in milliseconds concurrent evidence is collected into one batched AST server request, or 0 if
+     * requests should not be batched.
+     */
+    public static final NatNum32 AstServerBatchWindowMs;
+
+    /**
+     * The maximum number of evidences sent in one batched AST server request.
+     */
+    public static final NatNum32 AstServerMaxBatchSize;
+
+    /**
+     * The maximum number of AST server responses cached by evidence, or 0 if responses should not be cached.
+     */
+    public static final NatNum32 AstCacheMaxEntries;
+
+    /**
+     * How long in milliseconds a cached AST server response is used.
+     */
+    public static final NatNum32 AstCacheTtlMs;
+
+    /**
+     * Where cached AST server responses are persisted between runs, or null if they should not be persisted.
+     */
+    public static final File AstCachePath;
+
+    /**
+     * The maximum total number of characters of cached synthesis results (and their keys), or 0 if synthesis results
+     * should not be cached.
+     */
+    public static final NatNum32 SynthesisResultCacheMaxChars;
 
     public static final NatNum32 OutstandingSynthRequestCountLimit;
 
     public static final NatNum32 JettyTaskQueueSize;
 
+    /**
+     * Where the API type index is persisted between runs, or null if it should be rebuilt on every start.
+     */
+    public static final File ApiTypeIndexPath;
+
+    /**
+     * The maximum number of sketches of a single request that are synthesized concurrently.
+     */
+    public static final NatNum32 SynthesisParallelism;
+
+    /**
+     * The maximum number of threads that process synthesis requests once their body is read. Requests that find all
+     * of them busy are rejected. With UseVirtualThreads, the maximum number of requests synthesized at once instead;
+     * further requests wait their turn.
+     */
+    public static final NatNum32 SynthesisRequestThreadCount;
+
+    /**
+     * Whether synthesis requests are processed on virtual threads (one per request) instead of a pool of
+     * SynthesisRequestThreadCount threads. Requires JDK 21 or later; ignored with a warning otherwise.
+     */
+    public static final boolean UseVirtualThreads;
+
     static
     {
         Properties properties = new Properties();
@@ -102,8 +170,23 @@ public class Configuration
         AndroidJarPath = new File(properties.getProperty("AndroidJarPath"));
         CorsAllowedOrigins = properties.getProperty("CorsAllowedOrigins").split("\\s+"); // split by whitespace
         ApiSynthMode = Synthesizer.Mode.valueOf(properties.getProperty("ApiSynthMode"));
-        AstServerAuthority =  properties.getProperty("AstServerAuthority");
+        AstServerAuthority =  properties.getProperty("AstServerAuthority").split("\\s+"); // split by whitespace
+        AstServerEjectionFailureCount =
+                NatNum32.parse(properties.getProperty("AstServerEjectionFailureCount", "3"));
+        AstServerEjectionMs = NatNum32.parse(properties.getProperty("AstServerEjectionMs", "10000"));
+        AstServerBatchWindowMs = NatNum32.parse(properties.getProperty("AstServerBatchWindowMs", "0"));
+        AstServerMaxBatchSize = NatNum32.parse(properties.getProperty("AstServerMaxBatchSize", "8"));
+        AstCacheMaxEntries = NatNum32.parse(properties.getProperty("AstCacheMaxEntries", "0"));
+        AstCacheTtlMs = NatNum32.parse(properties.getProperty("AstCacheTtlMs", "3600000"));
+        AstCachePath = properties.getProperty("AstCachePath") != null ?
+                new File(properties.getProperty("AstCachePath")) : null;
+        SynthesisResultCacheMaxChars = NatNum32.parse(properties.getProperty("SynthesisResultCacheMaxChars", "0"));
         OutstandingSynthRequestCountLimit = NatNum32.parse(properties.getProperty("OutstandingSynthRequestCountLimit"));
         JettyTaskQueueSize = NatNum32.parse(properties.getProperty("JettyTaskQueueSize"));
+        ApiTypeIndexPath = properties.getProperty("ApiTypeIndexPath") != null ?
+                new File(properties.getProperty("ApiTypeIndexPath")) : null;
+        SynthesisParallelism = NatNum32.parse(properties.getProperty("SynthesisParallelism", "1"));
+        SynthesisRequestThreadCount = NatNum32.parse(properties.getProperty("SynthesisRequestThreadCount", "100"));
+        UseVirtualThreads = Boolean.parseBoolean(properties.getProperty("UseVirtualThreads", "false"));
     }
 }
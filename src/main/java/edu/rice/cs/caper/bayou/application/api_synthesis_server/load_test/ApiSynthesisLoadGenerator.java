@@ -0,0 +1,374 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.load_test;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics.LatencyHistogram;
+import edu.rice.cs.caper.bayou.core.bayou_services_client.api_synthesis.ApiSynthesisClient;
+import edu.rice.cs.caper.bayou.core.bayou_services_client.api_synthesis.SynthesisError;
+import edu.rice.cs.caper.bayou.core.bayou_services_client.api_synthesis.UnexpectedStatusCodeException;
+import org.apache.commons.cli.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recorded request log against a running api synthesis server and reports the latency percentiles, the
+ * rate of requests rejected with 429 (see Configuration.OutstandingSynthRequestCountLimit) and the throughput.
+ *
+ * The log is replayed in order, from the start again when it runs out, for a warmup period whose requests are not
+ * reported and then for a measured period. Requests are either sent in a closed loop (each of the concurrent senders
+ * sends its next request when its previous one is answered) or in an open loop at a fixed arrival rate. In the open
+ * loop latency is measured from when a request was due to be sent, so that requests delayed because all senders were
+ * busy count as slow rather than as not sent.
+ *
+ * Thread safe.
+ */
+class ApiSynthesisLoadGenerator
+{
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(ApiSynthesisLoadGenerator.class.getName());
+
+    /**
+     * The outcomes of the requests sent during one period.
+     */
+    static class Report
+    {
+        /**
+         * Latency of the requests the server answered with programs or a synthesis error (not those rejected or
+         * failed).
+         */
+        final LatencyHistogram latency = new LatencyHistogram("answered");
+
+        final AtomicLong okCount = new AtomicLong();
+
+        /**
+         * Requests answered with a synthesis (or parse) error.
+         */
+        final AtomicLong synthesisErrorCount = new AtomicLong();
+
+        /**
+         * Requests rejected with 429 because the server was at its limit of outstanding requests.
+         */
+        final AtomicLong rejectedCount = new AtomicLong();
+
+        /**
+         * Requests that failed for any other reason (other status codes, timeouts, connection errors).
+         */
+        final AtomicLong failedCount = new AtomicLong();
+
+        /**
+         * The length of the period in nanoseconds.
+         */
+        volatile long periodNanos;
+
+        long getRequestCount()
+        {
+            return okCount.get() + synthesisErrorCount.get() + rejectedCount.get() + failedCount.get();
+        }
+
+        /**
+         * @return the number of requests answered with programs per second of the period.
+         */
+        double getThroughput()
+        {
+            return periodNanos == 0 ? 0 : okCount.get() / (periodNanos / 1e9);
+        }
+
+        /**
+         * @return the percentage of requests that were rejected with 429.
+         */
+        double getRejectedPercentage()
+        {
+            long count = getRequestCount();
+            return count == 0 ? 0 : 100.0 * rejectedCount.get() / count;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(
+                    "requests: %d (ok %d, synthesis errors %d, rejected with 429 %d = %.2f%%, failed %d)%n" +
+                    "throughput: %.2f ok requests/s%n" +
+                    "latency ms: p50 %.1f, p90 %.1f, p99 %.1f, p999 %.1f, max %.1f",
+                    getRequestCount(), okCount.get(), synthesisErrorCount.get(), rejectedCount.get(),
+                    getRejectedPercentage(), failedCount.get(), getThroughput(),
+                    latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(90) / 1e6,
+                    latency.getValueAtPercentile(99) / 1e6, latency.getValueAtPercentile(99.9) / 1e6,
+                    latency.getMaxNanos() / 1e6);
+        }
+    }
+
+    private final ApiSynthesisClient _client;
+
+    private final List<RecordedRequest> _requests;
+
+    private final int _concurrency;
+
+    /**
+     * Requests per second in the open loop, or 0 for the closed loop.
+     */
+    private final double _ratePerSecond;
+
+    private final long _warmupNanos;
+
+    private final long _durationNanos;
+
+    /**
+     * The index (modulo the log size) of the next request to send.
+     */
+    private final AtomicInteger _nextRequest = new AtomicInteger();
+
+    /**
+     * @param host the synthesis server's host. May not be null.
+     * @param port the synthesis server's request port.
+     * @param requests the requests to replay. May not be null or empty.
+     * @param concurrency the maximum number of requests outstanding at once. Must be a natural number.
+     * @param ratePerSecond the number of requests to send per second (open loop), or 0 to send each request as
+     *                      soon as a sender is free (closed loop). May not be negative.
+     * @param warmupMs the length of the warmup period, whose requests are not reported. May not be negative.
+     * @param durationMs the length of the measured period. Must be a natural number.
+     */
+    ApiSynthesisLoadGenerator(String host, int port, List<RecordedRequest> requests, int concurrency,
+                              double ratePerSecond, long warmupMs, long durationMs)
+    {
+        if(requests == null)
+            throw new NullPointerException("requests");
+
+        if(requests.isEmpty())
+            throw new IllegalArgumentException("requests may not be empty");
+
+        if(concurrency < 1)
+            throw new IllegalArgumentException("concurrency must be a natural number");
+
+        if(ratePerSecond < 0)
+            throw new IllegalArgumentException("ratePerSecond may not be negative");
+
+        if(warmupMs < 0)
+            throw new IllegalArgumentException("warmupMs may not be negative");
+
+        if(durationMs < 1)
+            throw new IllegalArgumentException("durationMs must be a natural number");
+
+        _client = new ApiSynthesisClient(host, port);
+        _requests = requests;
+        _concurrency = concurrency;
+        _ratePerSecond = ratePerSecond;
+        _warmupNanos = TimeUnit.MILLISECONDS.toNanos(warmupMs);
+        _durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMs);
+    }
+
+    /**
+     * Replays the log for the warmup and measured periods and waits for all sent requests to be answered.
+     *
+     * @return the outcomes of the requests sent during the measured period.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    Report run() throws InterruptedException
+    {
+        Report warmup = new Report();
+        Report measured = new Report();
+        measured.periodNanos = _durationNanos;
+
+        long startNanos = System.nanoTime();
+        long measureStartNanos = startNanos + _warmupNanos;
+        long endNanos = measureStartNanos + _durationNanos;
+
+        ExecutorService senders = Executors.newFixedThreadPool(_concurrency);
+        try
+        {
+            if(_ratePerSecond == 0)
+            {
+                for(int i = 0; i < _concurrency; i++)
+                {
+                    senders.execute(() ->
+                    {
+                        long sendNanos;
+                        while((sendNanos = System.nanoTime()) < endNanos)
+                            send(nextRequest(), sendNanos, sendNanos < measureStartNanos ? warmup : measured);
+                    });
+                }
+            }
+            else
+            {
+                double intervalNanos = 1e9 / _ratePerSecond;
+                for(long i = 0; ; i++)
+                {
+                    long dueNanos = startNanos + (long) (i * intervalNanos);
+                    if(dueNanos >= endNanos)
+                        break;
+
+                    long waitNanos;
+                    while((waitNanos = dueNanos - System.nanoTime()) > 0)
+                    {
+                        LockSupport.parkNanos(waitNanos);
+                        if(Thread.interrupted())
+                            throw new InterruptedException();
+                    }
+
+                    RecordedRequest request = nextRequest();
+                    Report report = dueNanos < measureStartNanos ? warmup : measured;
+                    senders.execute(() -> send(request, dueNanos, report));
+                }
+            }
+        }
+        finally
+        {
+            senders.shutdown();
+        }
+
+        while(!senders.awaitTermination(10, TimeUnit.SECONDS))
+            _logger.info("waiting for outstanding requests");
+
+        return measured;
+    }
+
+    private RecordedRequest nextRequest()
+    {
+        return _requests.get(Math.floorMod(_nextRequest.getAndIncrement(), _requests.size()));
+    }
+
+    /**
+     * Sends the given request and records its outcome.
+     *
+     * @param startNanos the time from which to measure latency.
+     */
+    private void send(RecordedRequest request, long startNanos, Report report)
+    {
+        try
+        {
+            _client.synthesise(request.code, request.maxProgramCount);
+            report.latency.recordSince(startNanos);
+            report.okCount.incrementAndGet();
+        }
+        catch (SynthesisError e)
+        {
+            report.latency.recordSince(startNanos);
+            report.synthesisErrorCount.incrementAndGet();
+        }
+        catch (UnexpectedStatusCodeException e)
+        {
+            if(e.getStatusCode() == 429)
+                report.rejectedCount.incrementAndGet();
+            else
+                report.failedCount.incrementAndGet();
+        }
+        catch (IOException e)
+        {
+            _logger.debug(e.getMessage(), e);
+            report.failedCount.incrementAndGet();
+        }
+    }
+
+    private static final String HOST = "host";
+
+    private static final String PORT = "port";
+
+    private static final String CONCURRENCY = "concurrency";
+
+    private static final String RATE = "rate";
+
+    private static final String WARMUP = "warmup";
+
+    private static final String DURATION = "duration";
+
+    private static final String STUB_MODEL_PORT = "stub-model-port";
+
+    private static final String STUB_MODEL_ASTS = "stub-model-asts";
+
+    private static final String STUB_MODEL_DELAY = "stub-model-delay";
+
+    private static final String HELP = "help";
+
+    public static void main(String[] args) throws Exception
+    {
+        /*
+         * Define the command line arguments for the application and parse args accordingly.
+         */
+        Options options = new Options();
+        options.addOption(null, HOST, true, "the synthesis server's host (default localhost)");
+        options.addOption(null, PORT, true, "the synthesis server's request port (default 8080)");
+        options.addOption("c", CONCURRENCY, true, "the maximum number of outstanding requests (default 1)");
+        options.addOption("r", RATE, true, "send this many requests per second (open loop) instead of each " +
+                                           "request as soon as the previous one of a sender is answered");
+        options.addOption("w", WARMUP, true, "seconds of warmup, not reported (default 10)");
+        options.addOption("d", DURATION, true, "seconds of measurement (default 60)");
+        options.addOption(null, STUB_MODEL_PORT, true, "also run a stub AST server on this port, which " +
+                                                       "answers with the asts of --" + STUB_MODEL_ASTS);
+        options.addOption(null, STUB_MODEL_ASTS, true, "JSON file with the canned asts ({\"asts\": [...]})");
+        options.addOption(null, STUB_MODEL_DELAY, true, "milliseconds the stub AST server waits for each " +
+                                                        "evidence before answering (default 0)");
+        options.addOption(null, HELP, false, "print this message");
+
+        CommandLine line;
+        try
+        {
+            line = new DefaultParser().parse(options, args);
+            if(line.hasOption(HELP) || line.getArgs().length != 1)
+                throw new ParseException("expected one request log");
+            if(line.hasOption(STUB_MODEL_PORT) != line.hasOption(STUB_MODEL_ASTS))
+                throw new ParseException(STUB_MODEL_PORT + " and " + STUB_MODEL_ASTS + " go together");
+        }
+        catch (ParseException e)
+        {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("load_test.sh [OPTION]... LOG", "LOG is a directory of local synthesis logs " +
+                                "or a file with one request body per line.", options, null);
+            System.exit(1);
+            return;
+        }
+
+        List<RecordedRequest> requests = RecordedRequest.readLog(new File(line.getArgs()[0]));
+
+        StubModelServer stubModelServer = null;
+        if(line.hasOption(STUB_MODEL_PORT))
+        {
+            stubModelServer = new StubModelServer(Integer.parseInt(line.getOptionValue(STUB_MODEL_PORT)),
+                    StubModelServer.readAsts(new File(line.getOptionValue(STUB_MODEL_ASTS))),
+                    Long.parseLong(line.getOptionValue(STUB_MODEL_DELAY, "0")));
+        }
+
+        try
+        {
+            ApiSynthesisLoadGenerator generator = new ApiSynthesisLoadGenerator(
+                    line.getOptionValue(HOST, "localhost"),
+                    Integer.parseInt(line.getOptionValue(PORT, "8080")),
+                    requests,
+                    Integer.parseInt(line.getOptionValue(CONCURRENCY, "1")),
+                    Double.parseDouble(line.getOptionValue(RATE, "0")),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(line.getOptionValue(WARMUP, "10"))),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(line.getOptionValue(DURATION, "60"))));
+
+            System.out.println("Replaying " + requests.size() + " recorded requests...");
+            System.out.println(generator.run());
+        }
+        finally
+        {
+            if(stubModelServer != null)
+                stubModelServer.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.load_test;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An api synthesis request taken from a request log, to be sent again to a server.
+ */
+class RecordedRequest
+{
+    /**
+     * The number of programs requested when the log does not say.
+     */
+    static final int DEFAULT_MAX_PROGRAM_COUNT = 10;
+
+    /**
+     * The code to synthesize against.
+     */
+    final String code;
+
+    /**
+     * The maximum number of programs to return.
+     */
+    final int maxProgramCount;
+
+    RecordedRequest(String code, int maxProgramCount)
+    {
+        if(code == null)
+            throw new NullPointerException("code");
+
+        if(maxProgramCount < 1)
+            throw new IllegalArgumentException("maxProgramCount must be a natural number");
+
+        this.code = code;
+        this.maxProgramCount = maxProgramCount;
+    }
+
+    /**
+     * Reads a request log, which is either
+     *
+     * - a directory of synthesis log records as written by SynthesisLoggerLocal (one JSON object per file, with the
+     *   request's code in "searchCode"), read in file name order, or
+     * - a file of /apisynthesis request bodies, one JSON object per line (with "code" and optionally
+     *   "max program count").
+     *
+     * @param log the directory or file. May not be null.
+     * @return the requests in log order. Never empty.
+     * @throws IOException if the log can't be read, has a malformed record or has no records.
+     */
+    static List<RecordedRequest> readLog(File log) throws IOException
+    {
+        List<String> records = new ArrayList<>();
+        if(log.isDirectory())
+        {
+            File[] files = log.listFiles();
+            if(files == null)
+                throw new IOException("Could not list " + log);
+
+            Arrays.sort(files);
+            for(File file : files)
+            {
+                if(file.isFile())
+                    records.add(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            }
+        }
+        else
+        {
+            for(String line : Files.readAllLines(log.toPath(), StandardCharsets.UTF_8))
+            {
+                if(!line.trim().isEmpty())
+                    records.add(line);
+            }
+        }
+
+        List<RecordedRequest> requests = new ArrayList<>();
+        for(String record : records)
+        {
+            try
+            {
+                requests.add(fromJson(new JSONObject(record)));
+            }
+            catch (JSONException | IllegalArgumentException e)
+            {
+                throw new IOException("Malformed request record in " + log + ": " + e.getMessage(), e);
+            }
+        }
+
+        if(requests.isEmpty())
+            throw new IOException("No request records in " + log);
+
+        return Collections.unmodifiableList(requests);
+    }
+
+    private static RecordedRequest fromJson(JSONObject record)
+    {
+        final String CODE = "code";
+        final String SEARCH_CODE = "searchCode";
+        final String MAX_PROGRAM_COUNT = "max program count";
+
+        String code;
+        if(record.has(CODE))
+            code = record.getString(CODE);
+        else if(record.has(SEARCH_CODE))
+            code = record.getString(SEARCH_CODE);
+        else
+            throw new IllegalArgumentException("record has neither " + CODE + " nor " + SEARCH_CODE);
+
+        int maxProgramCount = record.has(MAX_PROGRAM_COUNT) ? record.getInt(MAX_PROGRAM_COUNT) :
+                                                              DEFAULT_MAX_PROGRAM_COUNT;
+
+        return new RecordedRequest(code, maxProgramCount);
+    }
+}
@@ -0,0 +1,248 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.load_test;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * A stand-in for the (Python) AST server. Lets the synthesis server be load tested without a model (point its
+ * AstServerAuthority at this server) and its AST server clients be tested without one.
+ *
+ * Either answers every "generate asts" and "generate asts batch" request with the same canned asts, optionally
+ * after a delay per evidence that stands for model inference, or answers each request with the result of a given
+ * function. Remembers the raw request bodies it received.
+ *
+ * Thread safe.
+ */
+public class StubModelServer implements AutoCloseable
+{
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(StubModelServer.class.getName());
+
+    /**
+     * Makes the response object to a request object.
+     */
+    private final Function<JSONObject, JSONObject> _respond;
+
+    /**
+     * How long to wait for each evidence of a request before answering it.
+     */
+    private final long _delayPerEvidenceMs;
+
+    /**
+     * The raw bodies of the requests received so far.
+     */
+    private final List<String> _requestBodies = new CopyOnWriteArrayList<>();
+
+    /**
+     * The http status code of the responses.
+     */
+    private volatile int _responseStatus = HttpServletResponse.SC_OK;
+
+    private final Server _server;
+
+    /**
+     * Starts a server that answers like the AST server does, echoing the evidence of each request back with the
+     * given canned asts.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @param asts the canned asts, in the format of the "asts" member of the AST server's responses.
+     *             May not be null.
+     * @param delayPerEvidenceMs how long to wait for each evidence of a request before answering it, as the AST
+     *                           server infers the evidences of a batch one after another. May not be negative.
+     * @throws Exception if the server could not be started.
+     */
+    public StubModelServer(int port, JSONArray asts, long delayPerEvidenceMs) throws Exception
+    {
+        this(port, cannedAsts(asts), delayPerEvidenceMs);
+    }
+
+    /**
+     * Starts a server that answers each request with the result of the given function applied to the request.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @param respond makes the response object to a request object. May not be null.
+     * @throws Exception if the server could not be started.
+     */
+    public StubModelServer(int port, Function<JSONObject, JSONObject> respond) throws Exception
+    {
+        this(port, respond, 0);
+    }
+
+    private StubModelServer(int port, Function<JSONObject, JSONObject> respond, long delayPerEvidenceMs)
+            throws Exception
+    {
+        if(respond == null)
+            throw new NullPointerException("respond");
+
+        if(delayPerEvidenceMs < 0)
+            throw new IllegalArgumentException("delayPerEvidenceMs may not be negative");
+
+        _respond = respond;
+        _delayPerEvidenceMs = delayPerEvidenceMs;
+
+        _server = new Server(port);
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+
+                String body = IOUtils.toString(request.getInputStream(), StandardCharsets.UTF_8);
+                _requestBodies.add(body);
+
+                JSONObject responseObj;
+                long delayMs;
+                try
+                {
+                    JSONObject requestObj = new JSONObject(body);
+                    responseObj = _respond.apply(requestObj);
+                    delayMs = _delayPerEvidenceMs * evidenceCount(requestObj);
+                }
+                catch (JSONException e)
+                {
+                    _logger.warn("malformed request: " + e.getMessage());
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+
+                try
+                {
+                    Thread.sleep(delayMs);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    return;
+                }
+
+                response.setStatus(_responseStatus);
+                response.setContentType("application/json");
+                response.getWriter().write(responseObj.toString());
+            }
+        });
+        _server.start();
+    }
+
+    /**
+     * Reads canned asts from a file in the format of the synthesizer test corpus ({"asts": [...]}).
+     *
+     * @param file the file. May not be null.
+     * @return the value of the file's "asts" member.
+     * @throws IOException if the file can't be read or has no "asts" array.
+     */
+    public static JSONArray readAsts(File file) throws IOException
+    {
+        try
+        {
+            return new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8))
+                    .getJSONArray("asts");
+        }
+        catch (JSONException e)
+        {
+            throw new IOException("No asts array in " + file, e);
+        }
+    }
+
+    private static Function<JSONObject, JSONObject> cannedAsts(JSONArray asts)
+    {
+        if(asts == null)
+            throw new NullPointerException("asts");
+
+        return request ->
+        {
+            if(isBatch(request))
+            {
+                JSONArray results = new JSONArray();
+                JSONArray evidences = request.getJSONArray("evidences");
+                for(int i = 0; i < evidences.length(); i++)
+                    results.put(respondToEvidence(evidences.getString(i), asts));
+                return new JSONObject().put("results", results);
+            }
+
+            return respondToEvidence(request.getString("evidence"), asts);
+        };
+    }
+
+    private static JSONObject respondToEvidence(String evidence, JSONArray asts)
+    {
+        return new JSONObject().put("evidences", new JSONObject(evidence)).put("asts", asts);
+    }
+
+    private static boolean isBatch(JSONObject request)
+    {
+        return request.optString("request type").equals("generate asts batch");
+    }
+
+    private static int evidenceCount(JSONObject request)
+    {
+        return isBatch(request) ? request.getJSONArray("evidences").length() : 1;
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int getPort()
+    {
+        return ((ServerConnector)_server.getConnectors()[0]).getLocalPort();
+    }
+
+    /**
+     * @return the raw bodies of the requests received so far, in the order they were received.
+     */
+    public List<String> getRequestBodies()
+    {
+        return _requestBodies;
+    }
+
+    /**
+     * @param status the http status code of subsequent responses.
+     */
+    public void setResponseStatus(int status)
+    {
+        _responseStatus = status;
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        _server.stop();
+    }
+}
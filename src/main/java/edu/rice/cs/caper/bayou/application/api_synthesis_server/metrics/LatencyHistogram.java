@@ -0,0 +1,190 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of the durations of some recurring activity, from which percentiles of the durations can be read.
+ *
+ * Durations are counted in buckets whose width grows with the duration so that each bucket spans at most about 3%
+ * of the durations in it (like HdrHistogram with two significant binary digits less). Memory use is fixed and
+ * recording is a single atomic increment.
+ *
+ * Thread safe.
+ */
+public class LatencyHistogram
+{
+    /**
+     * Durations below 2 * SUB_BUCKET_COUNT nanoseconds have a bucket each.
+     */
+    private static final int SUB_BUCKET_COUNT = 32;
+
+    /**
+     * The number of buckets needed to count any non-negative long.
+     */
+    private static final int BUCKET_COUNT = getBucketIndex(Long.MAX_VALUE) + 1;
+
+    /**
+     * The name of the measured activity.
+     */
+    private final String _name;
+
+    /**
+     * The number of recorded durations per bucket.
+     */
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Summary of all recorded durations.
+     */
+    private final LatencyStat _stat;
+
+    /**
+     * @param name the name of the measured activity. May not be null.
+     */
+    public LatencyHistogram(String name)
+    {
+        if(name == null)
+            throw new NullPointerException("name");
+
+        _name = name;
+        _stat = new LatencyStat(name);
+    }
+
+    private static int getBucketIndex(long durationNanos)
+    {
+        int highestBit = 63 - Long.numberOfLeadingZeros(durationNanos);
+        if(highestBit < 6)
+            return (int) durationNanos;
+
+        int shift = highestBit - 5; // keep the 6 highest bits, of which the first is always 1
+        return SUB_BUCKET_COUNT * shift + (int) (durationNanos >>> shift);
+    }
+
+    /**
+     * @return the highest duration counted in the given bucket.
+     */
+    private static long getBucketMaxNanos(int index)
+    {
+        if(index < 2 * SUB_BUCKET_COUNT)
+            return index;
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (index - SUB_BUCKET_COUNT * shift) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Records one occurrence of the activity.
+     *
+     * @param durationNanos how long the activity took in nanoseconds. Negative durations are recorded as 0.
+     */
+    public void record(long durationNanos)
+    {
+        durationNanos = Math.max(0, durationNanos);
+        _counts.incrementAndGet(getBucketIndex(durationNanos));
+        _stat.record(durationNanos);
+    }
+
+    /**
+     * Records one occurrence of the activity that started at the given time and ended now.
+     *
+     * @param startNanos the value of System.nanoTime() when the activity started.
+     */
+    public void recordSince(long startNanos)
+    {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the name of the measured activity.
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * @return the number of recorded durations.
+     */
+    public long getCount()
+    {
+        return _stat.getCount();
+    }
+
+    /**
+     * @return the sum of all recorded durations in nanoseconds.
+     */
+    public long getTotalNanos()
+    {
+        return _stat.getTotalNanos();
+    }
+
+    /**
+     * @return the longest recorded duration in nanoseconds.
+     */
+    public long getMaxNanos()
+    {
+        return _stat.getMaxNanos();
+    }
+
+    /**
+     * Returns (an upper bound within about 3% of) the duration that the given percentage of the recorded durations
+     * do not exceed.
+     *
+     * @param percentile the percentage, from 0 to 100.
+     * @return the duration in nanoseconds, or 0 if nothing was recorded.
+     * @throws IllegalArgumentException if percentile is not in [0, 100].
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if(percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be in [0, 100]");
+
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++)
+        {
+            counts[i] = _counts.get(i);
+            total += counts[i];
+        }
+
+        if(total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seen += counts[i];
+            if(seen >= rank)
+                return Math.min(getBucketMaxNanos(i), getMaxNanos());
+        }
+
+        return getMaxNanos(); // not reached
+    }
+
+    @Override
+    public String toString()
+    {
+        long count = getCount();
+        long meanMicros = count == 0 ? 0 : getTotalNanos() / count / 1000;
+        return _name + "[count=" + count + ", meanUs=" + meanMicros + ", p50Us=" + getValueAtPercentile(50) / 1000 +
+               ", p99Us=" + getValueAtPercentile(99) / 1000 + ", p999Us=" + getValueAtPercentile(99.9) / 1000 +
+               ", maxUs=" + getMaxNanos() / 1000 + "]";
+    }
+}
@@ -0,0 +1,119 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running count, total and maximum of the durations of some recurring activity.
+ *
+ * Thread safe.
+ */
+public class LatencyStat
+{
+    /**
+     * The name of the measured activity.
+     */
+    private final String _name;
+
+    /**
+     * The number of recorded durations.
+     */
+    private final AtomicLong _count = new AtomicLong();
+
+    /**
+     * The sum of all recorded durations in nanoseconds.
+     */
+    private final AtomicLong _totalNanos = new AtomicLong();
+
+    /**
+     * The longest recorded duration in nanoseconds.
+     */
+    private final AtomicLong _maxNanos = new AtomicLong();
+
+    /**
+     * @param name the name of the measured activity. May not be null.
+     */
+    public LatencyStat(String name)
+    {
+        if(name == null)
+            throw new NullPointerException("name");
+
+        _name = name;
+    }
+
+    /**
+     * Records one occurrence of the activity.
+     *
+     * @param durationNanos how long the activity took in nanoseconds.
+     */
+    public void record(long durationNanos)
+    {
+        _count.incrementAndGet();
+        _totalNanos.addAndGet(durationNanos);
+        _maxNanos.accumulateAndGet(durationNanos, Math::max);
+    }
+
+    /**
+     * Records one occurrence of the activity that started at the given time and ended now.
+     *
+     * @param startNanos the value of System.nanoTime() when the activity started.
+     */
+    public void recordSince(long startNanos)
+    {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the name of the measured activity.
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * @return the number of recorded durations.
+     */
+    public long getCount()
+    {
+        return _count.get();
+    }
+
+    /**
+     * @return the sum of all recorded durations in nanoseconds.
+     */
+    public long getTotalNanos()
+    {
+        return _totalNanos.get();
+    }
+
+    /**
+     * @return the longest recorded duration in nanoseconds.
+     */
+    public long getMaxNanos()
+    {
+        return _maxNanos.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        long count = getCount();
+        long meanMicros = count == 0 ? 0 : getTotalNanos() / count / 1000;
+        return _name + "[count=" + count + ", meanUs=" + meanMicros + ", maxUs=" + getMaxNanos() / 1000 + "]";
+    }
+}
@@ -0,0 +1,416 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics;
+
+import edu.rice.cs.caper.bayou.core.synthesizer.SynthesisListener;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per stage latencies and counters of the synthesis pipeline, written in the Prometheus text exposition format for
+ * scraping.
+ *
+ * Recording is a few atomic increments (LongAdder for the counters, so that the sketch synthesis threads do not
+ * contend on them) and never takes a lock.
+ *
+ * Thread safe.
+ */
+public class SynthesisMetrics implements SynthesisListener
+{
+    /**
+     * The stages of the synthesis pipeline whose latencies are measured.
+     */
+    public enum Stage
+    {
+        /**
+         * From taking up a synthesis request until its response is complete.
+         */
+        REQUEST("request"),
+
+        /**
+         * Rewriting /// evidence comments into Evidence calls.
+         */
+        REWRITE_EVIDENCE("rewrite_evidence"),
+
+        /**
+         * Parsing the draft program.
+         */
+        PARSE("parse"),
+
+        /**
+         * Extracting the evidence from the parsed program.
+         */
+        EXTRACT_EVIDENCE("extract_evidence"),
+
+        /**
+         * Waiting for an AST server to have capacity for the request.
+         */
+        SCHEDULER_WAIT("scheduler_wait"),
+
+        /**
+         * Getting the sketches from the model, including the scheduler wait. Not recorded on AST cache hits.
+         */
+        MODEL_ROUND_TRIP("model_round_trip"),
+
+        /**
+         * Synthesizing all the sketches of a request into programs.
+         */
+        SYNTHESIZE("synthesize"),
+
+        /**
+         * Synthesizing a single sketch, including dead code elimination.
+         */
+        SYNTHESIZE_SKETCH("synthesize_sketch"),
+
+        /**
+         * Dead code elimination of a single sketch.
+         */
+        DEAD_CODE_ELIMINATION("dead_code_elimination"),
+
+        /**
+         * Formatting a single synthesized program.
+         */
+        FORMAT("format"),
+
+        /**
+         * From handing the results off to the synthesis logging thread until they are logged.
+         */
+        LOG_HANDOFF("log_handoff");
+
+        /**
+         * The value of the stage label.
+         */
+        public final String Label;
+
+        Stage(String label)
+        {
+            Label = label;
+        }
+    }
+
+    /**
+     * The caches whose lookups are counted.
+     */
+    public enum Cache
+    {
+        /**
+         * The cache of AST server responses keyed by evidence.
+         */
+        AST_RESPONSE("ast_response"),
+
+        /**
+         * The cache of complete synthesis results keyed by normalized code.
+         */
+        SYNTHESIS_RESULT("synthesis_result");
+
+        /**
+         * The value of the cache label.
+         */
+        public final String Label;
+
+        Cache(String label)
+        {
+            Label = label;
+        }
+    }
+
+    /**
+     * The percentiles written for each stage.
+     */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    /**
+     * The metrics of the process.
+     */
+    private static final SynthesisMetrics _shared = new SynthesisMetrics();
+
+    /**
+     * The latencies of each stage.
+     */
+    private final Map<Stage, LatencyHistogram> _stageLatencies = new EnumMap<>(Stage.class);
+
+    /**
+     * The number of sketches that were synthesized into a program.
+     */
+    private final LongAdder _sketchesSucceeded = new LongAdder();
+
+    /**
+     * The number of sketches of which nothing was left after dead code elimination.
+     */
+    private final LongAdder _sketchesEmpty = new LongAdder();
+
+    /**
+     * The number of sketches that failed, by SynthesisException id.
+     */
+    private final ConcurrentMap<Integer, LongAdder> _sketchesFailed = new ConcurrentHashMap<>();
+
+    /**
+     * The number of synthesized programs that could not be formatted.
+     */
+    private final LongAdder _formatFailures = new LongAdder();
+
+    /**
+     * The number of hits of each cache.
+     */
+    private final Map<Cache, LongAdder> _cacheHits = new EnumMap<>(Cache.class);
+
+    /**
+     * The number of misses of each cache.
+     */
+    private final Map<Cache, LongAdder> _cacheMisses = new EnumMap<>(Cache.class);
+
+    public SynthesisMetrics()
+    {
+        // fully populated here so that the maps are only read afterwards
+        for(Stage stage : Stage.values())
+            _stageLatencies.put(stage, new LatencyHistogram(stage.Label));
+
+        for(Cache cache : Cache.values())
+        {
+            _cacheHits.put(cache, new LongAdder());
+            _cacheMisses.put(cache, new LongAdder());
+        }
+    }
+
+    /**
+     * @return the metrics shared by all synthesizers and servlets of the process.
+     */
+    public static SynthesisMetrics getShared()
+    {
+        return _shared;
+    }
+
+    /**
+     * @param stage the stage. May not be null.
+     * @return the latencies of the given stage.
+     */
+    public LatencyHistogram getStageLatency(Stage stage)
+    {
+        if(stage == null)
+            throw new NullPointerException("stage");
+
+        return _stageLatencies.get(stage);
+    }
+
+    /**
+     * Records one occurrence of the given stage that started at the given time and ended now.
+     *
+     * @param stage the stage. May not be null.
+     * @param startNanos the value of System.nanoTime() when the stage started.
+     */
+    public void recordSince(Stage stage, long startNanos)
+    {
+        getStageLatency(stage).recordSince(startNanos);
+    }
+
+    /**
+     * Counts a lookup of the given cache.
+     *
+     * @param cache the cache. May not be null.
+     * @param hit whether the lookup found an entry.
+     */
+    public void recordCacheLookup(Cache cache, boolean hit)
+    {
+        if(cache == null)
+            throw new NullPointerException("cache");
+
+        (hit ? _cacheHits : _cacheMisses).get(cache).increment();
+    }
+
+    @Override
+    public void sketchSynthesized(long nanos, long deadCodeEliminationNanos, boolean producedProgram)
+    {
+        _stageLatencies.get(Stage.SYNTHESIZE_SKETCH).record(nanos);
+        if(deadCodeEliminationNanos > 0) // 0 if the sketch did not get that far
+            _stageLatencies.get(Stage.DEAD_CODE_ELIMINATION).record(deadCodeEliminationNanos);
+        (producedProgram ? _sketchesSucceeded : _sketchesEmpty).increment();
+    }
+
+    @Override
+    public void sketchFailed(int errorId, long nanos)
+    {
+        _stageLatencies.get(Stage.SYNTHESIZE_SKETCH).record(nanos);
+        _sketchesFailed.computeIfAbsent(errorId, id -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void programFormatted(long nanos, boolean succeeded)
+    {
+        _stageLatencies.get(Stage.FORMAT).record(nanos);
+        if(!succeeded)
+            _formatFailures.increment();
+    }
+
+    /**
+     * @return the number of sketches that were synthesized into a program.
+     */
+    public long getSketchesSucceededCount()
+    {
+        return _sketchesSucceeded.sum();
+    }
+
+    /**
+     * @return the number of sketches of which nothing was left after dead code elimination.
+     */
+    public long getSketchesEmptyCount()
+    {
+        return _sketchesEmpty.sum();
+    }
+
+    /**
+     * @param errorId a SynthesisException id.
+     * @return the number of sketches that failed with the given id.
+     */
+    public long getSketchesFailedCount(int errorId)
+    {
+        LongAdder count = _sketchesFailed.get(errorId);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return the number of sketches tried, whatever their outcome.
+     */
+    public long getSketchesTriedCount()
+    {
+        long tried = getSketchesSucceededCount() + getSketchesEmptyCount();
+        for(LongAdder count : _sketchesFailed.values())
+            tried += count.sum();
+        return tried;
+    }
+
+    /**
+     * @param cache the cache. May not be null.
+     * @return the number of lookups of the given cache that found an entry.
+     */
+    public long getCacheHitCount(Cache cache)
+    {
+        if(cache == null)
+            throw new NullPointerException("cache");
+
+        return _cacheHits.get(cache).sum();
+    }
+
+    /**
+     * @param cache the cache. May not be null.
+     * @return the number of lookups of the given cache that found no entry.
+     */
+    public long getCacheMissCount(Cache cache)
+    {
+        if(cache == null)
+            throw new NullPointerException("cache");
+
+        return _cacheMisses.get(cache).sum();
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format (version 0.0.4).
+     *
+     * @param writer where to write the metrics. May not be null.
+     * @throws IOException if writing fails.
+     */
+    public void write(Writer writer) throws IOException
+    {
+        if(writer == null)
+            throw new NullPointerException("writer");
+
+        StringBuilder out = new StringBuilder();
+
+        out.append("# HELP bayou_synthesis_stage_seconds Latency of the stages of the synthesis pipeline.\n");
+        out.append("# TYPE bayou_synthesis_stage_seconds summary\n");
+        for(Stage stage : Stage.values())
+        {
+            LatencyHistogram latency = _stageLatencies.get(stage);
+            for(double percentile : PERCENTILES)
+            {
+                appendSample(out, "bayou_synthesis_stage_seconds", "stage", stage.Label,
+                             "quantile", Double.toString(percentile / 100),
+                             toSeconds(latency.getValueAtPercentile(percentile)));
+            }
+            appendSample(out, "bayou_synthesis_stage_seconds_sum", "stage", stage.Label,
+                         toSeconds(latency.getTotalNanos()));
+            appendSample(out, "bayou_synthesis_stage_seconds_count", "stage", stage.Label,
+                         Long.toString(latency.getCount()));
+        }
+
+        out.append("# HELP bayou_synthesis_stage_max_seconds Longest latency of the stages of the synthesis pipeline.\n");
+        out.append("# TYPE bayou_synthesis_stage_max_seconds gauge\n");
+        for(Stage stage : Stage.values())
+        {
+            appendSample(out, "bayou_synthesis_stage_max_seconds", "stage", stage.Label,
+                         toSeconds(_stageLatencies.get(stage).getMaxNanos()));
+        }
+
+        out.append("# HELP bayou_synthesis_sketches_total Sketches tried, by outcome.\n");
+        out.append("# TYPE bayou_synthesis_sketches_total counter\n");
+        appendSample(out, "bayou_synthesis_sketches_total", "outcome", "succeeded",
+                     Long.toString(getSketchesSucceededCount()));
+        appendSample(out, "bayou_synthesis_sketches_total", "outcome", "empty",
+                     Long.toString(getSketchesEmptyCount()));
+        long failedCount = 0;
+        for(LongAdder count : _sketchesFailed.values())
+            failedCount += count.sum();
+        appendSample(out, "bayou_synthesis_sketches_total", "outcome", "failed", Long.toString(failedCount));
+
+        out.append("# HELP bayou_synthesis_sketch_failures_total Failed sketches, by SynthesisException id.\n");
+        out.append("# TYPE bayou_synthesis_sketch_failures_total counter\n");
+        for(Map.Entry<Integer, LongAdder> entry : new TreeMap<>(_sketchesFailed).entrySet())
+        {
+            appendSample(out, "bayou_synthesis_sketch_failures_total", "error_id", entry.getKey().toString(),
+                         Long.toString(entry.getValue().sum()));
+        }
+
+        out.append("# HELP bayou_synthesis_format_failures_total Synthesized programs that could not be formatted.\n");
+        out.append("# TYPE bayou_synthesis_format_failures_total counter\n");
+        out.append("bayou_synthesis_format_failures_total ").append(_formatFailures.sum()).append('\n');
+
+        out.append("# HELP bayou_synthesis_cache_lookups_total Cache lookups, by cache and result.\n");
+        out.append("# TYPE bayou_synthesis_cache_lookups_total counter\n");
+        for(Cache cache : Cache.values())
+        {
+            appendSample(out, "bayou_synthesis_cache_lookups_total", "cache", cache.Label, "result", "hit",
+                         Long.toString(getCacheHitCount(cache)));
+            appendSample(out, "bayou_synthesis_cache_lookups_total", "cache", cache.Label, "result", "miss",
+                         Long.toString(getCacheMissCount(cache)));
+        }
+
+        writer.write(out.toString());
+    }
+
+    private static void appendSample(StringBuilder out, String name, String label, String labelValue, String value)
+    {
+        out.append(name).append('{').append(label).append("=\"").append(labelValue).append("\"} ")
+           .append(value).append('\n');
+    }
+
+    private static void appendSample(StringBuilder out, String name, String label1, String labelValue1,
+                                     String label2, String labelValue2, String value)
+    {
+        out.append(name).append('{').append(label1).append("=\"").append(labelValue1).append("\",")
+           .append(label2).append("=\"").append(labelValue2).append("\"} ").append(value).append('\n');
+    }
+
+    private static String toSeconds(long nanos)
+    {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.servlet;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics.SynthesisMetrics;
+import edu.rice.cs.caper.servlet.ServerIdHttpServlet;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.http.HttpStatus;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * A servlet for scraping the synthesis pipeline metrics. A HTTP GET returns the per stage latencies, the sketch
+ * outcomes and the cache lookups in the Prometheus text exposition format.
+ */
+public class ApiSynthesisMetricsServlet extends ServerIdHttpServlet
+{
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(ApiSynthesisMetricsServlet.class.getName());
+
+    /**
+     * The metrics to expose.
+     */
+    private final SynthesisMetrics _metrics;
+
+    /**
+     * Public so Jetty can instantiate.
+     */
+    public ApiSynthesisMetricsServlet()
+    {
+        _logger.debug("entering");
+        _metrics = SynthesisMetrics.getShared();
+        _logger.debug("exiting");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+    {
+        _logger.debug("entering");
+
+        resp.setStatus(HttpStatus.OK_200);
+        resp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+
+        PrintWriter writer = resp.getWriter();
+        _metrics.write(writer);
+        writer.write("# HELP bayou_synthesis_outstanding_requests Synthesis requests being processed.\n");
+        writer.write("# TYPE bayou_synthesis_outstanding_requests gauge\n");
+        writer.write("bayou_synthesis_outstanding_requests " +
+                     ApiSynthesisServlet.getOutstandingPostRequestsCount() + "\n");
+        writer.flush();
+
+        _logger.debug("exiting");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.servlet;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.SynthesisResultCache;
+import edu.rice.cs.caper.servlet.ErrorJsonResponse;
+import edu.rice.cs.caper.servlet.JsonResponseServlet;
+import edu.rice.cs.caper.servlet.ServerIdHttpServlet;
+import edu.rice.cs.caper.servlet.SuccessJsonResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.http.HttpStatus;
+import org.json.JSONObject;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * An administrative servlet for the synthesis result cache. A HTTP GET returns the cache statistics and a HTTP POST
+ * flushes the cache.
+ */
+public class ApiSynthesisResultCacheServlet extends ServerIdHttpServlet implements JsonResponseServlet
+{
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(ApiSynthesisResultCacheServlet.class.getName());
+
+    /**
+     * The administered cache, or null if results are not cached.
+     */
+    private final SynthesisResultCache _cache;
+
+    /**
+     * Public so Jetty can instantiate.
+     */
+    public ApiSynthesisResultCacheServlet()
+    {
+        _logger.debug("entering");
+        _cache = ApiSynthesizerFactory.getSynthesisResultCache();
+        _logger.debug("exiting");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+    {
+        _logger.debug("entering");
+
+        if(_cache == null)
+        {
+            writeCacheDisabled(resp);
+            _logger.debug("exiting");
+            return;
+        }
+
+        JSONObject responseBody = new SuccessJsonResponse();
+        responseBody.put("entries", _cache.size());
+        responseBody.put("chars", _cache.getCharCount());
+        responseBody.put("hits", _cache.getHitCount());
+        responseBody.put("misses", _cache.getMissCount());
+        responseBody.put("evictions", _cache.getEvictionCount());
+        writeObjectToServletOutputStream(responseBody, resp);
+
+        _logger.debug("exiting");
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException
+    {
+        _logger.debug("entering");
+
+        if(_cache == null)
+        {
+            writeCacheDisabled(resp);
+            _logger.debug("exiting");
+            return;
+        }
+
+        int flushedCount = _cache.flush();
+        _logger.info("flushed " + flushedCount + " synthesis results");
+
+        JSONObject responseBody = new SuccessJsonResponse();
+        responseBody.put("flushed", flushedCount);
+        writeObjectToServletOutputStream(responseBody, resp);
+
+        _logger.debug("exiting");
+    }
+
+    private void writeCacheDisabled(HttpServletResponse resp) throws IOException
+    {
+        resp.setStatus(HttpStatus.NOT_FOUND_404);
+        writeObjectToServletOutputStream(new ErrorJsonResponse("Synthesis result cache is disabled."), resp);
+    }
+}
@@ -16,10 +16,13 @@ limitations under the License.
 package edu.rice.cs.caper.bayou.application.api_synthesis_server.servlet;
 
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.Configuration;
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics.SynthesisMetrics;
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.*;
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis_logging.SynthesisLoggerNone;
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis_logging.SynthesisLoggerS3;
 import edu.rice.cs.caper.programming.numbers.NatNum32;
+import edu.rice.cs.caper.programming.thread.ThreadSchedulerFifoSemaphore;
+import edu.rice.cs.caper.programming.thread.VirtualThreads;
 import edu.rice.cs.caper.servlet.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -35,6 +38,9 @@ import java.util.LinkedList;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -52,6 +58,21 @@ public class ApiSynthesisServlet extends SizeConstrainedPostBodyServlet implemen
      */
     private static final ExecutorService _synthesisLoggerThreadPool = Executors.newFixedThreadPool(1);
 
+    /**
+     * Thread pool on which synthesis requests are processed once their body is read, so that slow synthesis (e.g.
+     * waiting for the AST server) does not hold on to the Jetty threads that serve the connections.
+     */
+    private static final ExecutorService _synthesisRequestThreadPool = makeSynthesisRequestThreadPool();
+
+    /**
+     * Limits the number of requests synthesized at once to Configuration.SynthesisRequestThreadCount when requests
+     * run on virtual threads, which no pool bounds, and lets the others wait their turn in arrival order.
+     * Null when requests run on the pool, whose thread count already is the limit.
+     */
+    private static final ThreadSchedulerFifoSemaphore _synthesisScheduler =
+            _synthesisRequestThreadPool instanceof ThreadPoolExecutor ? null :
+                    new ThreadSchedulerFifoSemaphore(Configuration.SynthesisRequestThreadCount);
+
     /**
      * The maximum input size of the request body this servlet will allow.
      * // TODO: have a value in config distinct from code completion
@@ -89,13 +110,77 @@ public class ApiSynthesisServlet extends SizeConstrainedPostBodyServlet implemen
      */
     public ApiSynthesisServlet()
     {
-        super(API_SYNTH_MAX_REQUEST_BODY_SIZE_BYTES, false);
+        super(API_SYNTH_MAX_REQUEST_BODY_SIZE_BYTES, false, _synthesisRequestThreadPool);
 
         ApiSynthesizer synthesisStrategy = ApiSynthesizerFactory.makeFromConfig(true);
-        _synthesisRequestProcessor = new ApiSynthesizerRewriteEvidenceDecorator(synthesisStrategy);
+        ApiSynthesizer rewritingStrategy = new ApiSynthesizerRewriteEvidenceDecorator(synthesisStrategy);
+
+        SynthesisResultCache resultCache = ApiSynthesizerFactory.getSynthesisResultCache();
+        _synthesisRequestProcessor = resultCache == null ? rewritingStrategy :
+                new ApiSynthesizerResultCacheDecorator(rewritingStrategy, resultCache);
         _logger.debug("exiting");
     }
 
+    /**
+     * @return an executor that runs each request on a new virtual thread if Configuration.UseVirtualThreads is set
+     *         and the JDK supports it. Otherwise a pool of up to Configuration.SynthesisRequestThreadCount threads
+     *         that rejects tasks when all threads are busy rather than queueing them, so that the number of requests
+     *         held in memory stays bounded.
+     */
+    private static ExecutorService makeSynthesisRequestThreadPool()
+    {
+        /*
+         * With virtual threads, requests are only bounded by OUTSTANDING_POST_REQUEST_COUNT_LIMIT, which is checked
+         * first thing on the request's thread, and synthesis by _synthesisScheduler.
+         */
+        if(Configuration.UseVirtualThreads)
+        {
+            if(VirtualThreads.isSupported())
+            {
+                try
+                {
+                    ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("api-synthesis-");
+                    _logger.info("processing synthesis requests on virtual threads");
+                    return executor;
+                }
+                catch (UnsupportedOperationException e)
+                {
+                    _logger.warn("UseVirtualThreads is set but virtual threads are unavailable, using a thread pool",
+                                 e);
+                }
+            }
+            else
+            {
+                _logger.warn("UseVirtualThreads is set but the JDK has no virtual threads, using a thread pool");
+            }
+        }
+
+        int threadCount = Configuration.SynthesisRequestThreadCount.AsInt;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS,
+                                                         new SynchronousQueue<>(), runnable ->
+        {
+            Thread thread = new Thread(runnable, "api-synthesis");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @return the current number of POST requests being processed among all instances of the servlet.
+     */
+    static int getOutstandingPostRequestsCount()
+    {
+        return _outstandingPostRequestsCount.get();
+    }
+
+    @Override
+    protected void onRequestComplete(HttpServletRequest req, HttpServletResponse resp, long durationNanos)
+    {
+        SynthesisMetrics.getShared().getStageLatency(SynthesisMetrics.Stage.REQUEST).record(durationNanos);
+    }
+
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp, String requestBody) throws IOException
     {
@@ -271,7 +356,11 @@ public class ApiSynthesisServlet extends SizeConstrainedPostBodyServlet implemen
         Iterable<String> results;
         try
         {
-            results = _synthesisRequestProcessor.synthesise(code, requestMsg.getMaxProgramCount());
+            if(_synthesisScheduler == null)
+                results = _synthesisRequestProcessor.synthesise(code, requestMsg.getMaxProgramCount());
+            else
+                results = _synthesisScheduler.schedule(() ->
+                        _synthesisRequestProcessor.synthesise(code, requestMsg.getMaxProgramCount()));
         }
         catch (SynthesiseException e)
         {
@@ -297,8 +386,12 @@ public class ApiSynthesisServlet extends SizeConstrainedPostBodyServlet implemen
         /*
          * Log result.  Do in other thread so that this thread becomes available again to process client requests.
          */
-        _synthesisLoggerThreadPool.submit(
-                () -> new SynthesisLoggerNone().log(requestId, code, results));
+        long handoffStart = System.nanoTime();
+        _synthesisLoggerThreadPool.submit(() ->
+        {
+            new SynthesisLoggerNone().log(requestId, code, results);
+            SynthesisMetrics.getShared().recordSince(SynthesisMetrics.Stage.LOG_HANDOFF, handoffStart);
+        });
 
         _logger.debug("exiting");
     }
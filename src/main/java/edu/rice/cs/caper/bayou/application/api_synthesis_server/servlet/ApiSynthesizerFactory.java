@@ -19,11 +19,20 @@ import edu.rice.cs.caper.bayou.application.api_synthesis_server.Configuration;
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.ApiSynthesizer;
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.ApiSynthesizerEcho;
 import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.ApiSynthesizerRemoteTensorFlowAsts;
-import edu.rice.cs.caper.programming.ContentString;
-import edu.rice.cs.caper.programming.numbers.NatNum32;
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.AstRequestBatcher;
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.AstResponseCache;
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.AstServerDispatcher;
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.AstServerEndpoint;
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.SynthesisResultCache;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * A factory capable of constructing an ApiSynthesizer as specified by the system configuration.
  */
@@ -34,6 +43,137 @@ class ApiSynthesizerFactory
      */
     private static final Logger _logger = LogManager.getLogger(ApiSynthesizerFactory.class.getName());
 
+    /**
+     * The executor shared by all synthesizers for synthesizing the sketches of a request concurrently.
+     * Null until first needed.
+     */
+    private static ExecutorService _synthesisExecutor;
+
+    /**
+     * @return the executor on which sketches are synthesized concurrently, or null if
+     *         Configuration.SynthesisParallelism does not permit concurrent synthesis.
+     */
+    private static synchronized ExecutorService getSynthesisExecutor()
+    {
+        if(Configuration.SynthesisParallelism.AsInt <= 1)
+            return null;
+
+        if(_synthesisExecutor == null)
+        {
+            _synthesisExecutor = Executors.newFixedThreadPool(Configuration.SynthesisParallelism.AsInt, runnable ->
+            {
+                Thread thread = new Thread(runnable, "sketch-synthesis");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return _synthesisExecutor;
+    }
+
+    /**
+     * The dispatcher shared by all synthesizers for sending requests to the AST servers. Null until first needed.
+     */
+    private static AstServerDispatcher _astServerDispatcher;
+
+    /**
+     * @return the dispatcher to the AST servers listed in Configuration.AstServerAuthority.
+     */
+    private static synchronized AstServerDispatcher getAstServerDispatcher()
+    {
+        if(_astServerDispatcher == null)
+        {
+            List<AstServerEndpoint> endpoints = new ArrayList<>();
+            for(String spec : Configuration.AstServerAuthority)
+                endpoints.add(AstServerEndpoint.parse(spec, Configuration.SynthesizeTimeoutMs));
+
+            _astServerDispatcher = new AstServerDispatcher(endpoints, Configuration.AstServerEjectionFailureCount,
+                                                           Configuration.AstServerEjectionMs);
+        }
+
+        return _astServerDispatcher;
+    }
+
+    /**
+     * The batcher shared by all synthesizers for combining concurrent AST server requests. Null until first needed.
+     */
+    private static AstRequestBatcher _astRequestBatcher;
+
+    /**
+     * @return the batcher for AST server requests, or null if Configuration.AstServerBatchWindowMs disables batching.
+     */
+    private static synchronized AstRequestBatcher getAstRequestBatcher()
+    {
+        if(Configuration.AstServerBatchWindowMs.AsInt == 0)
+            return null;
+
+        if(_astRequestBatcher == null)
+        {
+            _astRequestBatcher = new AstRequestBatcher(getAstServerDispatcher(), Configuration.AstServerBatchWindowMs,
+                                                       Configuration.AstServerMaxBatchSize);
+        }
+
+        return _astRequestBatcher;
+    }
+
+    /**
+     * The cache shared by all synthesizers for AST server responses. Null until first needed.
+     */
+    private static AstResponseCache _astResponseCache;
+
+    /**
+     * @return the cache of AST server responses, or null if Configuration.AstCacheMaxEntries disables caching.
+     *         If Configuration.AstCachePath is set the cache is saved there when the JVM exits.
+     */
+    private static synchronized AstResponseCache getAstResponseCache()
+    {
+        if(Configuration.AstCacheMaxEntries.AsInt == 0)
+            return null;
+
+        if(_astResponseCache == null)
+        {
+            AstResponseCache cache = new AstResponseCache(Configuration.AstCacheMaxEntries, Configuration.AstCacheTtlMs,
+                                                          Configuration.AstCachePath);
+            if(Configuration.AstCachePath != null)
+            {
+                Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                {
+                    try
+                    {
+                        cache.save();
+                    }
+                    catch (IOException e)
+                    {
+                        _logger.error(e.getMessage(), e);
+                    }
+                }));
+            }
+            _astResponseCache = cache;
+        }
+
+        return _astResponseCache;
+    }
+
+    /**
+     * The cache shared by all synthesis servlets for complete synthesis results. Null until first needed.
+     */
+    private static SynthesisResultCache _synthesisResultCache;
+
+    /**
+     * @return the cache of complete synthesis results, or null if Configuration.SynthesisResultCacheMaxChars
+     *         disables caching.
+     */
+    static synchronized SynthesisResultCache getSynthesisResultCache()
+    {
+        if(Configuration.SynthesisResultCacheMaxChars.AsInt == 0)
+            return null;
+
+        if(_synthesisResultCache == null)
+            _synthesisResultCache = new SynthesisResultCache(Configuration.SynthesisResultCacheMaxChars);
+
+        return _synthesisResultCache;
+    }
+
     /**
      * @return a synthesiser in accordance with edu.rice.cs.caper.bayou.application.api_synthesis_server.Configuration
      */
@@ -48,15 +188,14 @@ class ApiSynthesizerFactory
         }
         else
         {
-
-            ContentString tensorFlowHost = new ContentString(Configuration.AstServerAuthority.split(":")[0]);
-            NatNum32 tensorFlowPort = new NatNum32(Configuration.AstServerAuthority.split(":")[1]);
-            synthesizer = new ApiSynthesizerRemoteTensorFlowAsts(tensorFlowHost, tensorFlowPort,
-                                                                 Configuration.SynthesizeTimeoutMs,
+            synthesizer = new ApiSynthesizerRemoteTensorFlowAsts(getAstServerDispatcher(), getAstRequestBatcher(),
+                                                                 getAstResponseCache(),
                                                                  Configuration.EvidenceClasspath,
                                                                  Configuration.AndroidJarPath,
                                                                  Configuration.ApiSynthMode,
-                                                                 enableThreadSchedulingIfSupported);
+                                                                 enableThreadSchedulingIfSupported,
+                                                                 getSynthesisExecutor(),
+                                                                 Configuration.SynthesisParallelism);
         }
 
         _logger.debug("exiting");
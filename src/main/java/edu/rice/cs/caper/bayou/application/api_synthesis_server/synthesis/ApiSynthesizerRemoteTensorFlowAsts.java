@@ -15,23 +15,14 @@ limitations under the License.
 */
 package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
 
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics.SynthesisMetrics;
+import edu.rice.cs.caper.bayou.core.synthesizer.ApiTypeIndex;
 import edu.rice.cs.caper.bayou.core.synthesizer.EvidenceExtractor;
 import edu.rice.cs.caper.bayou.core.synthesizer.ParseException;
 import edu.rice.cs.caper.bayou.core.synthesizer.Parser;
 import edu.rice.cs.caper.bayou.core.synthesizer.Synthesizer;
 import edu.rice.cs.caper.programming.ContentString;
 import edu.rice.cs.caper.programming.numbers.NatNum32;
-import edu.rice.cs.caper.programming.thread.Operation;
-import edu.rice.cs.caper.programming.thread.ThreadScheduler;
-import edu.rice.cs.caper.programming.thread.ThreadSchedulerFifoInterrupt;
-import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
@@ -39,8 +30,11 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
 
@@ -55,27 +49,31 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
     private static final Logger _logger = LogManager.getLogger(ApiSynthesizerRemoteTensorFlowAsts.class.getName());
 
     /**
-     * Thread scheduler to ensure that the TensorFlow synthesizer has 1 client at a time
-     * *NOTE*: This restriction is a property of Python being single threaded.
-     *         If the synthesizer moves to a multithreaded implementation, the thread scheduler
-     *         might be obviated.
+     * The number of consecutive failures after which a tensor flow host is ejected, when there is only one host.
      */
-    private static final ThreadScheduler _scheduler = new ThreadSchedulerFifoInterrupt(new NatNum32(1));
+    private static final NatNum32 DEFAULT_FAILURES_BEFORE_EJECTION = new NatNum32(3);
 
     /**
-     * The network name of the tensor flow host server.
+     * How long in milliseconds a tensor flow host is ejected, when there is only one host.
      */
-    private final ContentString _tensorFlowHost;
+    private static final NatNum32 DEFAULT_EJECTION_MS = new NatNum32(10000);
 
     /**
-     * The port of the tensor flow host on which connections requests are expected.
+     * Dispatches requests to the tensor flow host(s), limiting the number of requests each host serves at once.
+     * *NOTE*: A single Python host serves 1 client at a time, since Python is single threaded.
      */
-    private final NatNum32 _tensorFlowPort;
+    private final AstServerDispatcher _astServerDispatcher;
 
     /**
-     * The max time in milliseconds to wait for all responses per request from the tensor flow host.
+     * Batches the evidence of concurrent requests into single AST server requests, or null if requests are not
+     * batched.
      */
-    private final NatNum32 _maxNetworkWaitTimeMs;
+    private final AstRequestBatcher _astRequestBatcher;
+
+    /**
+     * Previously generated tensor flow host responses keyed by evidence, or null if responses are not cached.
+     */
+    private final AstResponseCache _astResponseCache;
 
     /**
      * A classpath string that includes the class edu.rice.cs.caper.bayou.annotations.Evidence.
@@ -93,6 +91,24 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
     private final Synthesizer.Mode _synthMode;
     private final boolean _useThreadScheduler;
 
+    /**
+     * The executor on which the sketches of a request are synthesized concurrently, or null if they are
+     * synthesized one by one.
+     */
+    private final ExecutorService _synthesisExecutor;
+
+    /**
+     * The maximum number of sketches of a request that are synthesized concurrently.
+     */
+    private final NatNum32 _synthesisParallelism;
+
+    /**
+     * Where the stage timings of synthesis are recorded. The shared metrics for instances that use the thread
+     * scheduler, and metrics of their own, which are not reported, for high priority instances (the heartbeat), so
+     * that the frequent heartbeat does not skew the reported request timings.
+     */
+    private final SynthesisMetrics _metrics;
+
     /**
      * @param tensorFlowHost  The network name of the tensor flow host server. May not be null.
      * @param tensorFlowPort The port the tensor flow host server on which connections requests are expected.
@@ -109,24 +125,116 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
                                               NatNum32 maxNetworkWaitTimeMs, ContentString evidenceClasspath,
                                               File androidJarPath, Synthesizer.Mode synthMode, boolean useThreadScheduler)
     {
-        _logger.debug("entering");
+        this(tensorFlowHost, tensorFlowPort, maxNetworkWaitTimeMs, evidenceClasspath, androidJarPath, synthMode,
+             useThreadScheduler, null, new NatNum32(1));
+    }
 
-        if(tensorFlowHost == null)
-        {
-            _logger.debug("exiting");
-            throw new NullPointerException("tensorFlowHost");
-        }
+    /**
+     * @param tensorFlowHost  The network name of the tensor flow host server. May not be null.
+     * @param tensorFlowPort The port the tensor flow host server on which connections requests are expected.
+     *                       May not be negative.
+     * @param maxNetworkWaitTimeMs The max time in milliseconds to wait for a response from the tensor flow host.
+     * @param evidenceClasspath A classpath string that includes the class edu.rice.cs.caper.bayou.annotations.Evidence.
+     *                          May not be null.
+     * @param androidJarPath The path to android.jar. May not be null.
+     * @param synthMode The type of API synthesis that should be performed.
+     * @param useThreadScheduler High priority synthesis requests (currently only the AWS heartbeat) should skip
+     *                           the thread scheduler. useThreadScheduler is true for all other instances of this class.
+     * @param synthesisExecutor The executor on which the sketches of a request are synthesized concurrently.
+     *                          May be null, in which case sketches are synthesized one by one.
+     * @param synthesisParallelism The maximum number of sketches of a request that are synthesized concurrently.
+     *                             May not be null.
+     */
+    public ApiSynthesizerRemoteTensorFlowAsts(ContentString tensorFlowHost, NatNum32 tensorFlowPort,
+                                              NatNum32 maxNetworkWaitTimeMs, ContentString evidenceClasspath,
+                                              File androidJarPath, Synthesizer.Mode synthMode, boolean useThreadScheduler,
+                                              ExecutorService synthesisExecutor, NatNum32 synthesisParallelism)
+    {
+        this(makeSingleHostDispatcher(tensorFlowHost, tensorFlowPort, maxNetworkWaitTimeMs), evidenceClasspath,
+             androidJarPath, synthMode, useThreadScheduler, synthesisExecutor, synthesisParallelism);
+    }
 
-        if(tensorFlowPort == null)
-        {
-            _logger.debug("exiting");
-            throw new NullPointerException("tensorFlowPort");
-        }
+    /**
+     * @param astServerDispatcher Dispatches requests to the tensor flow host(s). May not be null.
+     * @param evidenceClasspath A classpath string that includes the class edu.rice.cs.caper.bayou.annotations.Evidence.
+     *                          May not be null.
+     * @param androidJarPath The path to android.jar. May not be null.
+     * @param synthMode The type of API synthesis that should be performed.
+     * @param useThreadScheduler High priority synthesis requests (currently only the AWS heartbeat) should skip
+     *                           the per host concurrency limits. useThreadScheduler is true for all other instances
+     *                           of this class.
+     * @param synthesisExecutor The executor on which the sketches of a request are synthesized concurrently.
+     *                          May be null, in which case sketches are synthesized one by one.
+     * @param synthesisParallelism The maximum number of sketches of a request that are synthesized concurrently.
+     *                             May not be null.
+     */
+    public ApiSynthesizerRemoteTensorFlowAsts(AstServerDispatcher astServerDispatcher,
+                                              ContentString evidenceClasspath, File androidJarPath,
+                                              Synthesizer.Mode synthMode, boolean useThreadScheduler,
+                                              ExecutorService synthesisExecutor, NatNum32 synthesisParallelism)
+    {
+        this(astServerDispatcher, null, evidenceClasspath, androidJarPath, synthMode, useThreadScheduler,
+             synthesisExecutor, synthesisParallelism);
+    }
 
-        if(maxNetworkWaitTimeMs == null)
+    /**
+     * @param astServerDispatcher Dispatches requests to the tensor flow host(s). May not be null.
+     * @param astRequestBatcher Batches the evidence of concurrent requests into single tensor flow host requests.
+     *                          Must dispatch through astServerDispatcher. May be null, in which case requests are
+     *                          not batched.
+     * @param evidenceClasspath A classpath string that includes the class edu.rice.cs.caper.bayou.annotations.Evidence.
+     *                          May not be null.
+     * @param androidJarPath The path to android.jar. May not be null.
+     * @param synthMode The type of API synthesis that should be performed.
+     * @param useThreadScheduler High priority synthesis requests (currently only the AWS heartbeat) should skip
+     *                           the per host concurrency limits and batching. useThreadScheduler is true for all
+     *                           other instances of this class.
+     * @param synthesisExecutor The executor on which the sketches of a request are synthesized concurrently.
+     *                          May be null, in which case sketches are synthesized one by one.
+     * @param synthesisParallelism The maximum number of sketches of a request that are synthesized concurrently.
+     *                             May not be null.
+     */
+    public ApiSynthesizerRemoteTensorFlowAsts(AstServerDispatcher astServerDispatcher,
+                                              AstRequestBatcher astRequestBatcher,
+                                              ContentString evidenceClasspath, File androidJarPath,
+                                              Synthesizer.Mode synthMode, boolean useThreadScheduler,
+                                              ExecutorService synthesisExecutor, NatNum32 synthesisParallelism)
+    {
+        this(astServerDispatcher, astRequestBatcher, null, evidenceClasspath, androidJarPath, synthMode,
+             useThreadScheduler, synthesisExecutor, synthesisParallelism);
+    }
+
+    /**
+     * @param astServerDispatcher Dispatches requests to the tensor flow host(s). May not be null.
+     * @param astRequestBatcher Batches the evidence of concurrent requests into single tensor flow host requests.
+     *                          Must dispatch through astServerDispatcher. May be null, in which case requests are
+     *                          not batched.
+     * @param astResponseCache Previously generated tensor flow host responses keyed by evidence. May be null, in
+     *                         which case responses are not cached.
+     * @param evidenceClasspath A classpath string that includes the class edu.rice.cs.caper.bayou.annotations.Evidence.
+     *                          May not be null.
+     * @param androidJarPath The path to android.jar. May not be null.
+     * @param synthMode The type of API synthesis that should be performed.
+     * @param useThreadScheduler High priority synthesis requests (currently only the AWS heartbeat) should skip
+     *                           the per host concurrency limits, batching and caching. useThreadScheduler is true for
+     *                           all other instances of this class.
+     * @param synthesisExecutor The executor on which the sketches of a request are synthesized concurrently.
+     *                          May be null, in which case sketches are synthesized one by one.
+     * @param synthesisParallelism The maximum number of sketches of a request that are synthesized concurrently.
+     *                             May not be null.
+     */
+    public ApiSynthesizerRemoteTensorFlowAsts(AstServerDispatcher astServerDispatcher,
+                                              AstRequestBatcher astRequestBatcher, AstResponseCache astResponseCache,
+                                              ContentString evidenceClasspath, File androidJarPath,
+                                              Synthesizer.Mode synthMode, boolean useThreadScheduler,
+                                              ExecutorService synthesisExecutor, NatNum32 synthesisParallelism)
+    {
+        _logger.debug("entering");
+
+        if(astServerDispatcher == null)
         {
             _logger.debug("exiting");
-            throw new NullPointerException("maxNetworkWaitTimeMs");
+            throw new NullPointerException("astServerDispatcher");
         }
 
         if(evidenceClasspath == null)
@@ -153,19 +261,49 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
             throw new NullPointerException("tensorFlowHost");
         }
 
-        _tensorFlowHost = tensorFlowHost;
-        _tensorFlowPort = tensorFlowPort;
-        _maxNetworkWaitTimeMs = maxNetworkWaitTimeMs;
+        if(synthesisParallelism == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("synthesisParallelism");
+        }
+
+        _astServerDispatcher = astServerDispatcher;
+        _astRequestBatcher = astRequestBatcher;
+        _astResponseCache = astResponseCache;
         _evidenceClasspath = evidenceClasspath;
         _androidJarPath = androidJarPath;
         _synthMode = synthMode;
         _useThreadScheduler = useThreadScheduler;
+        _synthesisExecutor = synthesisExecutor;
+        _synthesisParallelism = synthesisParallelism;
+        _metrics = useThreadScheduler ? SynthesisMetrics.getShared() : new SynthesisMetrics();
 
-	    _logger.trace("_tensorFlowHost:" + _tensorFlowHost);
+        _logger.trace("_astServerDispatcher:" + _astServerDispatcher.getEndpoints());
         _logger.trace("_evidenceClasspath:" + _evidenceClasspath);
         _logger.debug("exiting");
     }
 
+    /**
+     * @return a dispatcher to the given host that has it serve one request at a time.
+     */
+    private static AstServerDispatcher makeSingleHostDispatcher(ContentString tensorFlowHost, NatNum32 tensorFlowPort,
+                                                                NatNum32 maxNetworkWaitTimeMs)
+    {
+        if(tensorFlowHost == null)
+            throw new NullPointerException("tensorFlowHost");
+
+        if(tensorFlowPort == null)
+            throw new NullPointerException("tensorFlowPort");
+
+        if(maxNetworkWaitTimeMs == null)
+            throw new NullPointerException("maxNetworkWaitTimeMs");
+
+        AstServerEndpoint endpoint = new AstServerEndpoint(tensorFlowHost, tensorFlowPort, new NatNum32(1),
+                                                           maxNetworkWaitTimeMs);
+        return new AstServerDispatcher(Collections.singletonList(endpoint), DEFAULT_FAILURES_BEFORE_EJECTION,
+                                       DEFAULT_EJECTION_MS);
+    }
+
     @Override
     public Iterable<String> synthesise(String searchCode, NatNum32 maxProgramCount) throws SynthesiseException
     {
@@ -197,6 +335,7 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
         /*
          * Parse the program.
          */
+        long parseStart = System.nanoTime();
         Parser parser;
         try
         {
@@ -208,10 +347,12 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
         {
             throw new SynthesiseException(e);
         }
+        _metrics.recordSince(SynthesisMetrics.Stage.PARSE, parseStart);
 
         /*
          * Extract a description of the evidence in the search code that should guide AST results generation.
          */
+        long extractStart = System.nanoTime();
         String evidence;
         try
         {
@@ -221,28 +362,45 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
         {
             throw new SynthesiseException(e);
         }
+        _metrics.recordSince(SynthesisMetrics.Stage.EXTRACT_EVIDENCE, extractStart);
 
         /*
          * Contact the remote server (possibly multiple network requests) and provide evidence to be fed to Tensor Flow
          * to generate solution ASTs.
          */
-        JSONObject astsJson = null;
+        /*
+         * The heartbeat bypasses the cache since its purpose is to check that the tensor flow host is responsive.
+         */
+        boolean useCache = _useThreadScheduler && _astResponseCache != null;
+        JSONObject astsJson = useCache ? _astResponseCache.get(evidence) : null;
+        boolean cached = astsJson != null;
+        if (useCache)
+            _metrics.recordCacheLookup(SynthesisMetrics.Cache.AST_RESPONSE, cached);
         /*
          * For the current implementation of this synthesizer, we must serialize the request to the python layer.
          *
          */
+        long modelStart = System.nanoTime();
         try
         {
             /*
-             * if we should useThreadScheduler, send sendGenerate... to our thread scheduler
+             * if we should useThreadScheduler, respect the concurrency limits of the hosts (batching if enabled)
              */
-            if (_useThreadScheduler)
+            if (cached)
             {
-                astsJson = _scheduler.schedule(() -> sendGenerateAstRequest(evidence));
+                _logger.trace("using cached astsJson");
+            }
+            else if (_useThreadScheduler && _astRequestBatcher != null)
+            {
+                astsJson = _astRequestBatcher.generateAsts(evidence);
+            }
+            else if (_useThreadScheduler)
+            {
+                astsJson = _astServerDispatcher.dispatch(client -> sendGenerateAstRequest(client, evidence));
             }
             else
             {
-                astsJson = sendGenerateAstRequest(evidence);
+                astsJson = _astServerDispatcher.dispatchUnlimited(client -> sendGenerateAstRequest(client, evidence));
             }
 
         }
@@ -250,14 +408,32 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
         {
             throw new SynthesiseException(e);
         }
+        if (!cached)
+            _metrics.recordSince(SynthesisMetrics.Stage.MODEL_ROUND_TRIP, modelStart);
         _logger.trace("astsJson:" + astsJson);
 
+        if (useCache && !cached)
+            _astResponseCache.put(evidence, astsJson);
+
         /*
          * Synthesise results from the code and asts and return.
          */
         List<String> synthesizedPrograms;
         {
-            synthesizedPrograms = new Synthesizer(_synthMode).execute(parser, astsJson.toString());
+            long synthesizeStart = System.nanoTime();
+            Synthesizer synthesizer = new Synthesizer(_synthMode, ApiTypeIndex.getShared(), _synthesisExecutor,
+                                                      _synthesisParallelism.AsInt);
+            synthesizer.setListener(_metrics);
+            Set<String> errors = new HashSet<>();
+            synthesizedPrograms = synthesizer.synthesize(parser, astsJson.toString(), errors);
+            _metrics.recordSince(SynthesisMetrics.Stage.SYNTHESIZE, synthesizeStart);
+
+            if (synthesizedPrograms.isEmpty())
+            {
+                _logger.trace("no programs synthesized: " + errors);
+                _logger.debug("exiting");
+                return new UnsynthesizedResults(Synthesizer.describeFailure(errors));
+            }
 
             if (synthesizedPrograms.size() > maxProgramCount.AsInt) // only return top maxProgramCount
                 synthesizedPrograms = synthesizedPrograms.subList(0, maxProgramCount.AsInt);
@@ -268,7 +444,7 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
         return synthesizedPrograms;
     }
 
-    private JSONObject sendGenerateAstRequest(String evidence)
+    private JSONObject sendGenerateAstRequest(AstServerClient client, String evidence)
             throws IOException
     {
         _logger.debug("entering");
@@ -282,38 +458,13 @@ public class ApiSynthesizerRemoteTensorFlowAsts implements ApiSynthesizer
             throw new NullPointerException("evidence");
         }
 
-        String astServerHttpResponseBody;
-        {
-
-            RequestConfig config = RequestConfig.custom().setConnectTimeout(_maxNetworkWaitTimeMs.AsInt)
-                    .setSocketTimeout(_maxNetworkWaitTimeMs.AsInt)
-                    .build();
-
-            try (CloseableHttpClient client = HttpClientBuilder.create().setDefaultRequestConfig(config).build())
-            {
-                JSONObject requestObj = new JSONObject();
-                requestObj.put("request type", "generate asts");
-                requestObj.put("evidence", evidence);
-
-                HttpPost httppost = new HttpPost("http://" + _tensorFlowHost + ":" + _tensorFlowPort);
-                httppost.setEntity(new StringEntity(requestObj.toString(2)));
-
-                HttpResponse response = client.execute(httppost);
-                int responseStatusCode = response.getStatusLine().getStatusCode();
-
-                if (responseStatusCode != 200)
-                    throw new IOException("Unexpected http response code: " + responseStatusCode);
-
-                HttpEntity entity = response.getEntity();
-
-                if (entity == null)
-                    throw new IOException("Expected response body.");
-
-                astServerHttpResponseBody = IOUtils.toString(entity.getContent(), "UTF-8");
-            }
-        }
+        JSONObject requestObj = new JSONObject();
+        requestObj.put("request type", "generate asts");
+        requestObj.put("evidence", evidence);
 
-        JSONObject responseObject = new JSONObject(astServerHttpResponseBody);
+        JSONObject responseObject = client.send(requestObj);
+        _logger.trace(client.getConnectLatency() + " " + client.getWaitLatency() + " " +
+                      client.getTransferLatency());
         _logger.debug("exiting");
         return responseObject;
 
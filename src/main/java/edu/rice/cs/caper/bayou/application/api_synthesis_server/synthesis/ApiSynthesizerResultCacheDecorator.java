@@ -0,0 +1,226 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics.SynthesisMetrics;
+import edu.rice.cs.caper.bayou.core.lexer.UnexpectedEndOfCharacters;
+import edu.rice.cs.caper.bayou.core.lexer.ccll._1_0.*;
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+
+/**
+ * An ApiSynthesizer decorator (pattern) that returns previously synthesized results for code that is the same as
+ * earlier code up to whitespace.
+ *
+ * n.b. comments and blank lines are part of the comparison since they survive formatting into the synthesized
+ * programs, so the returned results never carry the comments of somebody else's code.
+ */
+public class ApiSynthesizerResultCacheDecorator implements ApiSynthesizer
+{
+    /**
+     * Place to send application logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(ApiSynthesizerResultCacheDecorator.class.getName());
+
+    /**
+     * The underlying synthesizer this class decorates.
+     */
+    private final ApiSynthesizer _synthesizer;
+
+    /**
+     * The results of previous synthesis requests.
+     */
+    private final SynthesisResultCache _cache;
+
+    /**
+     * @param synthesisStrategy the underlying synthesizer to receive the code on cache misses. May not be null.
+     * @param cache the results of previous synthesis requests. May not be null.
+     */
+    public ApiSynthesizerResultCacheDecorator(ApiSynthesizer synthesisStrategy, SynthesisResultCache cache)
+    {
+        _logger.debug("entering");
+
+        if(synthesisStrategy == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("synthesisStrategy");
+        }
+
+        if(cache == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("cache");
+        }
+
+        _synthesizer = synthesisStrategy;
+        _cache = cache;
+        _logger.debug("exiting");
+    }
+
+    @Override
+    public Iterable<String> synthesise(String code, NatNum32 maxProgramCount) throws SynthesiseException
+    {
+        _logger.debug("entering");
+
+        if(code == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("code");
+        }
+
+        if(maxProgramCount == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("maxProgramCount");
+        }
+
+        String normalizedCode;
+        try
+        {
+            normalizedCode = normalize(code);
+        }
+        catch (UnexpectedEndOfCharacters e)
+        {
+            _logger.debug("exiting");
+            return _synthesizer.synthesise(code, maxProgramCount); // let the underlying synthesizer report the error
+        }
+
+        String key = maxProgramCount + "\n" + normalizedCode;
+        List<String> cachedResults = _cache.get(key);
+        SynthesisMetrics.getShared().recordCacheLookup(SynthesisMetrics.Cache.SYNTHESIS_RESULT, cachedResults != null);
+        if(cachedResults != null)
+        {
+            _logger.trace("using cached results");
+            _logger.debug("exiting");
+            return cachedResults;
+        }
+
+        Iterable<String> results = _synthesizer.synthesise(code, maxProgramCount);
+        if(!(results instanceof UnsynthesizedResults)) // a later attempt may synthesize a program
+            _cache.put(key, results);
+        _logger.debug("exiting");
+        return results;
+    }
+
+    /**
+     * How normalize treats the lexeme of a token.
+     */
+    private enum LexemeTreatment { KEEP, KEEP_LINE, COLLAPSE_WHITESPACE }
+
+    // collapse whitespace outside of strings and comments, keeping blank lines (which survive formatting).
+    // comments are kept and each line comment is kept on its own line.
+    // n.b. static for testing without construction
+    static String normalize(String code) throws UnexpectedEndOfCharacters
+    {
+        StringBuilder normalizedCodeAccum = new StringBuilder();
+        boolean pendingSpace = false; // whitespace was skipped since the last appended character
+        int pendingLineBreaks = 0; // the number of line breaks in that whitespace
+
+        for(Token token : CcllLexer.makeDefault().lex(code))
+        {
+            LexemeTreatment treatment = token.getType().match(new TokenTypeCases<LexemeTreatment, RuntimeException>()
+            {
+                @Override
+                public LexemeTreatment forLineComment(TokenTypeLineComment lineComment)
+                {
+                    return LexemeTreatment.KEEP_LINE;
+                }
+
+                @Override
+                public LexemeTreatment forOther(TokenTypeOther other)
+                {
+                    return LexemeTreatment.COLLAPSE_WHITESPACE;
+                }
+
+                @Override
+                public LexemeTreatment forString(TokenTypeString string)
+                {
+                    return LexemeTreatment.KEEP;
+                }
+
+                @Override
+                public LexemeTreatment forBlockComment(TokenTypeBlockComment blockComment)
+                {
+                    return LexemeTreatment.KEEP;
+                }
+            });
+
+            switch (treatment)
+            {
+                case KEEP:
+                    appendPendingSpace(normalizedCodeAccum, pendingSpace, pendingLineBreaks);
+                    pendingSpace = false;
+                    pendingLineBreaks = 0;
+                    normalizedCodeAccum.append(token.getLexeme());
+                    break;
+                case KEEP_LINE:
+                    appendPendingSpace(normalizedCodeAccum, pendingSpace, pendingLineBreaks);
+                    pendingSpace = false;
+                    pendingLineBreaks = 1; // the line break that ends the comment
+                    normalizedCodeAccum.append(token.getLexeme().trim()).append('\n');
+                    break;
+                case COLLAPSE_WHITESPACE:
+                    for(char c : token.getLexeme().toCharArray())
+                    {
+                        if(Character.isWhitespace(c))
+                        {
+                            pendingSpace = true;
+                            if(c == '\n')
+                                pendingLineBreaks++;
+                            continue;
+                        }
+
+                        appendPendingSpace(normalizedCodeAccum, pendingSpace, pendingLineBreaks);
+                        pendingSpace = false;
+                        pendingLineBreaks = 0;
+                        normalizedCodeAccum.append(c);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("unknown treatment " + treatment);
+            }
+        }
+
+        return normalizedCodeAccum.toString();
+    }
+
+    // skipped whitespace becomes an empty line if it contained a blank line and a single space otherwise, except at
+    // the start of the code or of a line
+    private static void appendPendingSpace(StringBuilder normalizedCodeAccum, boolean pendingSpace,
+                                           int pendingLineBreaks)
+    {
+        if(normalizedCodeAccum.length() == 0)
+            return;
+
+        boolean atLineStart = normalizedCodeAccum.charAt(normalizedCodeAccum.length() - 1) == '\n';
+
+        if(pendingLineBreaks >= 2)
+        {
+            if(!atLineStart)
+                normalizedCodeAccum.append('\n');
+            normalizedCodeAccum.append('\n');
+            return;
+        }
+
+        if(!pendingSpace || atLineStart)
+            return;
+
+        normalizedCodeAccum.append(' ');
+    }
+}
@@ -15,6 +15,7 @@ limitations under the License.
 */
 package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
 
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics.SynthesisMetrics;
 import edu.rice.cs.caper.bayou.core.lexer.UnexpectedEndOfCharacters;
 import edu.rice.cs.caper.bayou.core.lexer.ccll._1_0.*;
 import edu.rice.cs.caper.bayou.core.parser.evidencel._1_0.*;
@@ -84,6 +85,7 @@ public class ApiSynthesizerRewriteEvidenceDecorator implements ApiSynthesizer
         /*
          * Rewrite evidence from /// format to fully qualified format.
          */
+        long rewriteStart = System.nanoTime();
         String rewrittenCode;
         try
         {
@@ -94,6 +96,7 @@ public class ApiSynthesizerRewriteEvidenceDecorator implements ApiSynthesizer
             _logger.debug("exiting");
             throw new SynthesiseException(e);
         }
+        SynthesisMetrics.getShared().recordSince(SynthesisMetrics.Stage.REWRITE_EVIDENCE, rewriteStart);
         _logger.trace("rewrittenCode:" + rewrittenCode);
 
         /*
@@ -0,0 +1,260 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the evidence of concurrent AST generation requests for a short window and sends them to the AST server
+ * as a single batched request, then hands each caller its own result.
+ *
+ * The first caller of a batch waits for the window to pass (or for the batch to fill up) and then sends the batch
+ * on behalf of everyone in it. A batch of one is sent as a plain "generate asts" request.
+ *
+ * The AST server infers the evidences of a batch one after another while the batch occupies a single dispatcher
+ * slot, so the time waited for a batch response is scaled by the batch size.
+ *
+ * Thread safe.
+ */
+public class AstRequestBatcher
+{
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(AstRequestBatcher.class.getName());
+
+    /**
+     * The evidence of one caller and the place its result is delivered to.
+     */
+    private static class PendingRequest
+    {
+        final String evidence;
+
+        final CompletableFuture<JSONObject> result = new CompletableFuture<>();
+
+        PendingRequest(String evidence)
+        {
+            this.evidence = evidence;
+        }
+    }
+
+    /**
+     * Dispatches the batched requests to the AST server(s).
+     */
+    private final AstServerDispatcher _dispatcher;
+
+    /**
+     * How long the first caller of a batch waits for further callers to join.
+     */
+    private final long _windowNanos;
+
+    /**
+     * The maximum number of evidences sent in one batch.
+     */
+    private final NatNum32 _maxBatchSize;
+
+    /**
+     * Guards _pending.
+     *
+     * A lock rather than a monitor so that waiting for the window to pass does not pin the carrier of a virtual
+     * thread.
+     */
+    private final ReentrantLock _lock = new ReentrantLock();
+
+    /**
+     * Signalled when the batch that is being collected is full.
+     */
+    private final Condition _batchFull = _lock.newCondition();
+
+    /**
+     * The requests of the batch that is currently being collected. Replaced as soon as the batch is full, so a batch
+     * never grows beyond _maxBatchSize while its first caller has yet to send it.
+     */
+    private List<PendingRequest> _pending = new ArrayList<>();
+
+    /**
+     * @param dispatcher dispatches the batched requests to the AST server(s). May not be null.
+     * @param windowMs how long in milliseconds the first caller of a batch waits for further callers to join.
+     *                 May not be null.
+     * @param maxBatchSize the maximum number of evidences sent in one batch. May not be null or zero.
+     */
+    public AstRequestBatcher(AstServerDispatcher dispatcher, NatNum32 windowMs, NatNum32 maxBatchSize)
+    {
+        if(dispatcher == null)
+            throw new NullPointerException("dispatcher");
+
+        if(windowMs == null)
+            throw new NullPointerException("windowMs");
+
+        if(maxBatchSize == null)
+            throw new NullPointerException("maxBatchSize");
+
+        if(maxBatchSize.AsInt == 0)
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+
+        _dispatcher = dispatcher;
+        _windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs.AsInt);
+        _maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Generates the ASTs for the given evidence, possibly as part of a batch with the evidence of other callers.
+     *
+     * @param evidence the evidence JSON string. May not be null.
+     * @return the response of the AST server for the given evidence.
+     * @throws IOException if there is a problem communicating with the AST server.
+     */
+    public JSONObject generateAsts(String evidence) throws IOException
+    {
+        _logger.debug("entering");
+
+        if(evidence == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("evidence");
+        }
+
+        PendingRequest request = new PendingRequest(evidence);
+        List<PendingRequest> batch = null;
+        _lock.lock();
+        try
+        {
+            List<PendingRequest> collecting = _pending;
+            collecting.add(request);
+
+            if(collecting.size() == 1) // first of the batch, so wait for others and then send
+            {
+                long deadline = System.nanoTime() + _windowNanos;
+                long remainingNanos;
+                while(collecting.size() < _maxBatchSize.AsInt && (remainingNanos = deadline - System.nanoTime()) > 0)
+                {
+                    try
+                    {
+                        _batchFull.awaitNanos(remainingNanos);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt(); // still send the batch so the others are not stranded
+                        break;
+                    }
+                }
+
+                batch = collecting;
+                if(_pending == collecting) // else the caller that filled the batch already started the next one
+                    _pending = new ArrayList<>();
+            }
+            else if(collecting.size() >= _maxBatchSize.AsInt)
+            {
+                _pending = new ArrayList<>(); // batch is full, so later callers start the next one
+                _batchFull.signalAll(); // and wake the first caller of this one
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+
+        if(batch != null)
+            send(batch);
+
+        try
+        {
+            JSONObject result = request.result.get();
+            _logger.debug("exiting");
+            return result;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            _logger.debug("exiting");
+            throw new InterruptedIOException("interrupted while waiting for a batched AST request");
+        }
+        catch (ExecutionException e)
+        {
+            _logger.debug("exiting");
+            if(e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Sends the given batch and completes the result of each of its requests.
+     */
+    private void send(List<PendingRequest> batch)
+    {
+        _logger.trace("batch size:" + batch.size());
+
+        try
+        {
+            if(batch.size() == 1)
+            {
+                JSONObject requestObj = new JSONObject();
+                requestObj.put("request type", "generate asts");
+                requestObj.put("evidence", batch.get(0).evidence);
+                batch.get(0).result.complete(_dispatcher.dispatch(client -> client.send(requestObj)));
+                return;
+            }
+
+            JSONArray evidences = new JSONArray();
+            for(PendingRequest request : batch)
+                evidences.put(request.evidence);
+
+            JSONObject requestObj = new JSONObject();
+            requestObj.put("request type", "generate asts batch");
+            requestObj.put("evidences", evidences);
+
+            NatNum32 inferenceCount = new NatNum32(batch.size());
+            JSONObject responseObj = _dispatcher.dispatch(client -> client.send(requestObj, inferenceCount));
+
+            JSONArray results;
+            try
+            {
+                results = responseObj.getJSONArray("results");
+            }
+            catch (JSONException e)
+            {
+                throw new IOException("Malformed batch response.", e);
+            }
+
+            if(results.length() != batch.size())
+                throw new IOException("Expected " + batch.size() + " batch results but found " + results.length());
+
+            for(int i = 0; i < batch.size(); i++)
+                batch.get(i).result.complete(results.getJSONObject(i));
+        }
+        catch (IOException | RuntimeException e)
+        {
+            for(PendingRequest request : batch)
+                request.result.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * A cache of AST server responses keyed by the evidence they were generated from.
+ *
+ * Evidence is canonicalized (object keys sorted) before lookup, so evidence that differs only in key order shares
+ * an entry. The least recently used entry is evicted when the cache is full and entries expire after a fixed time
+ * to live. The cache can optionally be persisted to a file so it survives restarts.
+ *
+ * Thread safe.
+ */
+public class AstResponseCache
+{
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(AstResponseCache.class.getName());
+
+    /**
+     * A cached response and the time (per _clock) after which it is no longer used.
+     */
+    private static class Entry
+    {
+        final String response;
+
+        final long expiresAtMs;
+
+        Entry(String response, long expiresAtMs)
+        {
+            this.response = response;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    /**
+     * The maximum number of entries.
+     */
+    private final NatNum32 _maxEntries;
+
+    /**
+     * How long an entry is used after it was added.
+     */
+    private final long _timeToLiveMs;
+
+    /**
+     * Where the cache is persisted, or null if it is not persisted.
+     */
+    private final File _persistencePath;
+
+    /**
+     * The current time in milliseconds since the epoch.
+     */
+    private final LongSupplier _clock;
+
+    /**
+     * The entries keyed by canonical evidence, in least to most recently used order. Guarded by itself.
+     */
+    private final LinkedHashMap<String, Entry> _entries;
+
+    private long _hitCount = 0;
+
+    private long _missCount = 0;
+
+    private long _evictionCount = 0;
+
+    /**
+     * @param maxEntries the maximum number of cached responses. May not be null or zero.
+     * @param timeToLiveMs how long in milliseconds a cached response is used. May not be null.
+     * @param persistencePath the file the cache is loaded from (if it exists) and saved to by save().
+     *                        May be null, in which case the cache is not persisted.
+     */
+    public AstResponseCache(NatNum32 maxEntries, NatNum32 timeToLiveMs, File persistencePath)
+    {
+        this(maxEntries, timeToLiveMs, persistencePath, System::currentTimeMillis);
+    }
+
+    // n.b. clock is a parameter for testing
+    AstResponseCache(NatNum32 maxEntries, NatNum32 timeToLiveMs, File persistencePath, LongSupplier clock)
+    {
+        if(maxEntries == null)
+            throw new NullPointerException("maxEntries");
+
+        if(maxEntries.AsInt == 0)
+            throw new IllegalArgumentException("maxEntries must be positive");
+
+        if(timeToLiveMs == null)
+            throw new NullPointerException("timeToLiveMs");
+
+        if(clock == null)
+            throw new NullPointerException("clock");
+
+        _maxEntries = maxEntries;
+        _timeToLiveMs = timeToLiveMs.AsInt;
+        _persistencePath = persistencePath;
+        _clock = clock;
+        _entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                if(size() <= _maxEntries.AsInt)
+                    return false;
+
+                _evictionCount++;
+                return true;
+            }
+        };
+
+        if(_persistencePath != null && _persistencePath.exists())
+            load();
+    }
+
+    /**
+     * @param evidence the evidence JSON string the response was generated from. May not be null.
+     * @return a copy of the cached response for the evidence, or null if there is none.
+     */
+    public JSONObject get(String evidence)
+    {
+        String key = canonicalize(evidence);
+        synchronized (_entries)
+        {
+            Entry entry = _entries.get(key);
+            if(entry != null && _clock.getAsLong() >= entry.expiresAtMs)
+            {
+                _entries.remove(key);
+                entry = null;
+            }
+
+            if(entry == null)
+            {
+                _missCount++;
+                return null;
+            }
+
+            _hitCount++;
+            return new JSONObject(entry.response);
+        }
+    }
+
+    /**
+     * Caches the given response for the given evidence.
+     *
+     * @param evidence the evidence JSON string the response was generated from. May not be null.
+     * @param response the AST server response. May not be null.
+     */
+    public void put(String evidence, JSONObject response)
+    {
+        if(response == null)
+            throw new NullPointerException("response");
+
+        String key = canonicalize(evidence);
+        synchronized (_entries)
+        {
+            _entries.put(key, new Entry(response.toString(), _clock.getAsLong() + _timeToLiveMs));
+        }
+    }
+
+    /**
+     * Writes the unexpired entries to the persistence path, if any.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public void save() throws IOException
+    {
+        if(_persistencePath == null)
+            return;
+
+        JSONArray entries = new JSONArray();
+        synchronized (_entries)
+        {
+            long now = _clock.getAsLong();
+            for(Map.Entry<String, Entry> entry : _entries.entrySet())
+            {
+                if(now >= entry.getValue().expiresAtMs)
+                    continue;
+
+                entries.put(new JSONObject().put("evidence", entry.getKey())
+                                            .put("response", entry.getValue().response)
+                                            .put("expiresAtMs", entry.getValue().expiresAtMs));
+            }
+        }
+
+        FileUtils.writeStringToFile(_persistencePath, entries.toString(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the entries from the persistence path. A corrupt or unreadable file is logged and ignored.
+     */
+    private void load()
+    {
+        try
+        {
+            JSONArray entries = new JSONArray(FileUtils.readFileToString(_persistencePath, StandardCharsets.UTF_8));
+            synchronized (_entries)
+            {
+                for(int i = 0; i < entries.length(); i++)
+                {
+                    JSONObject entry = entries.getJSONObject(i);
+                    _entries.put(entry.getString("evidence"), new Entry(entry.getString("response"),
+                                                                        entry.getLong("expiresAtMs")));
+                }
+                _evictionCount = 0;
+            }
+        }
+        catch (IOException | JSONException e)
+        {
+            _logger.warn("could not load AST response cache from " + _persistencePath, e);
+        }
+    }
+
+    /**
+     * @return the evidence with the keys of all its objects in sorted order, so that equal evidence maps to the same
+     *         string.
+     */
+    static String canonicalize(String evidence)
+    {
+        if(evidence == null)
+            throw new NullPointerException("evidence");
+
+        StringBuilder canonical = new StringBuilder();
+        appendCanonical(new JSONObject(evidence), canonical);
+        return canonical.toString();
+    }
+
+    private static void appendCanonical(Object value, StringBuilder canonical)
+    {
+        if(value instanceof JSONObject)
+        {
+            JSONObject object = (JSONObject) value;
+            canonical.append('{');
+            String separator = "";
+            for(String key : new TreeSet<>(object.keySet()))
+            {
+                canonical.append(separator).append(JSONObject.quote(key)).append(':');
+                appendCanonical(object.get(key), canonical);
+                separator = ",";
+            }
+            canonical.append('}');
+        }
+        else if(value instanceof JSONArray)
+        {
+            JSONArray array = (JSONArray) value;
+            canonical.append('[');
+            for(int i = 0; i < array.length(); i++)
+            {
+                if(i > 0)
+                    canonical.append(',');
+                appendCanonical(array.get(i), canonical);
+            }
+            canonical.append(']');
+        }
+        else
+        {
+            canonical.append(JSONObject.valueToString(value));
+        }
+    }
+
+    /**
+     * @return the number of lookups that found an unexpired response.
+     */
+    public long getHitCount()
+    {
+        synchronized (_entries)
+        {
+            return _hitCount;
+        }
+    }
+
+    /**
+     * @return the number of lookups that found no unexpired response.
+     */
+    public long getMissCount()
+    {
+        synchronized (_entries)
+        {
+            return _missCount;
+        }
+    }
+
+    /**
+     * @return the number of entries evicted because the cache was full.
+     */
+    public long getEvictionCount()
+    {
+        synchronized (_entries)
+        {
+            return _evictionCount;
+        }
+    }
+
+    /**
+     * @return the number of cached responses, including any that have expired but were not yet looked up.
+     */
+    public int size()
+    {
+        synchronized (_entries)
+        {
+            return _entries.size();
+        }
+    }
+}
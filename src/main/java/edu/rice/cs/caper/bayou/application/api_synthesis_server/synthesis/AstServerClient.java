@@ -0,0 +1,328 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics.LatencyStat;
+import edu.rice.cs.caper.programming.ContentString;
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.apache.http.*;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long lived client of the (Python) AST server. Connections to the server are pooled and kept alive between
+ * requests, so a TCP handshake is only paid when the pool has no idle connection.
+ *
+ * Records how long it takes to establish connections, to wait for the server to respond and to transfer
+ * (and parse) response bodies.
+ *
+ * Thread safe.
+ */
+public class AstServerClient implements Closeable
+{
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(AstServerClient.class.getName());
+
+    /**
+     * How long an unused pooled connection is kept open.
+     */
+    private static final long IDLE_CONNECTION_TIMEOUT_SECONDS = 30;
+
+    /**
+     * The URI of the AST server.
+     */
+    private final String _serverUri;
+
+    /**
+     * The pooled http client used for all requests.
+     */
+    private final CloseableHttpClient _client;
+
+    /**
+     * The max time in milliseconds to wait for data from the AST server for a single inference.
+     */
+    private final int _maxNetworkWaitTimeMs;
+
+    /**
+     * The configuration of requests that ask for a single inference.
+     */
+    private final RequestConfig _config;
+
+    /**
+     * Time to establish a new TCP connection to the AST server.
+     */
+    private final LatencyStat _connectLatency = new LatencyStat("ast_server_connect");
+
+    /**
+     * Time between sending a request and receiving the response head.
+     */
+    private final LatencyStat _waitLatency = new LatencyStat("ast_server_wait");
+
+    /**
+     * Time to read and parse a response body.
+     */
+    private final LatencyStat _transferLatency = new LatencyStat("ast_server_transfer");
+
+    /**
+     * @param host The network name of the AST server. May not be null.
+     * @param port The port of the AST server on which connection requests are expected. May not be null.
+     * @param maxNetworkWaitTimeMs The max time in milliseconds to wait for establishing a connection and for data
+     *                             from the AST server. May not be null.
+     * @param maxConnections The maximum number of simultaneously open connections to the AST server.
+     *                       May not be null.
+     */
+    public AstServerClient(ContentString host, NatNum32 port, NatNum32 maxNetworkWaitTimeMs, NatNum32 maxConnections)
+    {
+        _logger.debug("entering");
+
+        if(host == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("host");
+        }
+
+        if(port == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("port");
+        }
+
+        if(maxNetworkWaitTimeMs == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("maxNetworkWaitTimeMs");
+        }
+
+        if(maxConnections == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("maxConnections");
+        }
+
+        _serverUri = "http://" + host + ":" + port;
+
+        /*
+         * Time connection establishment by wrapping the plain socket factory.
+         */
+        ConnectionSocketFactory timedSocketFactory = new ConnectionSocketFactory()
+        {
+            @Override
+            public Socket createSocket(HttpContext context) throws IOException
+            {
+                return PlainConnectionSocketFactory.getSocketFactory().createSocket(context);
+            }
+
+            @Override
+            public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host,
+                                        InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                                        HttpContext context) throws IOException
+            {
+                long start = System.nanoTime();
+                Socket socket = PlainConnectionSocketFactory.getSocketFactory()
+                        .connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+                _connectLatency.recordSince(start);
+                return socket;
+            }
+        };
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create().register("http", timedSocketFactory).build());
+        connectionManager.setMaxTotal(maxConnections.AsInt);
+        connectionManager.setDefaultMaxPerRoute(maxConnections.AsInt);
+
+        /*
+         * Time waiting for the server by wrapping the reception of the response head.
+         */
+        HttpRequestExecutor timedRequestExecutor = new HttpRequestExecutor()
+        {
+            @Override
+            protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn,
+                                                     HttpContext context) throws HttpException, IOException
+            {
+                long start = System.nanoTime();
+                HttpResponse response = super.doReceiveResponse(request, conn, context);
+                _waitLatency.recordSince(start);
+                return response;
+            }
+        };
+
+        _maxNetworkWaitTimeMs = maxNetworkWaitTimeMs.AsInt;
+        _config = RequestConfig.custom().setConnectTimeout(maxNetworkWaitTimeMs.AsInt)
+                .setConnectionRequestTimeout(maxNetworkWaitTimeMs.AsInt)
+                .setSocketTimeout(maxNetworkWaitTimeMs.AsInt)
+                .build();
+
+        _client = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setRequestExecutor(timedRequestExecutor)
+                .setDefaultRequestConfig(_config)
+                .evictIdleConnections(IDLE_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        _logger.trace("_serverUri:" + _serverUri);
+        _logger.debug("exiting");
+    }
+
+    /**
+     * Sends the given request object to the AST server and returns the server's response object.
+     *
+     * @param requestObj the request. May not be null.
+     * @return the response.
+     * @throws IOException if there is a problem communicating with the server or the response is not a JSON object.
+     */
+    public JSONObject send(JSONObject requestObj) throws IOException
+    {
+        return send(requestObj, new NatNum32(1));
+    }
+
+    /**
+     * Sends the given request object to the AST server and returns the server's response object.
+     *
+     * The server performs the inferences of a request one after another, so the time waited for data from the server
+     * is scaled by the given number of inferences.
+     *
+     * @param requestObj the request. May not be null.
+     * @param inferenceCount the number of inferences the request asks the server to perform. May not be null or zero.
+     * @return the response.
+     * @throws IOException if there is a problem communicating with the server or the response is not a JSON object.
+     */
+    public JSONObject send(JSONObject requestObj, NatNum32 inferenceCount) throws IOException
+    {
+        _logger.debug("entering");
+
+        if(requestObj == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("requestObj");
+        }
+
+        if(inferenceCount == null)
+        {
+            _logger.debug("exiting");
+            throw new NullPointerException("inferenceCount");
+        }
+
+        if(inferenceCount.AsInt == 0)
+        {
+            _logger.debug("exiting");
+            throw new IllegalArgumentException("inferenceCount must be positive");
+        }
+
+        HttpPost httppost = new HttpPost(_serverUri);
+        if(inferenceCount.AsInt > 1)
+        {
+            int socketTimeoutMs = (int) Math.min((long) _maxNetworkWaitTimeMs * inferenceCount.AsInt,
+                                                 Integer.MAX_VALUE);
+            httppost.setConfig(RequestConfig.copy(_config).setSocketTimeout(socketTimeoutMs).build());
+        }
+        httppost.setEntity(new StringEntity(requestObj.toString(), StandardCharsets.UTF_8)); // compact, no indent
+
+        try (CloseableHttpResponse response = _client.execute(httppost))
+        {
+            int responseStatusCode = response.getStatusLine().getStatusCode();
+
+            HttpEntity entity = response.getEntity();
+
+            if (responseStatusCode != 200)
+            {
+                EntityUtils.consume(entity); // so the connection can be reused
+                throw new IOException("Unexpected http response code: " + responseStatusCode);
+            }
+
+            if (entity == null)
+                throw new IOException("Expected response body.");
+
+            /*
+             * Parse the response while it is read instead of buffering it first.
+             */
+            long start = System.nanoTime();
+            JSONObject responseObject;
+            try (Reader body = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8))
+            {
+                responseObject = new JSONObject(new JSONTokener(body));
+                EntityUtils.consume(entity); // drain any trailing whitespace so the connection can be reused
+            }
+            catch (JSONException e)
+            {
+                throw new IOException("Malformed response body.", e);
+            }
+            _transferLatency.recordSince(start);
+
+            _logger.debug("exiting");
+            return responseObject;
+        }
+    }
+
+    /**
+     * @return the time to establish new TCP connections to the AST server.
+     */
+    public LatencyStat getConnectLatency()
+    {
+        return _connectLatency;
+    }
+
+    /**
+     * @return the time between sending requests and receiving response heads.
+     */
+    public LatencyStat getWaitLatency()
+    {
+        return _waitLatency;
+    }
+
+    /**
+     * @return the time to read and parse response bodies.
+     */
+    public LatencyStat getTransferLatency()
+    {
+        return _transferLatency;
+    }
+
+    /**
+     * Closes all pooled connections.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        _client.close();
+    }
+}
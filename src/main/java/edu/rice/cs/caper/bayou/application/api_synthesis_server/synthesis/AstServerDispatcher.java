@@ -0,0 +1,405 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics.LatencyStat;
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics.SynthesisMetrics;
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Dispatches requests across a set of AST server endpoints (model replicas).
+ *
+ * Each request goes to the endpoint with the fewest outstanding requests among those that are below their
+ * concurrency limit. If every endpoint is at its limit, callers wait in FIFO order for capacity.
+ *
+ * An endpoint that fails a number of requests in a row is ejected from selection for a while. After that period it
+ * is tried again, and a single further failure ejects it again. If all endpoints are ejected, requests are dispatched
+ * to them anyway rather than failing outright.
+ *
+ * Thread safe.
+ */
+public class AstServerDispatcher
+{
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(AstServerDispatcher.class.getName());
+
+    /**
+     * An operation to be performed against the client of a selected endpoint.
+     */
+    public interface EndpointOperation<V>
+    {
+        V apply(AstServerClient client) throws IOException;
+    }
+
+    /**
+     * The endpoints requests are dispatched to.
+     */
+    private final List<AstServerEndpoint> _endpoints;
+
+    /**
+     * The number of consecutive failures after which an endpoint is ejected.
+     */
+    private final NatNum32 _failuresBeforeEjection;
+
+    /**
+     * How long an endpoint stays ejected.
+     */
+    private final long _ejectionNanos;
+
+    /**
+     * Guards the bookkeeping of this dispatcher and of its endpoints.
+     *
+     * A lock rather than a monitor so that waiting for capacity does not pin the carrier of a virtual thread.
+     */
+    private final ReentrantLock _lock = new ReentrantLock();
+
+    /**
+     * Signalled when endpoint capacity may have become available.
+     */
+    private final Condition _capacityChanged = _lock.newCondition();
+
+    /**
+     * The threads waiting for endpoint capacity, in arrival order.
+     */
+    private final LinkedList<Thread> _waitingThreads = new LinkedList<>();
+
+    /**
+     * The largest number of threads that waited for endpoint capacity at once.
+     */
+    private int _maxQueueDepth = 0;
+
+    /**
+     * The index of the endpoint that is preferred when several endpoints have equally few outstanding requests.
+     * Rotates so that ties are spread over all endpoints.
+     */
+    private int _nextIndex = 0;
+
+    /**
+     * Time spent waiting for endpoint capacity.
+     */
+    private final LatencyStat _queueWaitLatency = new LatencyStat("ast_server_queue_wait");
+
+    /**
+     * @param endpoints the endpoints to dispatch to. May not be null or empty.
+     * @param failuresBeforeEjection the number of consecutive failures after which an endpoint is ejected.
+     *                               May not be null or zero.
+     * @param ejectionMs how long in milliseconds an ejected endpoint is excluded from selection. May not be null.
+     */
+    public AstServerDispatcher(List<AstServerEndpoint> endpoints, NatNum32 failuresBeforeEjection,
+                               NatNum32 ejectionMs)
+    {
+        if(endpoints == null)
+            throw new NullPointerException("endpoints");
+
+        if(endpoints.isEmpty())
+            throw new IllegalArgumentException("endpoints may not be empty");
+
+        if(failuresBeforeEjection == null)
+            throw new NullPointerException("failuresBeforeEjection");
+
+        if(failuresBeforeEjection.AsInt == 0)
+            throw new IllegalArgumentException("failuresBeforeEjection must be positive");
+
+        if(ejectionMs == null)
+            throw new NullPointerException("ejectionMs");
+
+        _endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        _failuresBeforeEjection = failuresBeforeEjection;
+        _ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMs.AsInt);
+    }
+
+    /**
+     * Waits until some endpoint has capacity and then applies the given operation to that endpoint's client.
+     *
+     * @param operation the operation. May not be null.
+     * @return the result of the operation
+     * @throws IOException if the operation fails, or InterruptedIOException if the thread is interrupted while
+     *                     waiting for capacity.
+     */
+    public <V> V dispatch(EndpointOperation<V> operation) throws IOException
+    {
+        if(operation == null)
+            throw new NullPointerException("operation");
+
+        long start = System.nanoTime();
+        AstServerEndpoint endpoint;
+        _lock.lock();
+        try
+        {
+            Thread self = Thread.currentThread();
+            _waitingThreads.add(self);
+            try
+            {
+                while(true)
+                {
+                    endpoint = _waitingThreads.peek() == self ? selectEndpoint(true) : null;
+                    if(endpoint != null)
+                        break;
+                    awaitCapacity();
+                }
+            }
+            finally
+            {
+                _waitingThreads.remove(self);
+                _capacityChanged.signalAll(); // the next waiting thread may be able to go, too
+            }
+            endpoint.outstandingCount++;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        long waitNanos = System.nanoTime() - start;
+        _queueWaitLatency.record(waitNanos);
+        SynthesisMetrics.getShared().getStageLatency(SynthesisMetrics.Stage.SCHEDULER_WAIT).record(waitNanos);
+
+        return apply(endpoint, operation);
+    }
+
+    /**
+     * Applies the given operation to the client of the endpoint with the fewest outstanding requests, without
+     * waiting for capacity. Intended for high priority requests (currently only the AWS heartbeat).
+     *
+     * @param operation the operation. May not be null.
+     * @return the result of the operation
+     * @throws IOException if the operation fails.
+     */
+    public <V> V dispatchUnlimited(EndpointOperation<V> operation) throws IOException
+    {
+        if(operation == null)
+            throw new NullPointerException("operation");
+
+        AstServerEndpoint endpoint;
+        _lock.lock();
+        try
+        {
+            endpoint = selectEndpoint(false);
+            endpoint.outstandingCount++;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+
+        return apply(endpoint, operation);
+    }
+
+    /**
+     * Applies the operation to the endpoint, whose outstanding count has already been incremented, and updates the
+     * endpoint's health afterwards.
+     */
+    private <V> V apply(AstServerEndpoint endpoint, EndpointOperation<V> operation) throws IOException
+    {
+        boolean succeeded = false;
+        try
+        {
+            V result = operation.apply(endpoint.getClient());
+            succeeded = true;
+            return result;
+        }
+        finally
+        {
+            _lock.lock();
+            try
+            {
+                endpoint.outstandingCount--;
+                if(succeeded)
+                {
+                    endpoint.consecutiveFailureCount = 0;
+                    endpoint.ejectedUntilNanos = null;
+                }
+                else
+                {
+                    endpoint.consecutiveFailureCount++;
+                    if(endpoint.consecutiveFailureCount >= _failuresBeforeEjection.AsInt)
+                    {
+                        endpoint.ejectedUntilNanos = System.nanoTime() + _ejectionNanos;
+                        _logger.warn("ejecting AST server " + endpoint + " after " +
+                                     endpoint.consecutiveFailureCount + " consecutive failures");
+                    }
+                }
+                _capacityChanged.signalAll();
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Selects the endpoint with the fewest outstanding requests. Ejected endpoints are only considered if all
+     * endpoints are ejected. Must be called while holding _lock.
+     *
+     * @param respectLimits whether endpoints at their concurrency limit should be skipped
+     * @return the endpoint, or null if respectLimits is true and no (suitable) endpoint has capacity
+     */
+    private AstServerEndpoint selectEndpoint(boolean respectLimits)
+    {
+        long now = System.nanoTime();
+
+        boolean anyHealthy = false;
+        for(AstServerEndpoint endpoint : _endpoints)
+            anyHealthy |= !isEjected(endpoint, now);
+
+        AstServerEndpoint best = null;
+        for(int i = 0; i < _endpoints.size(); i++)
+        {
+            AstServerEndpoint endpoint = _endpoints.get((_nextIndex + i) % _endpoints.size());
+
+            if(anyHealthy && isEjected(endpoint, now))
+                continue;
+
+            if(respectLimits && endpoint.outstandingCount >= endpoint.getConcurrencyLimit().AsInt)
+                continue;
+
+            if(best == null || endpoint.outstandingCount < best.outstandingCount)
+                best = endpoint;
+        }
+
+        if(best != null)
+            _nextIndex = (_nextIndex + 1) % _endpoints.size();
+
+        return best;
+    }
+
+    /**
+     * Waits on _capacityChanged until signalled or until the next ejected endpoint becomes eligible again.
+     * Must be called while holding _lock.
+     */
+    private void awaitCapacity() throws InterruptedIOException
+    {
+        _maxQueueDepth = Math.max(_maxQueueDepth, _waitingThreads.size());
+
+        long now = System.nanoTime();
+        long waitNanos = Long.MAX_VALUE;
+        for(AstServerEndpoint endpoint : _endpoints)
+            if(isEjected(endpoint, now))
+                waitNanos = Math.min(waitNanos, endpoint.ejectedUntilNanos - now);
+
+        try
+        {
+            if(waitNanos == Long.MAX_VALUE)
+                _capacityChanged.await();
+            else
+                _capacityChanged.awaitNanos(waitNanos);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for an AST server");
+        }
+    }
+
+    private static boolean isEjected(AstServerEndpoint endpoint, long now)
+    {
+        return endpoint.ejectedUntilNanos != null && now - endpoint.ejectedUntilNanos < 0;
+    }
+
+    /**
+     * @return the endpoints requests are dispatched to.
+     */
+    public List<AstServerEndpoint> getEndpoints()
+    {
+        return _endpoints;
+    }
+
+    /**
+     * @return the number of requests currently in flight to the given endpoint.
+     */
+    public int getOutstandingCount(AstServerEndpoint endpoint)
+    {
+        _lock.lock();
+        try
+        {
+            return endpoint.outstandingCount;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether the given endpoint is currently ejected from selection.
+     */
+    public boolean isEjected(AstServerEndpoint endpoint)
+    {
+        _lock.lock();
+        try
+        {
+            return isEjected(endpoint, System.nanoTime());
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of threads currently waiting for endpoint capacity.
+     */
+    public int getQueueDepth()
+    {
+        _lock.lock();
+        try
+        {
+            return _waitingThreads.size();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the largest number of threads that waited for endpoint capacity at once.
+     */
+    public int getMaxQueueDepth()
+    {
+        _lock.lock();
+        try
+        {
+            return _maxQueueDepth;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the time spent waiting for endpoint capacity.
+     */
+    public LatencyStat getQueueWaitLatency()
+    {
+        return _queueWaitLatency;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.programming.ContentString;
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+
+/**
+ * One AST server (model replica) that an AstServerDispatcher may send requests to, along with the number of
+ * requests it may serve concurrently.
+ *
+ * The bookkeeping fields are guarded by the lock of the dispatcher that owns the endpoint.
+ */
+public class AstServerEndpoint
+{
+    /**
+     * The authority (host:port) of the AST server.
+     */
+    private final String _authority;
+
+    /**
+     * The maximum number of requests that may be in flight to this endpoint at once.
+     */
+    private final NatNum32 _concurrencyLimit;
+
+    /**
+     * The pooled client used to communicate with the AST server.
+     */
+    private final AstServerClient _client;
+
+    /**
+     * The number of requests currently in flight to this endpoint.
+     */
+    int outstandingCount = 0;
+
+    /**
+     * The number of requests to this endpoint that failed since the last successful one.
+     */
+    int consecutiveFailureCount = 0;
+
+    /**
+     * The System.nanoTime() until which this endpoint is ejected from selection, or null if it is not ejected.
+     */
+    Long ejectedUntilNanos = null;
+
+    /**
+     * @param host The network name of the AST server. May not be null.
+     * @param port The port of the AST server on which connection requests are expected. May not be null.
+     * @param concurrencyLimit The maximum number of requests that may be in flight to the AST server at once.
+     *                         May not be null or zero.
+     * @param maxNetworkWaitTimeMs The max time in milliseconds to wait for a response from the AST server.
+     *                             May not be null.
+     */
+    public AstServerEndpoint(ContentString host, NatNum32 port, NatNum32 concurrencyLimit,
+                             NatNum32 maxNetworkWaitTimeMs)
+    {
+        if(concurrencyLimit == null)
+            throw new NullPointerException("concurrencyLimit");
+
+        if(concurrencyLimit.AsInt == 0)
+            throw new IllegalArgumentException("concurrencyLimit must be positive");
+
+        /*
+         * One connection beyond the limit so that requests dispatched without waiting for capacity (the heartbeat)
+         * do not wait for, and time out on, a pooled connection while the endpoint is at its limit.
+         */
+        NatNum32 maxConnections = new NatNum32(concurrencyLimit.AsInt + 1);
+        _client = new AstServerClient(host, port, maxNetworkWaitTimeMs, maxConnections);
+        _authority = host + ":" + port;
+        _concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * Parses an endpoint specification of the form host:port or host:port/concurrencyLimit.
+     * The concurrency limit is 1 if not given.
+     *
+     * @param spec the endpoint specification. May not be null.
+     * @param maxNetworkWaitTimeMs The max time in milliseconds to wait for a response from the AST server.
+     *                             May not be null.
+     * @return the endpoint
+     * @throws IllegalArgumentException if spec is not of the expected form
+     */
+    public static AstServerEndpoint parse(String spec, NatNum32 maxNetworkWaitTimeMs)
+    {
+        if(spec == null)
+            throw new NullPointerException("spec");
+
+        String authority = spec;
+        NatNum32 concurrencyLimit = new NatNum32(1);
+        if(spec.contains("/"))
+        {
+            authority = spec.substring(0, spec.indexOf('/'));
+            concurrencyLimit = NatNum32.parse(spec.substring(spec.indexOf('/') + 1));
+        }
+
+        String[] hostAndPort = authority.split(":");
+        if(hostAndPort.length != 2)
+            throw new IllegalArgumentException("expected host:port[/concurrencyLimit] but found " + spec);
+
+        return new AstServerEndpoint(new ContentString(hostAndPort[0]), NatNum32.parse(hostAndPort[1]),
+                                     concurrencyLimit, maxNetworkWaitTimeMs);
+    }
+
+    /**
+     * @return the authority (host:port) of the AST server.
+     */
+    public String getAuthority()
+    {
+        return _authority;
+    }
+
+    /**
+     * @return the maximum number of requests that may be in flight to this endpoint at once.
+     */
+    public NatNum32 getConcurrencyLimit()
+    {
+        return _concurrencyLimit;
+    }
+
+    /**
+     * @return the client used to communicate with the AST server.
+     */
+    public AstServerClient getClient()
+    {
+        return _client;
+    }
+
+    @Override
+    public String toString()
+    {
+        return _authority + "/" + _concurrencyLimit;
+    }
+}
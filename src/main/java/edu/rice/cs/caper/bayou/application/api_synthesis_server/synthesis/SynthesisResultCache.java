@@ -0,0 +1,206 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of complete synthesis results.
+ *
+ * The size of the cache is measured in characters (of keys and results) and the least recently used entries are
+ * evicted once the total exceeds the limit.
+ *
+ * Thread safe.
+ */
+public class SynthesisResultCache
+{
+    /**
+     * The maximum total number of characters of all keys and results.
+     */
+    private final long _maxChars;
+
+    /**
+     * The cached results, in least to most recently used order. Guarded by itself.
+     */
+    private final LinkedHashMap<String, List<String>> _entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long _chars = 0;
+
+    private long _hitCount = 0;
+
+    private long _missCount = 0;
+
+    private long _evictionCount = 0;
+
+    /**
+     * @param maxChars the maximum total number of characters of all keys and results. May not be null.
+     */
+    public SynthesisResultCache(NatNum32 maxChars)
+    {
+        if(maxChars == null)
+            throw new NullPointerException("maxChars");
+
+        _maxChars = maxChars.AsInt;
+    }
+
+    /**
+     * @param key the key. May not be null.
+     * @return the results cached under the key, or null if there are none.
+     */
+    public List<String> get(String key)
+    {
+        if(key == null)
+            throw new NullPointerException("key");
+
+        synchronized (_entries)
+        {
+            List<String> results = _entries.get(key);
+            if(results == null)
+                _missCount++;
+            else
+                _hitCount++;
+            return results;
+        }
+    }
+
+    /**
+     * Caches the given results under the given key, evicting least recently used entries as needed. Results larger
+     * than the whole cache are not cached.
+     *
+     * @param key the key. May not be null.
+     * @param results the results. May not be null.
+     */
+    public void put(String key, Iterable<String> results)
+    {
+        if(key == null)
+            throw new NullPointerException("key");
+
+        if(results == null)
+            throw new NullPointerException("results");
+
+        List<String> resultsCopy = new ArrayList<>();
+        for(String result : results)
+            resultsCopy.add(result);
+        resultsCopy = Collections.unmodifiableList(resultsCopy);
+
+        long chars = charCount(key, resultsCopy);
+        if(chars > _maxChars)
+            return;
+
+        synchronized (_entries)
+        {
+            List<String> replaced = _entries.put(key, resultsCopy);
+            if(replaced != null)
+                _chars -= charCount(key, replaced);
+            _chars += chars;
+
+            Iterator<Map.Entry<String, List<String>>> leastRecentlyUsed = _entries.entrySet().iterator();
+            while(_chars > _maxChars)
+            {
+                Map.Entry<String, List<String>> entry = leastRecentlyUsed.next();
+                _chars -= charCount(entry.getKey(), entry.getValue());
+                leastRecentlyUsed.remove();
+                _evictionCount++;
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     *
+     * @return the number of entries removed.
+     */
+    public int flush()
+    {
+        synchronized (_entries)
+        {
+            int size = _entries.size();
+            _entries.clear();
+            _chars = 0;
+            return size;
+        }
+    }
+
+    private static long charCount(String key, List<String> results)
+    {
+        long count = key.length();
+        for(String result : results)
+            count += result.length();
+        return count;
+    }
+
+    /**
+     * @return the number of lookups that found results.
+     */
+    public long getHitCount()
+    {
+        synchronized (_entries)
+        {
+            return _hitCount;
+        }
+    }
+
+    /**
+     * @return the number of lookups that found no results.
+     */
+    public long getMissCount()
+    {
+        synchronized (_entries)
+        {
+            return _missCount;
+        }
+    }
+
+    /**
+     * @return the number of entries evicted to make room for others.
+     */
+    public long getEvictionCount()
+    {
+        synchronized (_entries)
+        {
+            return _evictionCount;
+        }
+    }
+
+    /**
+     * @return the number of cached entries.
+     */
+    public int size()
+    {
+        synchronized (_entries)
+        {
+            return _entries.size();
+        }
+    }
+
+    /**
+     * @return the total number of characters of all keys and results.
+     */
+    public long getCharCount()
+    {
+        synchronized (_entries)
+        {
+            return _chars;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * The results of a synthesis that produced no program. Holds only the message explaining why.
+ *
+ * Synthesis is randomized and time bounded, so a later attempt on the same code may succeed. Decorators use this
+ * type to avoid remembering such results.
+ */
+class UnsynthesizedResults implements Iterable<String>
+{
+    /**
+     * The explanation of why no program was synthesized.
+     */
+    private final String _message;
+
+    UnsynthesizedResults(String message)
+    {
+        if(message == null)
+            throw new NullPointerException("message");
+
+        _message = message;
+    }
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        return Collections.singletonList(_message).iterator();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + _message + "]";
+    }
+}
@@ -15,13 +15,10 @@ limitations under the License.
 */
 package edu.rice.cs.caper.bayou.application.ast_quality_perf_test;
 
-import edu.rice.cs.caper.bayou.core.dsl.DAPICall;
 import edu.rice.cs.caper.bayou.core.dsl.DSubTree;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 public class JaccardAPICallsMetric implements Metric {
 
@@ -32,21 +29,10 @@ public class JaccardAPICallsMetric implements Metric {
     public float compute(DSubTree originalAST, List<DSubTree> predictedASTs) {
         List<Float> jaccard = new ArrayList<>();
         jaccard.add((float) 1);
-        Set<DAPICall> A = originalAST.bagOfAPICalls();
+        int[] A = originalAST.bagOfAPICallIds();
         for (DSubTree predictedAST : predictedASTs) {
-            Set<DAPICall> B = predictedAST.bagOfAPICalls();
-
-            // A union B
-            Set<DAPICall> AunionB = new HashSet<>();
-            AunionB.addAll(A);
-            AunionB.addAll(B);
-
-            // A intersect B
-            Set<DAPICall> AinterB = new HashSet<>();
-            AinterB.addAll(A);
-            AinterB.retainAll(B);
-
-            jaccard.add(1 - ((float) AinterB.size()) / AunionB.size());
+            int[] B = predictedAST.bagOfAPICallIds();
+            jaccard.add(Metric.jaccardDistance(A, B));
         }
         return Metric.min(jaccard);
     }
@@ -15,36 +15,379 @@ limitations under the License.
 */
 package edu.rice.cs.caper.bayou.application.dom_driver;
 
+import edu.rice.cs.caper.bayou.core.dom_driver.Options;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Batch DOM Driver that can work with a list of files having the same config
+ * Batch DOM Driver that can work with a list of files having the same config.
+ *
+ * The list is read only as fast as a fixed number of workers process the files. A file (or batch of files, see
+ * Driver.executeBatch) that takes longer than the timeout is given up on, and the outcome of every file is appended
+ * to a checkpoint file, so that a crashed run can be resumed by running it again with the same checkpoint file.
+ *
+ * The data extracted from each file is written next to it, or, if an output is given, to shared JSON Lines files
+ * (see JsonLinesWriter). Given a manifest (see ExtractionManifest), data is only extracted from files that are new or
+ * have changed since the last run, so that the output of such a run holds just the data of these files. The data of a
+ * file in a later output replaces its data in earlier ones.
  */
 public class BatchDriver {
 
+    static final String OK = "OK", FAILED = "FAILED", TIMEOUT = "TIMEOUT", UNCHANGED = "UNCHANGED";
+
+    private final Options options;
+
+    private final String classpath;
+
+    private final int numThreads;
+
+    private final int filesPerParse;
+
+    private final long timeoutSecs;
+
+    /**
+     * Runs the work so that the workers can give up on it. Threads are daemons since a timed out parse cannot be
+     * stopped and must not keep the JVM alive.
+     */
+    private final ExecutorService parsers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The output for the data of all files, or null to write a JSON file per input file
+     */
+    private final JsonLinesWriter output;
+
+    /**
+     * The manifest of files whose data is current, or null to extract data from all files
+     */
+    private final ExtractionManifest manifest;
+
+    /**
+     * The checkpoint, or null if none. Guarded by itself.
+     */
+    private final PrintWriter checkpoint;
+
+    final AtomicInteger numOk = new AtomicInteger(), numFailed = new AtomicInteger(),
+            numTimeout = new AtomicInteger(), numSkipped = new AtomicInteger(), numUnchanged = new AtomicInteger();
+
+    BatchDriver(Options options, String classpath, int numThreads, int filesPerParse, long timeoutSecs,
+                JsonLinesWriter output, ExtractionManifest manifest, PrintWriter checkpoint) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("threads must be positive");
+        if (filesPerParse < 1)
+            throw new IllegalArgumentException("files-per-parse must be positive");
+        if (timeoutSecs < 1)
+            throw new IllegalArgumentException("timeout must be positive");
+
+        this.options = options;
+        this.classpath = classpath;
+        this.numThreads = numThreads;
+        this.filesPerParse = filesPerParse;
+        this.timeoutSecs = timeoutSecs;
+        this.output = output;
+        this.manifest = manifest;
+        this.checkpoint = checkpoint;
+    }
+
+    private static org.apache.commons.cli.Options commandLineOptions() {
+        org.apache.commons.cli.Options opts = new org.apache.commons.cli.Options();
+        opts.addOption(Option.builder("j")
+                .longOpt("threads")
+                .hasArg()
+                .numberOfArgs(1)
+                .desc("number of worker threads (default: number of processors)")
+                .build());
+
+        opts.addOption(Option.builder("b")
+                .longOpt("files-per-parse")
+                .hasArg()
+                .numberOfArgs(1)
+                .desc("number of files to parse with a single parser (default: 1)")
+                .build());
+
+        opts.addOption(Option.builder("t")
+                .longOpt("timeout")
+                .hasArg()
+                .numberOfArgs(1)
+                .desc("seconds after which a file is given up on (default: 60)")
+                .build());
+
+        opts.addOption(Option.builder("o")
+                .longOpt("output")
+                .hasArg()
+                .numberOfArgs(1)
+                .desc("write JSON Lines to files starting with this path instead of a JSON file per input file")
+                .build());
+
+        opts.addOption(Option.builder("s")
+                .longOpt("shards")
+                .hasArg()
+                .numberOfArgs(1)
+                .desc("number of JSON Lines files to write (default: 1)")
+                .build());
+
+        opts.addOption(Option.builder("m")
+                .longOpt("manifest")
+                .hasArg()
+                .numberOfArgs(1)
+                .desc("file recording the files whose data is current, to extract data only from new or changed files")
+                .build());
+
+        opts.addOption(Option.builder("k")
+                .longOpt("checkpoint")
+                .hasArg()
+                .numberOfArgs(1)
+                .desc("file to record finished files in and to resume from")
+                .build());
+        return opts;
+    }
+
     public static void main(String args[]) throws IOException, InterruptedException {
-        if (args.length != 2) {
-            System.out.println("Usage: dom-driver-batch.jar file-containing-list-of-files.txt config.json");
+        org.apache.commons.cli.Options opts = commandLineOptions();
+        CommandLine cmdLine;
+        try {
+            cmdLine = new DefaultParser().parse(opts, args);
+            if (cmdLine.getArgs().length != 2)
+                throw new ParseException("expected a list of files and a config file");
+        } catch (ParseException e) {
+            System.out.println(e.getMessage());
+            new HelpFormatter().printHelp(
+                    "dom-driver-batch.jar [options] file-containing-list-of-files.txt config.json", opts);
             return;
         }
 
-        String listFile = args[0];
-        String configFile = args[1];
-        BufferedReader br = new BufferedReader(new FileReader(listFile));
-        String file;
-        int NPROCS = Runtime.getRuntime().availableProcessors();
-        System.out.println("Going to run " + NPROCS + " threads");
+        String listFile = cmdLine.getArgs()[0];
+        String configFile = cmdLine.getArgs()[1];
+        int numThreads = Integer.parseInt(cmdLine.getOptionValue("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int filesPerParse = Integer.parseInt(cmdLine.getOptionValue("files-per-parse", "1"));
+        long timeoutSecs = Long.parseLong(cmdLine.getOptionValue("timeout", "60"));
 
-        while ((file = br.readLine()) != null) {
-            System.out.println(file);
-            String[] driverArgs = { "-f", file, "-c", configFile, "-o", file + ".json" };
-            Thread thread = new Thread(() -> Driver.main(driverArgs));
-            while (Thread.activeCount() >= NPROCS)
-                Thread.sleep(10);
-            thread.start();
+        Options options;
+        try {
+            // the input file is replaced per file
+            options = new Options(new String[] { "-f", "batch", "-c", configFile });
+        } catch (ParseException e) {
+            System.out.println("Unexpected exception: " + e.getMessage());
+            return;
+        }
+
+        Set<String> done = Collections.emptySet();
+        PrintWriter checkpoint = null;
+        if (cmdLine.hasOption("checkpoint")) {
+            File checkpointFile = new File(cmdLine.getOptionValue("checkpoint"));
+            done = readCheckpoint(checkpointFile);
+            checkpoint = new PrintWriter(new FileWriter(checkpointFile, true));
+            System.out.println("Resuming after " + done.size() + " files");
         }
+
+        ExtractionManifest manifest = null;
+        if (cmdLine.hasOption("manifest")) {
+            manifest = new ExtractionManifest(new File(cmdLine.getOptionValue("manifest")), options.getConfigHash());
+            System.out.println("Data of " + manifest.size() + " files is current");
+        }
+
+        // when resuming, add to the output of the crashed run
+        JsonLinesWriter output = null;
+        if (cmdLine.hasOption("output"))
+            output = new JsonLinesWriter(cmdLine.getOptionValue("output"),
+                    Integer.parseInt(cmdLine.getOptionValue("shards", "1")), 4 * numThreads, !done.isEmpty());
+
+        System.out.println("Going to run " + numThreads + " threads");
+        BatchDriver driver = new BatchDriver(options, System.getenv("CLASSPATH"), numThreads, filesPerParse,
+                timeoutSecs, output, manifest, checkpoint);
+        try (BufferedReader br = new BufferedReader(new FileReader(listFile))) {
+            driver.execute(br, done);
+        } finally {
+            if (output != null)
+                output.close();
+            if (manifest != null)
+                manifest.save();
+            if (checkpoint != null)
+                checkpoint.close();
+        }
+
+        System.out.println(String.format("Done: %d ok, %d failed, %d timed out, %d unchanged, %d skipped",
+                driver.numOk.get(), driver.numFailed.get(), driver.numTimeout.get(), driver.numUnchanged.get(),
+                driver.numSkipped.get()));
+        System.exit(0); // don't wait for timed out parses
+    }
+
+    /**
+     * Reads the files recorded in a checkpoint, whatever their outcome, so that a file that hung or crashed a
+     * previous run is not tried again.
+     *
+     * @param checkpointFile the checkpoint, which may not exist yet
+     * @return the recorded files
+     */
+    static Set<String> readCheckpoint(File checkpointFile) throws IOException {
+        Set<String> done = new HashSet<>();
+        if (!checkpointFile.exists())
+            return done;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(checkpointFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab >= 0) // a line cut short by a crash has no tab or an incomplete file name, which is harmless
+                    done.add(line.substring(tab + 1));
+            }
+        }
+        return done;
     }
 
+    /**
+     * Processes the files in the given list, skipping those that are done, and waits for them to finish
+     *
+     * @param list the list of files, one per line
+     * @param done the files to skip
+     */
+    void execute(BufferedReader list, Set<String> done) throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        Semaphore pending = new Semaphore(2 * numThreads); // don't read the whole list ahead of the workers
+        try {
+            List<String> batch = new ArrayList<>();
+            String file;
+            while ((file = list.readLine()) != null) {
+                if (file.isEmpty())
+                    continue;
+                if (done.contains(file)) {
+                    numSkipped.incrementAndGet();
+                    continue;
+                }
+
+                batch.add(file);
+                if (batch.size() == filesPerParse) {
+                    submit(workers, pending, batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty())
+                submit(workers, pending, batch);
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void submit(ExecutorService workers, Semaphore pending, List<String> batch) throws InterruptedException {
+        pending.acquire();
+        workers.submit(() -> {
+            try {
+                process(batch);
+            } finally {
+                pending.release();
+            }
+        });
+    }
+
+    private void process(List<String> files) {
+        // in incremental mode, leave out the files whose data is current
+        Map<String, String> contentHashes = new HashMap<>();
+        List<String> batch = files;
+        if (manifest != null) {
+            batch = new ArrayList<>();
+            for (String file : files) {
+                String contentHash;
+                try {
+                    contentHash = ExtractionManifest.hashContent(file);
+                } catch (IOException e) {
+                    batch.add(file); // let the parser report it
+                    continue;
+                }
+
+                if (manifest.isCurrent(file, contentHash)) {
+                    record(file, UNCHANGED, numUnchanged);
+                } else {
+                    contentHashes.put(file, contentHash);
+                    batch.add(file);
+                }
+            }
+            if (batch.isEmpty())
+                return;
+        }
+        parse(batch, contentHashes);
+    }
+
+    private void parse(List<String> batch, Map<String, String> contentHashes) {
+        System.out.println(batch.size() == 1 ? batch.get(0) : batch.get(0) + " (+" + (batch.size() - 1) + " more)");
+
+        Future<List<String>> result = parsers.submit(() -> {
+            if (batch.size() > 1 || output != null)
+                return Driver.executeBatch(batch, options, classpath, output);
+
+            String file = batch.get(0);
+            new Driver(new String[] { "-f", file, "-c", options.cmdLine.getOptionValue("config-file"),
+                                      "-o", file + ".json" }).execute(classpath);
+            return Collections.<String>emptyList();
+        });
+
+        List<String> failed;
+        try {
+            failed = result.get(timeoutSecs * batch.size(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true); // JDT mostly ignores interrupts, so the parse may run on in the background
+            for (String file : batch)
+                record(file, TIMEOUT, numTimeout);
+            return;
+        } catch (ExecutionException e) {
+            System.err.println(batch.get(0) + ": unexpected exception: " + e.getCause().getMessage());
+            failed = batch;
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        Set<String> failedSet = new HashSet<>(failed);
+        for (String file : batch)
+            if (failedSet.contains(file)) {
+                record(file, FAILED, numFailed);
+            } else {
+                if (contentHashes.containsKey(file))
+                    manifest.update(file, contentHashes.get(file));
+                record(file, OK, numOk);
+            }
+    }
+
+    private void record(String file, String outcome, AtomicInteger count) {
+        count.incrementAndGet();
+        if (outcome.equals(FAILED) || outcome.equals(TIMEOUT))
+            System.err.println(file + ": " + outcome);
+
+        if (checkpoint == null)
+            return;
+        synchronized (checkpoint) {
+            checkpoint.println(outcome + "\t" + file);
+            checkpoint.flush();
+        }
+    }
 }
@@ -20,13 +20,22 @@ import edu.rice.cs.caper.bayou.core.dom_driver.Options;
 import edu.rice.cs.caper.bayou.core.dom_driver.Visitor;
 import org.apache.commons.cli.*;
 import org.apache.commons.io.FileUtils;
+import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Driver {
 
@@ -36,25 +45,34 @@ public class Driver {
         this.options = new Options(args);
     }
 
-    private CompilationUnit createCompilationUnit(String classpath) throws IOException {
+    private static ASTParser newParser(String classpath) {
         ASTParser parser = ASTParser.newParser(AST.JLS8);
-        File input = new File(options.cmdLine.getOptionValue("input-file"));
-
-        parser.setSource(FileUtils.readFileToString(input, "utf-8").toCharArray());
         parser.setKind(ASTParser.K_COMPILATION_UNIT);
-        parser.setUnitName("Program.java");
         parser.setEnvironment(new String[] { classpath != null? classpath : "" },
                 new String[] { "" }, new String[] { "UTF-8" }, true);
         parser.setResolveBindings(true);
+        return parser;
+    }
+
+    private CompilationUnit createCompilationUnit(String classpath) throws IOException {
+        ASTParser parser = newParser(classpath);
+        File input = new File(options.cmdLine.getOptionValue("input-file"));
+
+        parser.setSource(FileUtils.readFileToString(input, "utf-8").toCharArray());
+        parser.setUnitName("Program.java");
 
         return (CompilationUnit) parser.createAST(null);
     }
 
-    public void execute(String classpath) throws IOException {
-        CompilationUnit cu = createCompilationUnit(classpath);
+    private static Visitor visit(CompilationUnit cu, Options options) throws IOException {
         Visitor visitor = new Visitor(cu, options);
         cu.accept(visitor);
-        String json = visitor.buildJson();
+        return visitor;
+    }
+
+    public void execute(String classpath) throws IOException {
+        CompilationUnit cu = createCompilationUnit(classpath);
+        String json = visit(cu, options).buildJson();
 
         if(json == null)
             return;
@@ -70,6 +88,96 @@ public class Driver {
         output.close();
     }
 
+    /**
+     * Extracts data from many input files with a single parser, so that the classpath is opened and its bindings
+     * are resolved once for all of them. Each compilation unit is visited as soon as the parser has created it and
+     * its data is written to the given JSON Lines output or, if none, to the input file name with ".json" appended.
+     * A file that fails does not stop the batch.
+     *
+     * Files with the same name are not parsed together since they likely declare the same type, which would leave
+     * all but one of the declarations without bindings. Other files that turn out to declare a type already declared
+     * by another file of the parse are parsed again on their own.
+     *
+     * @param files the input files
+     * @param options the options, for any input file
+     * @param classpath the classpath to resolve bindings against
+     * @param output the output for the data of all files, or null to write a JSON file per input file
+     * @return the files that could not be processed
+     */
+    public static List<String> executeBatch(List<String> files, Options options, String classpath,
+                                            JsonLinesWriter output) {
+        List<List<String>> parses = new ArrayList<>();
+        List<Set<String>> namesPerParse = new ArrayList<>();
+        for (String file : files) {
+            String name = new File(file).getName();
+            int i = 0;
+            while (i < parses.size() && namesPerParse.get(i).contains(name))
+                i++;
+            if (i == parses.size()) {
+                parses.add(new ArrayList<>());
+                namesPerParse.add(new HashSet<>());
+            }
+            parses.get(i).add(file);
+            namesPerParse.get(i).add(name);
+        }
+
+        Set<String> processed = ConcurrentHashMap.newKeySet();
+        for (List<String> parse : parses)
+            executeParse(parse, options, classpath, output, processed);
+
+        List<String> failed = new ArrayList<>();
+        for (String file : files)
+            if (!processed.contains(file))
+                failed.add(file);
+        return failed;
+    }
+
+    private static void executeParse(List<String> files, Options options, String classpath, JsonLinesWriter output,
+                                     Set<String> processed) {
+        String[] paths = files.toArray(new String[0]);
+        String[] encodings = new String[paths.length];
+        Arrays.fill(encodings, "UTF-8");
+        List<String> duplicates = new ArrayList<>();
+
+        FileASTRequestor requestor = new FileASTRequestor() {
+            @Override
+            public void acceptAST(String sourceFilePath, CompilationUnit cu) {
+                if (paths.length > 1 && declaresDuplicateType(cu)) {
+                    duplicates.add(sourceFilePath);
+                    return;
+                }
+
+                try {
+                    Visitor visitor = visit(cu, options.forFile(sourceFilePath));
+                    if (output != null) {
+                        output.write(sourceFilePath, visitor.buildJsonLines());
+                    } else {
+                        String json = visitor.buildJson();
+                        if (json != null)
+                            try (PrintWriter jsonOutput = new PrintWriter(sourceFilePath + ".json")) {
+                                jsonOutput.write(json);
+                            }
+                    }
+                    processed.add(sourceFilePath);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println(sourceFilePath + ": unexpected exception: " + e.getMessage());
+                }
+            }
+        };
+
+        newParser(classpath).createASTs(paths, encodings, new String[0], requestor, null);
+
+        for (String file : duplicates)
+            executeParse(Collections.singletonList(file), options, classpath, output, processed);
+    }
+
+    private static boolean declaresDuplicateType(CompilationUnit cu) {
+        for (IProblem problem : cu.getProblems())
+            if (problem.getID() == IProblem.DuplicateTypes)
+                return true;
+        return false;
+    }
+
 	public static void main(String args[]) {
         try {
             String classpath = System.getenv("CLASSPATH");
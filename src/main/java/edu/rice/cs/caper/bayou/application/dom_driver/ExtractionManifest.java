@@ -0,0 +1,124 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.dom_driver;
+
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records, for every input file whose data has been extracted, the hash of its content and the hash of the config
+ * (see Options.getConfigHash) it was extracted with, so that a later run can skip the files whose data is current.
+ *
+ * Stored as a text file with one line per input file: content hash, config hash and file, separated by tabs.
+ *
+ * Thread safe.
+ */
+public class ExtractionManifest {
+
+    private final File manifestFile;
+
+    private final String configHash;
+
+    /**
+     * Input file to the hash of its content when its data was extracted with the current config
+     */
+    private final Map<String, String> contentHashes = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the manifest, if it exists, keeping only the entries extracted with the given config
+     *
+     * @param manifestFile the manifest
+     * @param configHash the hash of the current config
+     */
+    public ExtractionManifest(File manifestFile, String configHash) throws IOException {
+        this.manifestFile = manifestFile;
+        this.configHash = configHash;
+
+        if (!manifestFile.exists())
+            return;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(manifestFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length == 3 && fields[1].equals(configHash))
+                    contentHashes.put(fields[2], fields[0]);
+            }
+        }
+    }
+
+    /**
+     * Computes the hash of a file's content
+     *
+     * @param file the file
+     * @return the hash, in hex
+     */
+    public static String hashContent(String file) throws IOException {
+        return Hashing.sha256().hashBytes(Files.readAllBytes(new File(file).toPath())).toString();
+    }
+
+    /**
+     * Checks whether the data of a file was extracted from the given content with the current config
+     *
+     * @param file the input file
+     * @param contentHash the hash of its current content
+     * @return true if the extracted data is current
+     */
+    public boolean isCurrent(String file, String contentHash) {
+        return contentHash.equals(contentHashes.get(file));
+    }
+
+    /**
+     * Records that the data of a file was extracted from the given content with the current config
+     *
+     * @param file the input file
+     * @param contentHash the hash of the content the data was extracted from
+     */
+    public void update(String file, String contentHash) {
+        contentHashes.put(file, contentHash);
+    }
+
+    /**
+     * Gets the number of files recorded
+     *
+     * @return the number of files
+     */
+    public int size() {
+        return contentHashes.size();
+    }
+
+    /**
+     * Writes the manifest, replacing the previous one only once it is completely written
+     */
+    public void save() throws IOException {
+        File tmpFile = new File(manifestFile.getPath() + ".tmp");
+        try (PrintWriter writer = new PrintWriter(tmpFile, "UTF-8")) {
+            for (Map.Entry<String, String> entry : new TreeMap<>(contentHashes).entrySet())
+                writer.println(entry.getValue() + "\t" + configHash + "\t" + entry.getKey());
+        }
+        Files.move(tmpFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.dom_driver;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes the data extracted from many input files as JSON Lines (one compact JSON object per line) to a fixed number
+ * of shard files, named prefix-00000.jsonl, prefix-00001.jsonl and so on.
+ *
+ * The lines of an input file always go to the same shard, one after the other. Writing is done by a background thread
+ * so that the callers can go on parsing; the callers only wait when the background thread falls behind by more than
+ * the queue capacity.
+ *
+ * Thread safe.
+ */
+public class JsonLinesWriter implements Closeable {
+
+    private static class Record {
+        final String file;
+        final List<String> lines;
+
+        Record(String file, List<String> lines) {
+            this.file = file;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * Tells the background thread that there is nothing more to write
+     */
+    private static final Record END = new Record("", Collections.emptyList());
+
+    private final Writer[] shards;
+
+    private final BlockingQueue<Record> queue;
+
+    private final Thread writerThread;
+
+    /**
+     * The first failure of the background thread, or null if none
+     */
+    private volatile IOException failure;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates (or truncates) the shard files and starts the background thread
+     *
+     * @param prefix the path of the shard files, without the shard number and extension
+     * @param numShards the number of shard files
+     * @param queueCapacity the number of input files whose lines may wait to be written
+     */
+    public JsonLinesWriter(String prefix, int numShards, int queueCapacity) throws IOException {
+        this(prefix, numShards, queueCapacity, false);
+    }
+
+    /**
+     * Opens the shard files and starts the background thread
+     *
+     * @param prefix the path of the shard files, without the shard number and extension
+     * @param numShards the number of shard files
+     * @param queueCapacity the number of input files whose lines may wait to be written
+     * @param append whether to add to existing shard files rather than truncate them
+     */
+    public JsonLinesWriter(String prefix, int numShards, int queueCapacity, boolean append) throws IOException {
+        if (numShards < 1)
+            throw new IllegalArgumentException("numShards must be positive");
+
+        shards = new Writer[numShards];
+        try {
+            for (int i = 0; i < numShards; i++)
+                shards[i] = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(getShardFile(prefix, i), append), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            closeShards();
+            throw e;
+        }
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writerThread = new Thread(this::writeRecords, "json-lines-writer");
+        writerThread.start();
+    }
+
+    /**
+     * Gets the file of a shard
+     *
+     * @param prefix the path of the shard files, without the shard number and extension
+     * @param shard the shard number
+     * @return the shard file
+     */
+    public static File getShardFile(String prefix, int shard) {
+        return new File(String.format("%s-%05d.jsonl", prefix, shard));
+    }
+
+    /**
+     * Queues the lines extracted from an input file for writing, waiting while the queue is full
+     *
+     * @param file the input file, which determines the shard
+     * @param lines the lines, each a compact JSON object
+     * @throws IOException if the writer is closed or the background thread failed
+     */
+    public void write(String file, List<String> lines) throws IOException {
+        if (closed)
+            throw new IOException("writer is closed");
+        if (failure != null)
+            throw new IOException("writing failed", failure);
+        if (lines.isEmpty())
+            return;
+
+        try {
+            queue.put(new Record(file, lines));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting to write " + file);
+        }
+    }
+
+    private void writeRecords() {
+        try {
+            Record record;
+            while ((record = queue.take()) != END) {
+                if (failure != null)
+                    continue; // keep draining so that writers don't block forever
+
+                Writer shard = shards[Math.floorMod(record.file.hashCode(), shards.length)];
+                try {
+                    for (String line : record.lines) {
+                        shard.write(line);
+                        shard.write('\n');
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("writer thread interrupted");
+        }
+    }
+
+    /**
+     * Writes all queued lines, then closes the shard files
+     *
+     * @throws IOException if writing failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+        }
+
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerThread.interrupt();
+            throw new InterruptedIOException("interrupted while closing");
+        } finally {
+            closeShards();
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private void closeShards() throws IOException {
+        IOException closeFailure = null;
+        for (Writer shard : shards) {
+            if (shard == null)
+                continue;
+            try {
+                shard.close();
+            } catch (IOException e) {
+                closeFailure = e;
+            }
+        }
+        if (closeFailure != null)
+            throw closeFailure;
+    }
+}
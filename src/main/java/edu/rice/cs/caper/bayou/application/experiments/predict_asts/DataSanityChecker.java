@@ -28,7 +28,6 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class DataSanityChecker {
 
@@ -85,7 +84,7 @@ public class DataSanityChecker {
         String vocabDataFile = cmdLine.getOptionValue("v");
 
         System.out.print("Gathering API call vocabulary...");
-        Set<String> vocab = Collections.unmodifiableSet(getVocab(vocabDataFile));
+        BitSet vocab = getVocab(vocabDataFile);
         System.out.println("done");
 
         System.out.println(String.format("Checking validity of each AST in top-%d...", topk));
@@ -128,9 +127,7 @@ public class DataSanityChecker {
                     numInvalidASTs += 1;
                     continue;
                 }
-                Set<String> apicalls = predictedAST.bagOfAPICalls().stream().map(c -> c.toString()).collect(Collectors.toSet());
-                apicalls.removeAll(vocab);
-                if (apicalls.isEmpty()) /* there's no API call that's not in vocab */
+                if (inVocab(predictedAST, vocab)) /* there's no API call that's not in vocab */
                     validASTs.add(predictedAST);
                 else
                     numInvalidASTs += 1;
@@ -173,7 +170,8 @@ public class DataSanityChecker {
         DSubTree ast;
     }
 
-    public Set<String> getVocab(String vocabDataFile) throws IOException {
+    /* the IDs (in the global CallVocabulary) of the API calls in the ASTs of the data file */
+    public BitSet getVocab(String vocabDataFile) throws IOException {
         RuntimeTypeAdapterFactory<DASTNode> nodeAdapter = RuntimeTypeAdapterFactory.of(DASTNode.class, "node")
                 .registerSubtype(DAPICall.class)
                 .registerSubtype(DBranch.class)
@@ -186,15 +184,20 @@ public class DataSanityChecker {
         String s = new String(Files.readAllBytes(Paths.get(vocabDataFile)));
         VocabData js = gson.fromJson(s, VocabData.class);
 
-        Set<String> vocab = new HashSet<>();
-        for (VocabDataPoint dataPoint: js.programs) {
-            DSubTree ast = dataPoint.ast;
-            Set<DAPICall> apicalls = ast.bagOfAPICalls();
-            vocab.addAll(apicalls.stream().map(c -> c.toString()).collect(Collectors.toSet()));
-        }
+        BitSet vocab = new BitSet();
+        for (VocabDataPoint dataPoint: js.programs)
+            for (int id : dataPoint.ast.bagOfAPICallIds())
+                vocab.set(id);
         return vocab;
     }
 
+    static boolean inVocab(DSubTree ast, BitSet vocab) {
+        for (int id : ast.bagOfAPICallIds())
+            if (! vocab.get(id))
+                return false;
+        return true;
+    }
+
     public static void main(String args[]) {
         try {
             new DataSanityChecker(args).execute();
@@ -15,7 +15,6 @@ limitations under the License.
 */
 package edu.rice.cs.caper.bayou.application.experiments.predict_asts;
 
-import edu.rice.cs.caper.bayou.core.dsl.DAPICall;
 import edu.rice.cs.caper.bayou.core.dsl.DSubTree;
 import edu.rice.cs.caper.bayou.core.sketch_metric.Metric;
 
@@ -31,21 +30,10 @@ public class JaccardAPICallsMetric implements Metric
     public float compute(DSubTree originalAST, List<DSubTree> predictedASTs, String aggregate) {
         List<Float> jaccard = new ArrayList<>();
         jaccard.add((float) 1);
-        Set<DAPICall> A = originalAST.bagOfAPICalls();
+        int[] A = originalAST.bagOfAPICallIds();
         for (DSubTree predictedAST : predictedASTs) {
-            Set<DAPICall> B = predictedAST.bagOfAPICalls();
-
-            // A union B
-            Set<DAPICall> AunionB = new HashSet<>();
-            AunionB.addAll(A);
-            AunionB.addAll(B);
-
-            // A intersect B
-            Set<DAPICall> AinterB = new HashSet<>();
-            AinterB.addAll(A);
-            AinterB.retainAll(B);
-
-            jaccard.add(1 - ((float) AinterB.size()) / AunionB.size());
+            int[] B = predictedAST.bagOfAPICallIds();
+            jaccard.add(Metric.jaccardDistance(A, B));
         }
         return Metric.aggregate(jaccard, aggregate);
     }
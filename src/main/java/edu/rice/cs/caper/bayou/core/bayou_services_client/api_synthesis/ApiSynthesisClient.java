@@ -18,9 +18,9 @@ package edu.rice.cs.caper.bayou.core.bayou_services_client.api_synthesis;
 import edu.rice.cs.caper.bayou.core.bayou_services_client.JsonMsgClientBase;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -70,6 +70,7 @@ public class ApiSynthesisClient extends JsonMsgClientBase
      * @param maxProgramCount the maximum number of programs to return
      * @return the result of the synthesis. Never null.
      * @throws IOException if there is a problem communicating with the remote server
+     * @throws UnexpectedStatusCodeException if the server responds with a status code other than 200 or 400
      * @throws SynthesisError if a non-communication error occurs during synthesis
      * @throws IllegalArgumentException if code is null
      * @throws IllegalArgumentException if maxProgramCount is not a natural number
@@ -92,6 +93,7 @@ public class ApiSynthesisClient extends JsonMsgClientBase
      * @param maxProgramCount the maximum number of programs to return. Must be a natural number.
      * @return the result of the synthesis. Never null.
      * @throws IOException if there is a problem communicating with the remote server
+     * @throws UnexpectedStatusCodeException if the server responds with a status code other than 200 or 400
      * @throws SynthesisError if a non-communication error occurs during synthesis
      * @throws IllegalArgumentException if code is null
      * @throws IllegalArgumentException if maxProgramCount or sampleCount is not a natural number
@@ -124,7 +126,6 @@ public class ApiSynthesisClient extends JsonMsgClientBase
         if(sampleCount != null)
             requestMsg.put("sample count", sampleCount);
 
-        HttpClient httpclient = HttpClients.createDefault();
         HttpPost post = new HttpPost("http://" + host + ":" + port + "/apisynthesis");
         post.addHeader("Origin", "http://askbayou.com");
         post.setEntity(new ByteArrayEntity(requestMsg.toString(4).getBytes()));
@@ -133,11 +134,14 @@ public class ApiSynthesisClient extends JsonMsgClientBase
          * Read and parse the response from the server.
          */
         JSONObject responseBodyObj;
+        try(CloseableHttpClient httpclient = HttpClients.createDefault()) // close so connections are not leaked
         {
             HttpResponse response =  httpclient.execute(post);
-            if(response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 400)
+            int statusCode = response.getStatusLine().getStatusCode();
+            if(statusCode != 200 && statusCode != 400)
             {
-                throw new IOException("Unexpected status code: " + response.getStatusLine().getStatusCode());
+                _logger.debug("exiting");
+                throw new UnexpectedStatusCodeException(statusCode);
             }
 
             String responseBodyAsString;
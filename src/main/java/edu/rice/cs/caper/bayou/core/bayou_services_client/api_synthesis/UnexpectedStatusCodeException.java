@@ -0,0 +1,44 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.bayou_services_client.api_synthesis;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the remote server answers a request with an http status code other than 200 or 400, for example
+ * 429 (too many requests) when the server is at its limit of outstanding synthesis requests.
+ */
+public class UnexpectedStatusCodeException extends IOException
+{
+    /**
+     * The http status code of the response.
+     */
+    private final int _statusCode;
+
+    public UnexpectedStatusCodeException(int statusCode)
+    {
+        super("Unexpected status code: " + statusCode);
+        _statusCode = statusCode;
+    }
+
+    /**
+     * @return the http status code of the response.
+     */
+    public int getStatusCode()
+    {
+        return _statusCode;
+    }
+}
@@ -19,6 +19,9 @@ import edu.rice.cs.caper.bayou.core.dsl.DAPICall;
 import edu.rice.cs.caper.bayou.core.dsl.DSubTree;
 import org.eclipse.jdt.core.dom.*;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Stack;
 
 public class DOMMethodInvocation implements Handler {
@@ -62,11 +65,10 @@ public class DOMMethodInvocation implements Handler {
 
         MethodDeclaration localMethod = Utils.checkAndGetLocalMethod(binding, visitor);
         if (localMethod != null) {
-            Stack<MethodDeclaration> callStack = visitor.callStack;
-            if (! callStack.contains(localMethod)) {
-                callStack.push(localMethod);
-                DSubTree Tmethod = new DOMMethodDeclaration(localMethod, visitor).handle();
-                callStack.pop();
+            if (visitor.calledMethods != null)
+                visitor.calledMethods.add(localMethod);
+            if (! visitor.callStack.contains(localMethod)) {
+                DSubTree Tmethod = inline(localMethod);
                 tree.addNodes(Tmethod.getNodes());
             }
         }
@@ -79,5 +81,31 @@ public class DOMMethodInvocation implements Handler {
         }
         return tree;
     }
+
+    // reuses the tree extracted for an earlier call of the local method if recursion was cut off the same way
+    private DSubTree inline(MethodDeclaration localMethod) {
+        Stack<MethodDeclaration> callStack = visitor.callStack;
+        Visitor.InlinedMethod inlined = visitor.inlinedMethods.get(localMethod);
+        if (inlined != null && Collections.disjoint(inlined.calledMethods, callStack)) {
+            if (visitor.calledMethods != null)
+                visitor.calledMethods.addAll(inlined.calledMethods);
+            return inlined.tree;
+        }
+
+        Set<MethodDeclaration> outerCalledMethods = visitor.calledMethods;
+        Set<MethodDeclaration> calledMethods = new HashSet<>();
+        visitor.calledMethods = calledMethods;
+        callStack.push(localMethod);
+        DSubTree Tmethod = new DOMMethodDeclaration(localMethod, visitor).handle();
+        callStack.pop();
+        visitor.calledMethods = outerCalledMethods;
+        if (outerCalledMethods != null)
+            outerCalledMethods.addAll(calledMethods);
+
+        // a call cut off because its method was already on the stack below makes the tree depend on the stack
+        if (Collections.disjoint(calledMethods, callStack))
+            visitor.inlinedMethods.put(localMethod, new Visitor.InlinedMethod(Tmethod, calledMethods));
+        return Tmethod;
+    }
 }
 
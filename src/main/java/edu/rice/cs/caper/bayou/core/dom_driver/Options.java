@@ -15,6 +15,7 @@ limitations under the License.
 */
 package edu.rice.cs.caper.bayou.core.dom_driver;
 
+import com.google.common.hash.Hashing;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
@@ -23,6 +24,7 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class Options {
@@ -187,6 +189,52 @@ public class Options {
             this.JAVADOC_TYPE = "summary";
     }
 
+    private Options(Options other, String file) {
+        this.cmdLine = other.cmdLine;
+        this.config = other.config;
+        this.file = file;
+        this.API_CLASSES = other.API_CLASSES;
+        this.API_PACKAGES = other.API_PACKAGES;
+        this.API_MODULES = other.API_MODULES;
+        this.KNOWN_CONSTANTS_BOOLEAN = other.KNOWN_CONSTANTS_BOOLEAN;
+        this.KNOWN_CONSTANTS_NUMBER = other.KNOWN_CONSTANTS_NUMBER;
+        this.KNOWN_CONSTANTS_STRING = other.KNOWN_CONSTANTS_STRING;
+        this.MAX_SEQS = other.MAX_SEQS;
+        this.MAX_SEQ_LENGTH = other.MAX_SEQ_LENGTH;
+        this.JAVADOC_TYPE = other.JAVADOC_TYPE;
+    }
+
+    /**
+     * Returns a copy of these options for another input file, without re-reading the configuration.
+     * The command line of the copy still names the original input file.
+     *
+     * @param file the input file
+     * @return the options for the file
+     */
+    public Options forFile(String file) {
+        return new Options(this, file);
+    }
+
+    /**
+     * Returns a hash of the settings that affect the extracted data, so that data extracted with different
+     * settings can be told apart. Settings that are equal but written differently in the config have the same hash.
+     *
+     * @return the hash, in hex
+     */
+    public String getConfigHash() {
+        String settings = String.join("\n",
+                String.valueOf(API_CLASSES),
+                String.valueOf(API_PACKAGES),
+                String.valueOf(API_MODULES),
+                String.valueOf(new TreeMap<>(KNOWN_CONSTANTS_BOOLEAN)),
+                String.valueOf(new TreeMap<>(KNOWN_CONSTANTS_NUMBER)),
+                String.valueOf(new TreeMap<>(KNOWN_CONSTANTS_STRING)),
+                String.valueOf(MAX_SEQS),
+                String.valueOf(MAX_SEQ_LENGTH),
+                JAVADOC_TYPE);
+        return Hashing.sha256().hashString(settings, StandardCharsets.UTF_8).toString();
+    }
+
     private CommandLine readCommandLine(String[] args) throws ParseException {
         CommandLineParser parser = new DefaultParser();
         org.apache.commons.cli.Options clopts = new org.apache.commons.cli.Options();
@@ -42,6 +42,25 @@ public class Visitor extends ASTVisitor {
     // call stack during driver execution
     public final Stack<MethodDeclaration> callStack = new Stack<>();
 
+    // trees of the local methods inlined so far (see DOMMethodInvocation)
+    final Map<MethodDeclaration, InlinedMethod> inlinedMethods = new HashMap<>();
+
+    // local methods called by the local method being inlined, or null if none is
+    Set<MethodDeclaration> calledMethods = null;
+
+    static class InlinedMethod {
+        final DSubTree tree;
+
+        // local methods called while extracting the tree, directly or not. The tree can be reused wherever none of
+        // them is on the call stack, since the calls are then inlined (or not) just as they were for this tree.
+        final Set<MethodDeclaration> calledMethods;
+
+        InlinedMethod(DSubTree tree, Set<MethodDeclaration> calledMethods) {
+            this.tree = tree;
+            this.calledMethods = calledMethods;
+        }
+    }
+
     class JSONOutput {
         List<JSONOutputWrapper> programs;
 
@@ -87,28 +106,17 @@ public class Visitor extends ASTVisitor {
         List<MethodDeclaration> constructors = allMethods.stream().filter(m -> m.isConstructor()).collect(Collectors.toList());
         List<MethodDeclaration> publicMethods = allMethods.stream().filter(m -> !m.isConstructor() && Modifier.isPublic(m.getModifiers())).collect(Collectors.toList());
 
+        if (!constructors.isEmpty() && !publicMethods.isEmpty()) {
+            visitPairs(constructors, publicMethods);
+            return false;
+        }
+
         // synchronized lists
         List<DSubTree> asts = new ArrayList<>();
         List<String> javaDocs = new ArrayList<>();
         List<String> methodNames = new ArrayList<>();
 
-        if (!constructors.isEmpty() && !publicMethods.isEmpty()) {
-            for (MethodDeclaration c : constructors)
-                for (MethodDeclaration m : publicMethods) {
-                    String javadoc = Utils.getJavadoc(m, options.JAVADOC_TYPE);
-                    callStack.push(c);
-                    DSubTree ast = new DOMMethodDeclaration(c, this).handle();
-                    callStack.push(m);
-                    ast.addNodes(new DOMMethodDeclaration(m, this).handle().getNodes());
-                    callStack.pop();
-                    callStack.pop();
-                    if (ast.isValid()) {
-                        asts.add(ast);
-                        javaDocs.add(javadoc);
-                        methodNames.add(m.getName().getIdentifier() + "@" + getLineNumber(m));
-                    }
-                }
-        } else if (!constructors.isEmpty()) { // no public methods, only constructor
+        if (!constructors.isEmpty()) { // no public methods, only constructor
             for (MethodDeclaration c : constructors) {
                 String javadoc = Utils.getJavadoc(c, options.JAVADOC_TYPE);
                 callStack.push(c);
@@ -143,9 +151,7 @@ public class Visitor extends ASTVisitor {
             sequences.add(new Sequence());
             try {
                 ast.updateSequences(sequences, options.MAX_SEQS, options.MAX_SEQ_LENGTH);
-                List<Sequence> uniqSequences = new ArrayList<>(new HashSet<>(sequences));
-                if (uniqSequences.size() > 0)
-                    addToJson(ast, uniqSequences, javaDoc, methodName);
+                addToJsonIfAny(ast, sequences, javaDoc, methodName);
             } catch (DASTNode.TooManySequencesException e) {
                 System.err.println("Too many sequences from AST");
             } catch (DASTNode.TooLongSequenceException e) {
@@ -155,6 +161,75 @@ public class Visitor extends ASTVisitor {
         return false;
     }
 
+    /*
+     * Adds the data of each (constructor, public method) pair, i.e., of the constructor body followed by the method
+     * body. Each constructor and method is extracted only once: the tree of a method does not depend on the
+     * constructor below it on the call stack, since only calls to methods are cut off by the call stack and a
+     * constructor is never the target of one. The sequences of a constructor are also enumerated only once and then
+     * extended by each method.
+     */
+    private void visitPairs(List<MethodDeclaration> constructors, List<MethodDeclaration> publicMethods) {
+        List<DSubTree> methodAsts = new ArrayList<>();
+        List<String> methodJavaDocs = new ArrayList<>();
+        for (MethodDeclaration m : publicMethods) {
+            methodJavaDocs.add(Utils.getJavadoc(m, options.JAVADOC_TYPE));
+            callStack.push(m);
+            methodAsts.add(new DOMMethodDeclaration(m, this).handle());
+            callStack.pop();
+        }
+
+        for (MethodDeclaration c : constructors) {
+            callStack.push(c);
+            DSubTree constructorAst = new DOMMethodDeclaration(c, this).handle();
+            callStack.pop();
+
+            List<Sequence> constructorSequences = new ArrayList<>();
+            constructorSequences.add(new Sequence());
+            String constructorError = null; // every pair of the constructor fails the same way
+            try {
+                constructorAst.updateSequences(constructorSequences, options.MAX_SEQS, options.MAX_SEQ_LENGTH);
+            } catch (DASTNode.TooManySequencesException e) {
+                constructorError = "Too many sequences from AST";
+            } catch (DASTNode.TooLongSequenceException e) {
+                constructorError = "Too long sequence from AST";
+            }
+
+            for (int i = 0; i < publicMethods.size(); i++) {
+                DSubTree ast = new DSubTree();
+                ast.addNodes(constructorAst.getNodes());
+                ast.addNodes(methodAsts.get(i).getNodes());
+                if (!ast.isValid())
+                    continue;
+
+                if (constructorError != null) {
+                    System.err.println(constructorError);
+                    continue;
+                }
+
+                MethodDeclaration m = publicMethods.get(i);
+                String methodName = m.getName().getIdentifier() + "@" + getLineNumber(m);
+                try {
+                    List<Sequence> sequences = new ArrayList<>();
+                    for (Sequence sequence : constructorSequences)
+                        sequences.add(new Sequence(sequence));
+                    for (DASTNode node : methodAsts.get(i).getNodes())
+                        node.updateSequences(sequences, options.MAX_SEQS, options.MAX_SEQ_LENGTH);
+                    addToJsonIfAny(ast, sequences, methodJavaDocs.get(i), methodName);
+                } catch (DASTNode.TooManySequencesException e) {
+                    System.err.println("Too many sequences from AST");
+                } catch (DASTNode.TooLongSequenceException e) {
+                    System.err.println("Too long sequence from AST");
+                }
+            }
+        }
+    }
+
+    private void addToJsonIfAny(DSubTree ast, List<Sequence> sequences, String javadoc, String methodName) {
+        List<Sequence> uniqSequences = new ArrayList<>(new HashSet<>(sequences));
+        if (uniqSequences.size() > 0)
+            addToJson(ast, uniqSequences, javadoc, methodName);
+    }
+
     private void addToJson(DSubTree ast, List<Sequence> sequences, String javadoc, String methodName) {
         JSONOutputWrapper out = new JSONOutputWrapper(ast, sequences, javadoc, methodName);
         _js.programs.add(out);
@@ -170,6 +245,20 @@ public class Visitor extends ASTVisitor {
 
     }
 
+    /**
+     * Builds one compact JSON object per extracted program, for writing as JSON Lines
+     *
+     * @return the JSON objects, empty if nothing was extracted
+     */
+    public List<String> buildJsonLines() {
+        Gson gson = new GsonBuilder().serializeNulls().create();
+
+        List<String> lines = new ArrayList<>();
+        for (JSONOutputWrapper program : _js.programs)
+            lines.add(gson.toJson(program));
+        return lines;
+    }
+
     public int getLineNumber(ASTNode node) {
         return unit.getLineNumber(node.getStartPosition());
     }
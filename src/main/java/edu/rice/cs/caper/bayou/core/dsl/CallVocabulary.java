@@ -0,0 +1,152 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.dsl;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interning table of API call signatures (DAPICall._call), which gives each distinct signature a compact int ID and
+ * a single String instance. IDs are handed out in order from 0 and never change.
+ *
+ * The global vocabulary is shared by all sequences and API calls of the process. It can be saved along with a corpus
+ * and loaded back (before anything else is interned) to get the same IDs.
+ *
+ * Thread safe.
+ */
+public class CallVocabulary {
+
+    private static final CallVocabulary global = new CallVocabulary();
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // calls[id] is the call with the ID. Only grows, and a call is stored before its ID is published in ids.
+    private volatile String[] calls = new String[1024];
+
+    private int size = 0; // guarded by this
+
+    public static CallVocabulary global() {
+        return global;
+    }
+
+    /**
+     * Gets the ID of a call, giving it the next ID if it has none yet
+     *
+     * @param call the call signature
+     * @return the ID
+     */
+    public int intern(String call) {
+        Integer id = ids.get(call);
+        if (id != null)
+            return id;
+
+        synchronized (this) {
+            id = ids.get(call);
+            if (id != null)
+                return id;
+
+            if (size == calls.length)
+                calls = Arrays.copyOf(calls, 2 * size);
+            calls[size] = call;
+            ids.put(call, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Gets the single instance of an equal call signature
+     *
+     * @param call the call signature
+     * @return the interned instance
+     */
+    public String canonical(String call) {
+        return getCall(intern(call));
+    }
+
+    /**
+     * Gets the call with an ID
+     *
+     * @param id an ID given out by this vocabulary
+     * @return the call signature
+     */
+    public String getCall(int id) {
+        return calls[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Saves the calls as a JSON array, in ID order
+     *
+     * @param file the file to write
+     */
+    public void save(File file) throws IOException {
+        String[] snapshot;
+        synchronized (this) {
+            snapshot = Arrays.copyOf(calls, size);
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            new Gson().toJson(snapshot, writer);
+        }
+    }
+
+    /**
+     * Interns the calls saved in a file, in their order. If nothing was interned before, each call gets the ID it
+     * had when saved.
+     *
+     * @param file a file written by save
+     */
+    public void load(File file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            for (String call : new Gson().fromJson(reader, String[].class))
+                intern(call);
+        }
+    }
+
+    /**
+     * Reads call signatures from JSON as their interned instances, so that a large corpus holds each signature once.
+     */
+    public static class InterningAdapter extends TypeAdapter<String> {
+        @Override
+        public void write(JsonWriter out, String call) throws IOException {
+            out.value(call);
+        }
+
+        @Override
+        public String read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return global.canonical(in.nextString());
+        }
+    }
+}
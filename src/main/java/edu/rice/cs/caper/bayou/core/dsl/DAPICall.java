@@ -18,10 +18,13 @@ package edu.rice.cs.caper.bayou.core.dsl;
 
 import edu.rice.cs.caper.bayou.core.synthesizer.*;
 import edu.rice.cs.caper.bayou.core.synthesizer.Type;
+import com.google.gson.annotations.JsonAdapter;
 import org.eclipse.jdt.core.dom.*;
 
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -33,10 +36,14 @@ public class DAPICall extends DASTNode
     public class InvalidAPICallException extends Exception {}
 
     String node = "DAPICall";
+    @JsonAdapter(CallVocabulary.InterningAdapter.class)
     String _call;
     List<String> _throws;
     String _returns;
     transient String retVarName = "";
+
+    /* ID of _call in the global CallVocabulary, or -1 if not looked up yet */
+    transient int callId = -1;
     
     /* CAUTION: This field is only available during AST generation */
     transient IMethodBinding methodBinding;
@@ -47,6 +54,18 @@ public class DAPICall extends DASTNode
 
     /* TODO: Add refinement types (predicates) here */
 
+    /**
+     * The constructors and methods resolved so far, per class and then per _call string (empty if there is no
+     * such constructor or method). Shared by all synthesis requests, since the resolution only depends on the class.
+     */
+    private static final ClassValue<ConcurrentMap<String, Optional<Executable>>> resolvedExecutables =
+            new ClassValue<ConcurrentMap<String, Optional<Executable>>>() {
+                @Override
+                protected ConcurrentMap<String, Optional<Executable>> computeValue(Class<?> c) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
     public DAPICall() {
         this._call = "";
         this.node = "DAPICall";
@@ -54,7 +73,7 @@ public class DAPICall extends DASTNode
 
     public DAPICall(IMethodBinding methodBinding, int linenum) throws InvalidAPICallException {
         this.methodBinding = methodBinding;
-        this._call = getClassName() + "." + getSignature();
+        this._call = CallVocabulary.global().canonical(getClassName() + "." + getSignature());
         this._throws = new ArrayList<>();
         for (ITypeBinding exception : methodBinding.getExceptionTypes())
             _throws.add(getTypeName(exception, exception.getQualifiedName()));
@@ -68,9 +87,11 @@ public class DAPICall extends DASTNode
     public void updateSequences(List<Sequence> soFar, int max, int max_length) throws TooManySequencesException, TooLongSequenceException {
         if (soFar.size() >= max)
             throw new TooManySequencesException();
+        int id = getCallId();
+        int hash = _call.hashCode();
         for (Sequence sequence : soFar) {
-            sequence.addCall(_call);
-            if (sequence.getCalls().size() > max_length)
+            sequence.addCall(id, hash);
+            if (sequence.size() > max_length)
                 throw new TooLongSequenceException();
         }
     }
@@ -101,6 +122,13 @@ public class DAPICall extends DASTNode
 
     public void setNotPredicate() {
         this._call = "$NOT$" + this._call;
+        this.callId = -1;
+    }
+
+    public int getCallId() {
+        if (callId < 0)
+            callId = CallVocabulary.global().intern(_call);
+        return callId;
     }
 
     @Override
@@ -155,7 +183,7 @@ public class DAPICall extends DASTNode
         if (o == null || ! (o instanceof DAPICall))
             return false;
         DAPICall apiCall = (DAPICall) o;
-        return _call.equals(apiCall._call);
+        return getCallId() == apiCall.getCallId();
     }
 
     @Override
@@ -174,9 +202,11 @@ public class DAPICall extends DASTNode
     public ASTNode synthesize(Environment env) throws SynthesisException
     {
         boolean notPredicate = _call.contains("$NOT$");
-        if (notPredicate)
+        if (notPredicate) {
             _call = _call.replaceAll("\\$NOT\\$", "");
-        Executable executable = getConstructorOrMethod();
+            callId = -1;
+        }
+        Executable executable = getConstructorOrMethod(env);
         if (executable instanceof Constructor) {
             constructor = (Constructor) executable;
             return synthesizeClassInstanceCreation(env);
@@ -197,7 +227,7 @@ public class DAPICall extends DASTNode
         Type type;
         try {
             type = hasTypeVariable(className)? new Type(constructor.getDeclaringClass())
-                    : Type.fromString(className, env.ast());
+                    : Type.fromString(className, env.ast(), env.getClassResolver());
         } catch (Type.TypeParseException e) {
             throw new SynthesisException(SynthesisException.TypeParseException, className);
         }
@@ -254,7 +284,7 @@ public class DAPICall extends DASTNode
             Type type;
             try {
                 type = hasTypeVariable(className)? new Type(method.getDeclaringClass())
-                        : Type.fromString(className, env.ast());
+                        : Type.fromString(className, env.ast(), env.getClassResolver());
             } catch (Type.TypeParseException e) {
                 throw new SynthesisException(SynthesisException.TypeParseException, className);
             }
@@ -300,20 +330,38 @@ public class DAPICall extends DASTNode
     }
 
     /**
-     * Returns a constructor or method based on the _call class variable
+     * Returns a constructor or method based on the _call class variable. Lookups are cached per class.
      *
+     * @param env the current environment, used to resolve the class of the call
      * @return an Executable representing the constructor or method
      * @throws SynthesisException if executable is not found or there is a generic type mismatch during search
      */
-    private Executable getConstructorOrMethod() throws SynthesisException {
+    private Executable getConstructorOrMethod(Environment env) throws SynthesisException {
+        String qualifiedName = _call.substring(0, _call.indexOf("("));
+        String className = qualifiedName.substring(0, qualifiedName.lastIndexOf("."));
+        String erasedClassName = className.replaceAll("<.*>", "");
+        Class cls = env.getClass(erasedClassName);
+
+        Optional<Executable> executable = resolvedExecutables.get(cls).computeIfAbsent(_call,
+                call -> Optional.ofNullable(findConstructorOrMethod(cls, erasedClassName)));
+        if (! executable.isPresent())
+            throw new SynthesisException(SynthesisException.MethodOrConstructorNotFound, _call);
+        return executable.get();
+    }
+
+    /**
+     * Searches the given class for the constructor or method denoted by the _call class variable
+     *
+     * @param cls the class of the call
+     * @param erasedClassName the type-erased name of the class of the call
+     * @return an Executable representing the constructor or method, or null if it was not found
+     * @throws SynthesisException if there is a generic type mismatch during search
+     */
+    private Executable findConstructorOrMethod(Class cls, String erasedClassName) throws SynthesisException {
         /* Step 1: get the type-erased name */
         String qualifiedName = _call.substring(0, _call.indexOf("("));
         String[] args = _call.substring(_call.indexOf("(") + 1, _call.lastIndexOf(")")).split(",");
-
-        String className = qualifiedName.substring(0, qualifiedName.lastIndexOf("."));
         String methodName = qualifiedName.substring(qualifiedName.lastIndexOf(".") + 1);
-        String erasedClassName = className.replaceAll("<.*>", "");
-        Class cls = Environment.getClass(erasedClassName);
         List<Executable> executables = new ArrayList<>();
         executables.addAll(Arrays.asList(cls.getMethods()));
         executables.addAll(Arrays.asList(cls.getConstructors()));
@@ -354,7 +402,7 @@ public class DAPICall extends DASTNode
                 return e;
         }
 
-        throw new SynthesisException(SynthesisException.MethodOrConstructorNotFound, _call);
+        return null;
     }
 
     /**
@@ -379,16 +427,24 @@ public class DAPICall extends DASTNode
     }
 
     /**
-     * Returns the name of a given executable from its toString() method
+     * Returns the name of a given executable as it appears in its toString() method, with '$' replaced by '.'
      *
      * @param e the executable
      * @return the name of the executable
      */
     private String getNameAsString(Executable e) {
-        for (String s : e.toString().split(" "))
-            if (s.contains("("))
-                return s.replaceAll("\\$", ".");
-        return null;
+        StringBuilder name = new StringBuilder(e.getDeclaringClass().getTypeName());
+        if (e instanceof Method)
+            name.append('.').append(e.getName());
+        name.append('(');
+        Class[] params = e.getParameterTypes();
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0)
+                name.append(',');
+            name.append(params[i].getTypeName());
+        }
+        name.append(')');
+        return name.toString().replace('$', '.');
     }
 
     /**
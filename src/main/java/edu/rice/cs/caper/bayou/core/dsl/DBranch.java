@@ -53,13 +53,14 @@ public class DBranch extends DASTNode {
             call.updateSequences(soFar, max, max_length);
         List<Sequence> copy = new ArrayList<>();
         for (Sequence seq : soFar)
-            copy.add(new Sequence(seq.calls));
+            copy.add(new Sequence(seq));
         for (DASTNode t : _then)
             t.updateSequences(soFar, max, max_length);
         for (DASTNode e : _else)
             e.updateSequences(copy, max, max_length);
+        Set<Sequence> seen = new HashSet<>(soFar);
         for (Sequence seq : copy)
-            if (! soFar.contains(seq))
+            if (seen.add(seq))
                 soFar.add(seq);
     }
 
@@ -184,7 +185,8 @@ public class DBranch extends DASTNode {
         switch (clauses.size()) {
             case 0:
                 SearchTarget target = new SearchTarget(
-                        new Type(ast.newPrimitiveType(PrimitiveType.toCode("boolean")), boolean.class));
+                        new Type(ast.newPrimitiveType(PrimitiveType.toCode("boolean")), boolean.class,
+                                env.getClassResolver()));
                 target.setSingleUseVariable(true);
                 Expression var = env.search(target).getExpression();
                 statement.setExpression(var);
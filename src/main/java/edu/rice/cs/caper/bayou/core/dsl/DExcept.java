@@ -48,11 +48,12 @@ public class DExcept extends DASTNode {
             node.updateSequences(soFar, max, max_length);
         List<Sequence> copy = new ArrayList<>();
         for (Sequence seq : soFar)
-            copy.add(new Sequence(seq.calls));
+            copy.add(new Sequence(seq));
         for (DASTNode e : _catch)
             e.updateSequences(copy, max, max_length);
+        Set<Sequence> seen = new HashSet<>(soFar);
         for (Sequence seq : copy)
-            if (! soFar.contains(seq))
+            if (seen.add(seq))
                 soFar.add(seq);
     }
 
@@ -169,7 +169,8 @@ public class DLoop extends DASTNode {
         switch (clauses.size()) {
             case 0:
                 SearchTarget target = new SearchTarget(
-                        new Type(ast.newPrimitiveType(PrimitiveType.toCode("boolean")), boolean.class));
+                        new Type(ast.newPrimitiveType(PrimitiveType.toCode("boolean")), boolean.class,
+                                env.getClassResolver()));
                 target.setSingleUseVariable(true);
                 Expression var = env.search(target).getExpression();
 
@@ -20,6 +20,7 @@ import edu.rice.cs.caper.bayou.core.synthesizer.SynthesisException;
 import org.eclipse.jdt.core.dom.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -113,6 +114,17 @@ public class DSubTree extends DASTNode {
         return bag;
     }
 
+    /* the distinct IDs of bagOfAPICalls() in the global CallVocabulary, sorted */
+    public int[] bagOfAPICallIds() {
+        Set<DAPICall> bag = bagOfAPICalls();
+        int[] ids = new int[bag.size()];
+        int i = 0;
+        for (DAPICall call : bag)
+            ids[i++] = call.getCallId();
+        Arrays.sort(ids);
+        return ids;
+    }
+
     @Override
     public Set<Class> exceptionsThrown() {
         Set<Class> ex = new HashSet<>();
@@ -15,34 +15,111 @@ limitations under the License.
 */
 package edu.rice.cs.caper.bayou.core.dsl;
 
-import java.util.ArrayList;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * A sequence of API calls.
+ *
+ * The calls are kept as a persistent linked list from the last call back to the first, so that copies of a sequence
+ * (e.g., for the two arms of a branch) share their calls so far instead of copying them, and together form a trie of
+ * the sequences. Calls are stored as their IDs in the global CallVocabulary, so that comparing sequences compares
+ * ints rather than strings. Serialized to JSON as {"calls": [...]}.
+ */
+@JsonAdapter(Sequence.Adapter.class)
 public class Sequence {
-    final List<String> calls;
+
+    private static class Node {
+        final Node previous;
+        final int callId;
+
+        Node(Node previous, int callId) {
+            this.previous = previous;
+            this.callId = callId;
+        }
+    }
+
+    private Node last;
+    private int size;
+    private int hashCode = 17;
+
+    // the calls as a list, if already built since the last call was added
+    private List<String> calls;
 
     public Sequence() {
-        this.calls = new ArrayList<>();
     }
 
     public Sequence(List<String> calls) {
-        this.calls = new ArrayList<>(calls);
+        for (String call : calls)
+            addCall(call);
+    }
+
+    /* copy that shares the calls so far with the given sequence */
+    public Sequence(Sequence seq) {
+        this.last = seq.last;
+        this.size = seq.size;
+        this.hashCode = seq.hashCode;
     }
 
     public List<String> getCalls() {
+        if (calls == null) {
+            CallVocabulary vocab = CallVocabulary.global();
+            String[] array = new String[size];
+            Node node = last;
+            for (int i = size - 1; i >= 0; i--, node = node.previous)
+                array[i] = vocab.getCall(node.callId);
+            calls = Collections.unmodifiableList(Arrays.asList(array));
+        }
         return calls;
     }
 
+    /* the IDs of the calls in the global CallVocabulary, in order */
+    public int[] getCallIds() {
+        int[] ids = new int[size];
+        Node node = last;
+        for (int i = size - 1; i >= 0; i--, node = node.previous)
+            ids[i] = node.callId;
+        return ids;
+    }
+
+    public int size() {
+        return size;
+    }
+
     public void addCall(String apiCall) {
-        calls.add(apiCall);
+        addCall(CallVocabulary.global().intern(apiCall), apiCall.hashCode());
+    }
+
+    // the hash is kept the same as that of the call strings, so that hash-ordered output does not depend on IDs
+    void addCall(int callId, int callHashCode) {
+        last = new Node(last, callId);
+        size++;
+        hashCode = 31 * hashCode + callHashCode;
+        calls = null;
     }
 
     /* check if this is a subsequence of "seq" from index 0 */
     public boolean isSubsequenceOf(Sequence seq) {
-        if (calls.size() > seq.calls.size())
+        if (size > seq.size)
             return false;
-        for (int i = 0; i < calls.size(); i++)
-            if (! calls.get(i).equals(seq.calls.get(i)))
+        Node node = seq.last;
+        for (int i = seq.size; i > size; i--)
+            node = node.previous;
+        return sameCalls(last, node);
+    }
+
+    // compares two lists of calls of the same length, stopping early at a shared prefix
+    private static boolean sameCalls(Node a, Node b) {
+        for (; a != b; a = a.previous, b = b.previous)
+            if (a.callId != b.callId)
                 return false;
         return true;
     }
@@ -52,14 +129,42 @@ public class Sequence {
         if (o == null || ! (o instanceof Sequence))
             return false;
         Sequence seq = (Sequence) o;
-        return calls.equals(seq.calls);
+        return size == seq.size && hashCode == seq.hashCode && sameCalls(last, seq.last);
     }
 
     @Override
     public int hashCode() {
-        int code = 17;
-        for (String call : calls)
-            code = 31 * code + call.hashCode();
-        return code;
+        return hashCode;
+    }
+
+    static class Adapter extends TypeAdapter<Sequence> {
+        @Override
+        public void write(JsonWriter out, Sequence seq) throws IOException {
+            out.beginObject();
+            out.name("calls");
+            out.beginArray();
+            for (String call : seq.getCalls())
+                out.value(call);
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public Sequence read(JsonReader in) throws IOException {
+            Sequence seq = new Sequence();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (! in.nextName().equals("calls") || in.peek() != JsonToken.BEGIN_ARRAY) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                while (in.hasNext())
+                    seq.addCall(in.nextString());
+                in.endArray();
+            }
+            in.endObject();
+            return seq;
+        }
     }
 }
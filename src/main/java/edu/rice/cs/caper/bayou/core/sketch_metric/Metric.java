@@ -50,4 +50,22 @@ public interface Metric {
         double[] dValues = values.stream().mapToDouble(v -> v.floatValue()).toArray();
         return (float) Math.sqrt(StatUtils.variance(dValues));
     }
+
+    /* Jaccard distance between two sets given as sorted arrays of distinct ints (e.g., DSubTree.bagOfAPICallIds) */
+    static float jaccardDistance(int[] A, int[] B) {
+        int inter = 0;
+        for (int i = 0, j = 0; i < A.length && j < B.length; ) {
+            if (A[i] < B[j])
+                i++;
+            else if (A[i] > B[j])
+                j++;
+            else {
+                inter++;
+                i++;
+                j++;
+            }
+        }
+        int union = A.length + B.length - inter;
+        return 1 - ((float) inter) / union;
+    }
 }
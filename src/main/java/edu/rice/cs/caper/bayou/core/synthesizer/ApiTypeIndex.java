@@ -0,0 +1,469 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import com.google.common.collect.Multimap;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reflections.Reflections;
+import org.reflections.scanners.SubTypesScanner;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.TypeVariable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An immutable index of the API types that the enumerator searches over. The index records the subtype graph of
+ * the API packages, and (lazily, per class) the public constructors, static factory methods and public methods, as
+ * well as the method chains that lead from the class to other types.
+ * It is built once, either by scanning the classpath or by loading a previously saved index file, and is then
+ * shared by all synthesis requests. Instances are safe for use by multiple threads.
+ */
+public class ApiTypeIndex {
+
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(ApiTypeIndex.class.getName());
+
+    /**
+     * The API packages whose types are indexed by default
+     */
+    public static final List<String> DEFAULT_PACKAGES = Collections.unmodifiableList(
+            Arrays.asList("java.io", "java.util"));
+
+    /**
+     * Magic number and version written at the start of an index file
+     */
+    private static final int FILE_MAGIC = 0xBA10_1DE0;
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * The packages that were scanned to build this index
+     */
+    private final List<String> packages;
+
+    /**
+     * The version of the Java runtime whose classes were scanned to build this index
+     */
+    private final String javaVersion;
+
+    /**
+     * Map from the (binary) name of a type to the sorted names of all its (transitive) subtypes in the index
+     */
+    private final Map<String, List<String>> subTypes;
+
+    /**
+     * Per-class table of public constructors, static factories and public methods, computed on first use
+     */
+    private final ClassValue<ClassMembers> members = new ClassValue<ClassMembers>() {
+        @Override
+        protected ClassMembers computeValue(Class<?> c) {
+            return new ClassMembers(c);
+        }
+    };
+
+    /**
+     * The index shared by all synthesizers that are not given one explicitly
+     */
+    private static volatile ApiTypeIndex shared;
+
+    /**
+     * The public members of a class that are relevant to enumerative search
+     */
+    public static class ClassMembers {
+
+        /**
+         * Public constructors of the class
+         */
+        private final List<Constructor> constructors;
+
+        /**
+         * Public static methods whose return type is assignable to the class
+         */
+        private final List<Method> staticFactories;
+
+        /**
+         * Public (static and instance) methods of the class
+         */
+        private final List<Method> publicMethods;
+
+        /**
+         * Public methods of the class that return a value, i.e., the edges leaving the class in the method chain graph
+         */
+        private final List<Method> chainMethods;
+
+        /**
+         * Method chains from the class to a target class, computed on first query
+         */
+        private final ConcurrentMap<Class, List<List<Method>>> chainsTo;
+
+        private ClassMembers(Class c) {
+            List<Constructor> constructors = new ArrayList<>();
+            for (Constructor constructor : c.getConstructors())
+                if (Modifier.isPublic(constructor.getModifiers()))
+                    constructors.add(constructor);
+
+            List<Method> staticFactories = new ArrayList<>();
+            List<Method> publicMethods = new ArrayList<>();
+            for (Method m : c.getMethods()) {
+                if (!Modifier.isPublic(m.getModifiers()))
+                    continue;
+                publicMethods.add(m);
+                if (Modifier.isStatic(m.getModifiers()) && ClassUtils.isAssignable(m.getReturnType(), c, true))
+                    staticFactories.add(m);
+            }
+
+            this.constructors = Collections.unmodifiableList(constructors);
+            this.staticFactories = Collections.unmodifiableList(staticFactories);
+            this.publicMethods = Collections.unmodifiableList(publicMethods);
+
+            List<Method> chainMethods = new ArrayList<>();
+            for (Method m : publicMethods)
+                if (m.getReturnType() != void.class)
+                    chainMethods.add(m);
+            chainMethods.sort(Comparator.comparingInt(m -> m.getParameterCount()));
+            this.chainMethods = Collections.unmodifiableList(chainMethods);
+            this.chainsTo = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Gets the public constructors of the class
+         *
+         * @return unmodifiable list of constructors
+         */
+        public List<Constructor> getConstructors() {
+            return constructors;
+        }
+
+        /**
+         * Gets the public static methods that return (a subtype of) the class
+         *
+         * @return unmodifiable list of static factory methods
+         */
+        public List<Method> getStaticFactories() {
+            return staticFactories;
+        }
+
+        /**
+         * Gets the public methods of the class
+         *
+         * @return unmodifiable list of methods
+         */
+        public List<Method> getPublicMethods() {
+            return publicMethods;
+        }
+
+        /**
+         * Gets the public methods of the class that return a value, ordered by number of parameters
+         *
+         * @return unmodifiable list of methods
+         */
+        public List<Method> getChainMethods() {
+            return chainMethods;
+        }
+    }
+
+    /**
+     * Initializes the index from an already computed subtype graph
+     *
+     * @param packages    the packages that were scanned
+     * @param javaVersion the version of the Java runtime that was scanned
+     * @param subTypes    map from type name to the names of its transitive subtypes
+     */
+    ApiTypeIndex(List<String> packages, String javaVersion, Map<String, ? extends Collection<String>> subTypes) {
+        this.packages = Collections.unmodifiableList(new ArrayList<>(packages));
+        this.javaVersion = javaVersion;
+        Map<String, List<String>> map = new HashMap<>();
+        for (Map.Entry<String, ? extends Collection<String>> entry : subTypes.entrySet()) {
+            List<String> names = new ArrayList<>(new TreeSet<>(entry.getValue()));
+            map.put(entry.getKey(), Collections.unmodifiableList(names));
+        }
+        this.subTypes = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Builds an index by scanning the classpath for types in the given packages
+     *
+     * @param packages the API packages to scan
+     * @return the index
+     */
+    public static ApiTypeIndex build(List<String> packages) {
+        long start = System.currentTimeMillis();
+        Reflections reflections = new Reflections(packages.toArray());
+        String scanner = SubTypesScanner.class.getSimpleName();
+        Multimap<String, String> direct = reflections.getStore().getOrCreate(scanner);
+
+        Map<String, Set<String>> subTypes = new HashMap<>();
+        for (String superType : direct.keySet()) {
+            Set<String> all = new HashSet<>();
+            for (String subType : reflections.getStore().getAll(scanner, superType))
+                all.add(subType);
+            subTypes.put(superType, all);
+        }
+
+        _logger.info("Built API type index of " + subTypes.size() + " types in " +
+                (System.currentTimeMillis() - start) + "ms");
+        return new ApiTypeIndex(packages, System.getProperty("java.version"), subTypes);
+    }
+
+    /**
+     * Loads an index that was previously written with save(..)
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if the file could not be read or is not an index file
+     */
+    public static ApiTypeIndex load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION)
+                throw new IOException("Not an API type index file: " + file.getAbsolutePath());
+            String javaVersion = in.readUTF();
+
+            int numPackages = in.readInt();
+            List<String> packages = new ArrayList<>(numPackages);
+            for (int i = 0; i < numPackages; i++)
+                packages.add(in.readUTF());
+
+            // type names are stored once in a table and referred to by their position in it
+            int numNames = in.readInt();
+            String[] names = new String[numNames];
+            for (int i = 0; i < numNames; i++)
+                names[i] = in.readUTF();
+
+            int numTypes = in.readInt();
+            Map<String, List<String>> subTypes = new HashMap<>(numTypes * 2);
+            for (int i = 0; i < numTypes; i++) {
+                String superType = names[in.readInt()];
+                int numSubTypes = in.readInt();
+                List<String> subs = new ArrayList<>(numSubTypes);
+                for (int j = 0; j < numSubTypes; j++)
+                    subs.add(names[in.readInt()]);
+                subTypes.put(superType, subs);
+            }
+            return new ApiTypeIndex(packages, javaVersion, subTypes);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt API type index file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Saves this index to the given file in a compact binary format
+     *
+     * @param file the file to write to (overwritten if it exists)
+     * @throws IOException if the file could not be written
+     */
+    public void save(File file) throws IOException {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : subTypes.entrySet()) {
+            ids.putIfAbsent(entry.getKey(), ids.size());
+            for (String sub : entry.getValue())
+                ids.putIfAbsent(sub, ids.size());
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(javaVersion);
+            out.writeInt(packages.size());
+            for (String p : packages)
+                out.writeUTF(p);
+            out.writeInt(ids.size());
+            for (String name : ids.keySet())
+                out.writeUTF(name);
+            out.writeInt(subTypes.size());
+            for (Map.Entry<String, List<String>> entry : subTypes.entrySet()) {
+                out.writeInt(ids.get(entry.getKey()));
+                out.writeInt(entry.getValue().size());
+                for (String sub : entry.getValue())
+                    out.writeInt(ids.get(sub));
+            }
+        }
+    }
+
+    /**
+     * Loads the index from the given file if it exists and was built for the given packages on the current Java
+     * runtime. Otherwise, builds the
+     * index by scanning the classpath and, if a file is given, saves it there for subsequent runs.
+     *
+     * @param file     the index file, or null if the index should not be persisted
+     * @param packages the API packages to index
+     * @return the index
+     */
+    public static ApiTypeIndex loadOrBuild(File file, List<String> packages) {
+        if (file != null && file.exists()) {
+            try {
+                ApiTypeIndex index = load(file);
+                if (index.packages.equals(packages) && index.javaVersion.equals(System.getProperty("java.version"))) {
+                    _logger.info("Loaded API type index from " + file.getAbsolutePath());
+                    return index;
+                }
+                _logger.warn("API type index " + file.getAbsolutePath() + " is out of date. Rebuilding.");
+            } catch (IOException e) {
+                _logger.warn("Could not load API type index " + file.getAbsolutePath() + ". Rebuilding.", e);
+            }
+        }
+
+        ApiTypeIndex index = build(packages);
+        if (file != null) {
+            try {
+                index.save(file);
+            } catch (IOException e) {
+                _logger.warn("Could not save API type index to " + file.getAbsolutePath(), e);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Initializes the shared index from the given file (see loadOrBuild). Meant to be called once at startup.
+     *
+     * @param file the index file, or null if the index should not be persisted
+     * @return the shared index
+     */
+    public static synchronized ApiTypeIndex initShared(File file) {
+        shared = loadOrBuild(file, DEFAULT_PACKAGES);
+        return shared;
+    }
+
+    /**
+     * Gets the shared index, building it (without persistence) if it has not been initialized yet
+     *
+     * @return the shared index
+     */
+    public static ApiTypeIndex getShared() {
+        ApiTypeIndex index = shared;
+        if (index != null)
+            return index;
+        synchronized (ApiTypeIndex.class) {
+            if (shared == null)
+                shared = build(DEFAULT_PACKAGES);
+            return shared;
+        }
+    }
+
+    /**
+     * Gets the packages that were scanned to build this index
+     *
+     * @return unmodifiable list of package names
+     */
+    public List<String> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Returns all (transitive) subtypes of the given class that are in the index. Subtypes that cannot be loaded
+     * in the class loader of the given class are skipped.
+     *
+     * @param c the class whose subtypes are required
+     * @return list of subtypes, in a deterministic order
+     */
+    public List<Class> getSubTypesOf(Class c) {
+        List<String> names = subTypes.get(c.getName());
+        if (names == null)
+            return Collections.emptyList();
+        List<Class> classes = new ArrayList<>(names.size());
+        for (String name : names) {
+            try {
+                classes.add(Class.forName(name, false, c.getClassLoader()));
+            } catch (ClassNotFoundException | LinkageError e) {
+                // not visible from this class, so not a candidate for synthesis either
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Gets the public constructors, static factories and public methods of the given class
+     *
+     * @param c the class
+     * @return the class members
+     */
+    public ClassMembers getMembers(Class c) {
+        return members.get(c);
+    }
+
+    /**
+     * Returns the public constructors of the given class followed by its static factory methods, i.e., all
+     * executables that can be used to create an object of the class
+     *
+     * @param c the class
+     * @return a new (modifiable) list of executables
+     */
+    public List<Executable> getConstructorsAndFactories(Class c) {
+        ClassMembers m = getMembers(c);
+        List<Executable> executables = new ArrayList<>(m.getConstructors().size() + m.getStaticFactories().size());
+        executables.addAll(m.getConstructors());
+        executables.addAll(m.getStaticFactories());
+        return executables;
+    }
+
+    /**
+     * Returns the chains of at most ExpressionChain.MAX_COMPOSE_LENGTH method calls that lead from an object of the
+     * given class to (a subtype of) the target class, shortest chains first. A chain is not extended once it reaches
+     * the target. Since this works on erased types, a method whose return type is a type variable is assumed to
+     * possibly reach any target, and callers have to check each chain against the concretized types. The result is
+     * computed once per pair of classes.
+     *
+     * @param from   the class the chains start at
+     * @param target the class the chains should produce
+     * @return unmodifiable list of chains, each an unmodifiable list of methods
+     */
+    public List<List<Method>> getMethodChains(Class from, Class target) {
+        return getMembers(from).chainsTo.computeIfAbsent(target, t -> findMethodChains(from, t));
+    }
+
+    /**
+     * Breadth-first search for method chains in the method chain graph, see getMethodChains(Class, Class)
+     */
+    private List<List<Method>> findMethodChains(Class from, Class target) {
+        List<List<Method>> chains = new ArrayList<>();
+        List<List<Method>> frontier = new ArrayList<>();
+        frontier.add(Collections.emptyList());
+
+        for (int length = 1; length <= ExpressionChain.MAX_COMPOSE_LENGTH; length++) {
+            List<List<Method>> next = new ArrayList<>();
+            for (List<Method> prefix : frontier) {
+                Class current = prefix.isEmpty()? from : prefix.get(prefix.size() - 1).getReturnType();
+                for (Method m : getMembers(current).getChainMethods()) {
+                    List<Method> chain = new ArrayList<>(prefix);
+                    chain.add(m);
+
+                    boolean generic = m.getGenericReturnType() instanceof TypeVariable;
+                    boolean reaches = generic || ClassUtils.isAssignable(m.getReturnType(), target, true);
+                    if (reaches)
+                        chains.add(Collections.unmodifiableList(chain));
+                    if (! reaches || generic)
+                        next.add(chain);
+                }
+            }
+            frontier = next;
+        }
+
+        return Collections.unmodifiableList(chains);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.ClassUtils;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resolves class names to classes of a fixed classpath. There is one long-lived resolver per classpath so that the
+ * JARs on the classpath are opened once and not on every synthesis request. Lookups (including failed ones) are
+ * kept in a bounded cache. Instances are safe for use by multiple threads.
+ */
+public class ClassResolver {
+
+    /**
+     * The maximum number of class lookups (successful or not) remembered by each resolver
+     */
+    static final int MAX_CACHED_LOOKUPS = 10000;
+
+    /**
+     * The resolvers created so far, keyed by their classpath
+     */
+    private static final ConcurrentMap<List<URL>, ClassResolver> resolvers = new ConcurrentHashMap<>();
+
+    /**
+     * The class loader for the classpath
+     */
+    private final ClassLoader classLoader;
+
+    /**
+     * Cache of class lookups, where an empty value denotes that the class was not found
+     */
+    private final Cache<String, Optional<Class>> lookups;
+
+    /**
+     * Initializes the resolver with the given class loader
+     *
+     * @param classLoader the class loader to resolve classes in
+     */
+    ClassResolver(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        this.lookups = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_LOOKUPS).build();
+    }
+
+    /**
+     * Returns the resolver for the given classpath, creating it if this is the first request for the classpath
+     *
+     * @param classpathURLs the classpath
+     * @return the resolver
+     */
+    public static ClassResolver forClasspath(URL[] classpathURLs) {
+        return resolvers.computeIfAbsent(Arrays.asList(classpathURLs.clone()),
+                urls -> new ClassResolver(URLClassLoader.newInstance(classpathURLs)));
+    }
+
+    /**
+     * Returns the class with the given name. The name may also denote a primitive or an array type.
+     *
+     * @param name name of the class
+     * @return the class
+     * @throws SynthesisException if the class could not be found
+     */
+    public Class getClass(String name) throws SynthesisException {
+        Optional<Class> cls;
+        try {
+            cls = lookups.get(name, () -> {
+                try {
+                    return Optional.of(ClassUtils.getClass(classLoader, name));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    return Optional.empty();
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new SynthesisException(SynthesisException.ClassNotFoundInLoader, name);
+        }
+        if (!cls.isPresent())
+            throw new SynthesisException(SynthesisException.ClassNotFoundInLoader, name);
+        return cls.get();
+    }
+
+    /**
+     * Gets the class loader that this resolver resolves classes in
+     *
+     * @return the class loader
+     */
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A memo table of enumerative search results, shared by all sketches of a synthesis request. For each target type
+ * (including its type arguments), argument depth and scope signature (see Scope.getSignature()) it remembers how the
+ * enumerator expanded the target the first time, i.e., which constructor, static factory, subtype or method chain
+ * won, or that no expansion was found. The enumerator then only has to rebuild the winning expansion, instead of trying out all candidates again.
+ * Since the scope signature is part of the key, an entry no longer applies once variables are added to or removed
+ * from the scope. Instances are safe for use by multiple threads.
+ */
+public class EnumerationMemo {
+
+    /**
+     * The remembered expansions
+     */
+    private final ConcurrentMap<Key, Expansion> expansions;
+
+    /**
+     * The number of lookups that found an expansion
+     */
+    private final AtomicLong hits;
+
+    /**
+     * The number of lookups that did not find an expansion
+     */
+    private final AtomicLong misses;
+
+    /**
+     * Initializes an empty memo table
+     */
+    public EnumerationMemo() {
+        this.expansions = new ConcurrentHashMap<>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Gets the remembered expansion of a target
+     *
+     * @param key the target type, argument depth and scope signature
+     * @return the expansion, or null if the target was not expanded before
+     */
+    Expansion get(Key key) {
+        Expansion expansion = expansions.get(key);
+        if (expansion == null)
+            misses.incrementAndGet();
+        else
+            hits.incrementAndGet();
+        return expansion;
+    }
+
+    /**
+     * Remembers the expansion of a target
+     *
+     * @param key       the target type, argument depth and scope signature
+     * @param expansion the expansion
+     */
+    void put(Key key, Expansion expansion) {
+        expansions.put(key, expansion);
+    }
+
+    /**
+     * Gets the number of lookups that found an expansion
+     *
+     * @return current value
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that did not find an expansion
+     *
+     * @return current value
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of remembered expansions
+     *
+     * @return current value
+     */
+    public int size() {
+        return expansions.size();
+    }
+
+    /**
+     * The key of an expansion: the target type, the argument depth at which it was searched for and the signature of
+     * the scope it was searched in. The target type is compared with its type arguments, since an expansion that
+     * produces, e.g., List<String> is not one that produces List<Integer>.
+     */
+    static class Key {
+        private final Class targetClass;
+        private final String targetType;
+        private final int argDepth;
+        private final String scopeSignature;
+
+        Key(Type targetType, int argDepth, String scopeSignature) {
+            this.targetClass = targetType.C();
+            this.targetType = targetType.toString(); // the concrete (DOM) type if there is one, the class otherwise
+            this.argDepth = argDepth;
+            this.scopeSignature = scopeSignature;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || ! (o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return targetClass.equals(key.targetClass) && targetType.equals(key.targetType)
+                    && argDepth == key.argDepth && scopeSignature.equals(key.scopeSignature);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(targetClass, targetType, argDepth, scopeSignature);
+        }
+    }
+
+    /**
+     * How a target was expanded. Exactly one of executable, subType and chainVariable is set, unless the expansion
+     * failed, in which case none of them is.
+     */
+    static class Expansion {
+        /**
+         * The expansion of a target that could not be expanded
+         */
+        static final Expansion FAILED = new Expansion(null, null, null, Collections.emptyList());
+
+        /**
+         * The constructor or static factory method that creates the target
+         */
+        final Executable executable;
+
+        /**
+         * The subtype of an abstract target type whose expansion is used for the target
+         */
+        final Class subType;
+
+        /**
+         * The name of the variable that a method chain producing the target starts at
+         */
+        final String chainVariable;
+
+        /**
+         * The methods of the chain
+         */
+        final List<Method> chainMethods;
+
+        private Expansion(Executable executable, Class subType, String chainVariable, List<Method> chainMethods) {
+            this.executable = executable;
+            this.subType = subType;
+            this.chainVariable = chainVariable;
+            this.chainMethods = chainMethods;
+        }
+
+        static Expansion ofExecutable(Executable executable) {
+            return new Expansion(executable, null, null, Collections.emptyList());
+        }
+
+        static Expansion ofSubType(Class subType) {
+            return new Expansion(null, subType, null, Collections.emptyList());
+        }
+
+        static Expansion ofChain(ExpressionChain chain) {
+            return new Expansion(null, null, chain.var.getName(), new ArrayList<>(chain.methods));
+        }
+
+        boolean isFailed() {
+            return executable == null && subType == null && chainVariable == null;
+        }
+    }
+}
@@ -110,27 +110,37 @@ public class Enumerator {
 
         // if a predefined constant exists for this type, just use it
         if (env.predefinedConstants.hasPredefinedConstant(targetType.C()))
-            return env.predefinedConstants.getTypedExpression(targetType.C(), ast);
+            return env.predefinedConstants.getTypedExpression(targetType.C(), ast, env.getClassResolver());
+
+        /* if this target was expanded before in the same scope, just rebuild the expansion that won back then */
+        EnumerationMemo.Key key = new EnumerationMemo.Key(targetType, argDepth, env.getScope().getSignature());
+        EnumerationMemo.Expansion memoized = env.enumerationMemo.get(key);
+        if (memoized != null) {
+            if (memoized.isFailed())
+                return null;
+            TypedExpression tExpr = rebuild(memoized, targetType, argDepth, toSearch, enumerator);
+            if (tExpr != null)
+                return tExpr;
+        }
 
         /* first, see if we can create a new object of target type directly */
-        List<Executable> constructors = new ArrayList<>(Arrays.asList(targetType.C().getConstructors()));
+        List<Executable> constructors = new ArrayList<>(env.apiTypeIndex.getMembers(targetType.C()).getConstructors());
         /* static methods that return the target type are considered "constructors" here */
-        for (Method m : targetType.C().getMethods())
-            if (Modifier.isStatic(m.getModifiers()) && targetType.isAssignableFrom(m.getReturnType()))
+        for (Method m : env.apiTypeIndex.getMembers(targetType.C()).getStaticFactories())
+            if (targetType.isAssignableFrom(m.getReturnType()))
                 constructors.add(m);
         sortExecutablesByCost(constructors);
 
         List<TypedExpression> candidates = new ArrayList<>();
+        Map<TypedExpression, EnumerationMemo.Expansion> expansions = new IdentityHashMap<>();
         for (Executable constructor : constructors) {
             if (Modifier.isAbstract(targetType.C().getModifiers())
                     || Modifier.isInterface(targetType.C().getModifiers())) {
-                for (Object o : env.reflections.getSubTypesOf(targetType.C())) {
-                    TypedExpression tExpr = enumerator.enumerate(
-                            new SearchTarget(new Type((Class) o)), argDepth, toSearch);
+                for (Class subType : env.apiTypeIndex.getSubTypesOf(targetType.C())) {
+                    TypedExpression tExpr = enumerateSubType(subType, argDepth, toSearch, enumerator);
                     if (tExpr != null) {
-                        // concretize the type before finalizing candidate
-                        tExpr.getType().concretizeType(env);
                         candidates.add(tExpr);
+                        expansions.put(tExpr, EnumerationMemo.Expansion.ofSubType(subType));
                     }
                 }
                 break;
@@ -138,55 +148,10 @@ public class Enumerator {
             if (! Modifier.isPublic(constructor.getModifiers()))
                 continue;
 
-            if (constructor instanceof Constructor) { /* an actual constructor */
-                ClassInstanceCreation creation = ast.newClassInstanceCreation();
-                TypedExpression tExpr = new TypedExpression(creation, targetType);
-                creation.setType(ast.newSimpleType(ast.newSimpleName(targetType.C().getSimpleName())));
-
-                int i;
-                for (i = 0; i < constructor.getParameterCount(); i++) {
-                    Class argType = constructor.getParameterTypes()[i];
-                    String name = constructor.getParameters()[i].getName();
-                    SearchTarget newTarget = new SearchTarget(new Type(argType))
-                            .setAPICallName(constructor.getName())
-                            .setParamName(name)
-                            .setSingleUseVariable(true);
-                    TypedExpression tArg = enumerator.search(newTarget, argDepth + 1);
-                    if (tArg == null)
-                        break;
-                    tExpr.addReferencedVariables(tArg.getReferencedVariables());
-                    tExpr.addAssociatedImports(tArg.getAssociatedImports());
-                    creation.arguments().add(tArg.getExpression());
-                }
-                if (i == constructor.getParameterCount()) {
-                    tExpr.addAssociatedImport(targetType.C());
-                    candidates.add(tExpr);
-                }
-            }
-            else { /* a static method that returns the object type */
-                MethodInvocation invocation = ast.newMethodInvocation();
-                TypedExpression tExpr = new TypedExpression(invocation, targetType);
-                int i;
-                invocation.setExpression(ast.newSimpleName(targetType.C().getSimpleName()));
-                invocation.setName(ast.newSimpleName(constructor.getName()));
-                for (i = 0; i < constructor.getParameterCount(); i++) {
-                    Class argType = constructor.getParameterTypes()[i];
-                    String name = constructor.getParameters()[i].getName();
-                    SearchTarget newTarget = new SearchTarget(new Type(argType))
-                            .setAPICallName(constructor.getName())
-                            .setParamName(name)
-                            .setSingleUseVariable(true);
-                    TypedExpression tArg = enumerator.search(newTarget, argDepth + 1);
-                    if (tArg == null)
-                        break;
-                    tExpr.addReferencedVariables(tArg.getReferencedVariables());
-                    tExpr.addAssociatedImports(tArg.getAssociatedImports());
-                    invocation.arguments().add(tArg.getExpression());
-                }
-                if (i == constructor.getParameterCount()) {
-                    tExpr.addAssociatedImport(targetType.C());
-                    candidates.add(tExpr);
-                }
+            TypedExpression tExpr = enumerateExecutable(constructor, targetType, argDepth, enumerator);
+            if (tExpr != null) {
+                candidates.add(tExpr);
+                expansions.put(tExpr, EnumerationMemo.Expansion.ofExecutable(constructor));
             }
         }
 
@@ -201,10 +166,12 @@ public class Enumerator {
                     if (var.isDefaultInit() && var.getRefCount() == 0)
                         env.removeVariable(var);
 
+            env.enumerationMemo.put(key, expansions.get(retExpr));
             return retExpr;
         }
 
         if (mode == Synthesizer.Mode.CONDITIONAL_PROGRAM_GENERATOR) {
+            env.enumerationMemo.put(key, EnumerationMemo.Expansion.FAILED);
             return null;
         }
 
@@ -214,79 +181,164 @@ public class Enumerator {
             chains.addAll(searchForChains(targetType, var));
         sortChainsByCost(chains);
 
-        int i, j;
         for (ExpressionChain chain : chains) {
             /* for each chain, see if we can synthesize all arguments in all methods in the chain */
-            MethodInvocation invocation = ast.newMethodInvocation();
-            Expression expr = chain.var.createASTNode(ast);
-            Set<Variable> referencedVariables = new HashSet<>();
-            Set<Class> associatedImports = new HashSet<>();
-            for (i = 0; i < chain.methods.size(); i++) {
-                Method m = chain.methods.get(i);
-                invocation.setExpression(expr);
-                invocation.setName(ast.newSimpleName(m.getName()));
-
-                for (j = 0; j < m.getParameterCount(); j++) {
-                    Class argType  = m.getParameterTypes()[j];
-                    String name = m.getParameters()[j].getName();
-                    SearchTarget newTarget = new SearchTarget(new Type(argType))
-                            .setAPICallName(m.getName())
-                            .setParamName(name)
-                            .setSingleUseVariable(true);
-                    TypedExpression  tArg;
-                    try {
-                        tArg = enumerator.search(newTarget, argDepth + 1);
-                    } catch (SynthesisException e) {
-                        break; // could not synthesize some argument, ignore this chain
-                    }
-                    if (tArg == null)
-                        break;
-                    referencedVariables.addAll(tArg.getReferencedVariables());
-                    associatedImports.addAll(tArg.getAssociatedImports());
-                    invocation.arguments().add(tArg.getExpression());
+            TypedExpression tExpr = enumerateChain(chain, targetType, argDepth, enumerator);
+            if (tExpr != null) {
+                env.enumerationMemo.put(key, EnumerationMemo.Expansion.ofChain(chain));
+                return tExpr;
+            }
+        }
+
+        env.enumerationMemo.put(key, EnumerationMemo.Expansion.FAILED);
+        return null;
+    }
+
+    /* rebuilds a memoized expansion, or returns null if it cannot be rebuilt in the current environment */
+    private TypedExpression rebuild(EnumerationMemo.Expansion expansion, Type targetType, int argDepth,
+                                    List<Variable> toSearch, Enumerator enumerator) {
+        if (expansion.executable != null)
+            return enumerateExecutable(expansion.executable, targetType, argDepth, enumerator);
+        if (expansion.subType != null)
+            return enumerateSubType(expansion.subType, argDepth, toSearch, enumerator);
+
+        for (Variable var : toSearch)
+            if (var.getName().equals(expansion.chainVariable)) {
+                ExpressionChain chain = new ExpressionChain(var);
+                try {
+                    for (Method m : expansion.chainMethods)
+                        chain.addMethod(m);
+                } catch (SynthesisException e) {
+                    return null;
                 }
-                if (j != m.getParameterCount())
-                    break;
-                expr = invocation;
-                invocation = ast.newMethodInvocation();
+                // the variable may have a different concrete type than when the chain was found
+                if (! targetType.isAssignableFrom(chain.getCurrentType()))
+                    return null;
+                return enumerateChain(chain, targetType, argDepth, enumerator);
+            }
+        return null;
+    }
+
+    /* creates an object of the given subtype of an abstract target type */
+    private TypedExpression enumerateSubType(Class subType, int argDepth, List<Variable> toSearch,
+                                             Enumerator enumerator) {
+        TypedExpression tExpr = enumerator.enumerate(new SearchTarget(new Type(subType)), argDepth, toSearch);
+        if (tExpr != null) {
+            // concretize the type before finalizing candidate
+            tExpr.getType().concretizeType(env);
+        }
+        return tExpr;
+    }
+
+    /* creates an object of target type with the given constructor or static factory method */
+    private TypedExpression enumerateExecutable(Executable constructor, Type targetType, int argDepth,
+                                                Enumerator enumerator) {
+        if (constructor instanceof Constructor) { /* an actual constructor */
+            ClassInstanceCreation creation = ast.newClassInstanceCreation();
+            TypedExpression tExpr = new TypedExpression(creation, targetType);
+            creation.setType(ast.newSimpleType(ast.newSimpleName(targetType.C().getSimpleName())));
+
+            for (int i = 0; i < constructor.getParameterCount(); i++) {
+                Class argType = constructor.getParameterTypes()[i];
+                String name = constructor.getParameters()[i].getName();
+                SearchTarget newTarget = new SearchTarget(new Type(argType))
+                        .setAPICallName(constructor.getName())
+                        .setParamName(name)
+                        .setSingleUseVariable(true);
+                TypedExpression tArg = enumerator.search(newTarget, argDepth + 1);
+                if (tArg == null)
+                    return null;
+                tExpr.addReferencedVariables(tArg.getReferencedVariables());
+                tExpr.addAssociatedImports(tArg.getAssociatedImports());
+                creation.arguments().add(tArg.getExpression());
             }
-            if (i == chain.methods.size()) {
-                return new TypedExpression(expr, targetType)
-                        .addReferencedVariables(referencedVariables)
-                        .addAssociatedImports(associatedImports);
+            tExpr.addAssociatedImport(targetType.C());
+            return tExpr;
+        }
+        else { /* a static method that returns the object type */
+            MethodInvocation invocation = ast.newMethodInvocation();
+            TypedExpression tExpr = new TypedExpression(invocation, targetType);
+            invocation.setExpression(ast.newSimpleName(targetType.C().getSimpleName()));
+            invocation.setName(ast.newSimpleName(constructor.getName()));
+            for (int i = 0; i < constructor.getParameterCount(); i++) {
+                Class argType = constructor.getParameterTypes()[i];
+                String name = constructor.getParameters()[i].getName();
+                SearchTarget newTarget = new SearchTarget(new Type(argType))
+                        .setAPICallName(constructor.getName())
+                        .setParamName(name)
+                        .setSingleUseVariable(true);
+                TypedExpression tArg = enumerator.search(newTarget, argDepth + 1);
+                if (tArg == null)
+                    return null;
+                tExpr.addReferencedVariables(tArg.getReferencedVariables());
+                tExpr.addAssociatedImports(tArg.getAssociatedImports());
+                invocation.arguments().add(tArg.getExpression());
             }
+            tExpr.addAssociatedImport(targetType.C());
+            return tExpr;
         }
+    }
 
-        return null;
+    /* produces an expression of target type with the given method chain, synthesizing all method arguments */
+    private TypedExpression enumerateChain(ExpressionChain chain, Type targetType, int argDepth,
+                                           Enumerator enumerator) {
+        MethodInvocation invocation = ast.newMethodInvocation();
+        Expression expr = chain.var.createASTNode(ast);
+        Set<Variable> referencedVariables = new HashSet<>();
+        Set<Class> associatedImports = new HashSet<>();
+        for (Method m : chain.methods) {
+            invocation.setExpression(expr);
+            invocation.setName(ast.newSimpleName(m.getName()));
+
+            for (int j = 0; j < m.getParameterCount(); j++) {
+                Class argType  = m.getParameterTypes()[j];
+                String name = m.getParameters()[j].getName();
+                SearchTarget newTarget = new SearchTarget(new Type(argType))
+                        .setAPICallName(m.getName())
+                        .setParamName(name)
+                        .setSingleUseVariable(true);
+                TypedExpression  tArg;
+                try {
+                    tArg = enumerator.search(newTarget, argDepth + 1);
+                } catch (SynthesisException e) {
+                    return null; // could not synthesize some argument, ignore this chain
+                }
+                if (tArg == null)
+                    return null;
+                referencedVariables.addAll(tArg.getReferencedVariables());
+                associatedImports.addAll(tArg.getAssociatedImports());
+                invocation.arguments().add(tArg.getExpression());
+            }
+            expr = invocation;
+            invocation = ast.newMethodInvocation();
+        }
+        return new TypedExpression(expr, targetType)
+                .addReferencedVariables(referencedVariables)
+                .addAssociatedImports(associatedImports);
     }
 
     /* returns a list of method call chains that all produce the target type */
     private List<ExpressionChain> searchForChains(Type targetType, Variable var) {
         List<ExpressionChain> chains = new ArrayList<>();
-        searchForChains(targetType, new ExpressionChain(var), chains, 0);
-        return chains;
-    }
-
-    private void searchForChains(Type targetType, ExpressionChain chain, List<ExpressionChain> chains, int composeLength) {
-        Type currType = chain.getCurrentType();
-        if (composeLength >= ExpressionChain.MAX_COMPOSE_LENGTH || currType.C().isPrimitive())
-            return;
-        List<Method> methods = Arrays.asList(currType.C().getMethods());
-        sortMethodsByCost(methods);
-        for (Method m : methods) {
-            if (! Modifier.isPublic(m.getModifiers()))
-                continue;
+        for (List<Method> methods : env.apiTypeIndex.getMethodChains(var.getType().C(), targetType.C())) {
+            // the chain graph is type-erased, so check the chain again with concretized (generic) types
+            ExpressionChain chain = new ExpressionChain(var);
+            boolean produces = false;
             try {
-                chain.addMethod(m);
+                for (Method m : methods) {
+                    if (produces)
+                        break; // a shorter prefix of this chain already produces the target type
+                    chain.addMethod(m);
+                    produces = targetType.isAssignableFrom(chain.getCurrentType());
+                }
             } catch (SynthesisException e) {
-                continue; // some problem with adding this method to chain, so ignore it
+                continue; // some problem with adding a method to chain, so ignore it
             }
-            if (targetType.isAssignableFrom(chain.getCurrentType()))
-                chains.add(new ExpressionChain(chain));
-            else
-                searchForChains(targetType, chain, chains, composeLength+1);
-            chain.pop();
+            if (produces && chain.methods.size() == methods.size())
+                chains.add(chain);
         }
+        Collections.shuffle(chains); // break ties in cost randomly
+        return chains;
     }
 
     public Type searchType() {
@@ -297,7 +349,8 @@ public class Enumerator {
 
         sortTypesByCost(types);
         if (types.isEmpty()) {
-            return new Type(ast.newSimpleType(ast.newName("java.lang.String")), String.class); // String is the default type
+            return new Type(ast.newSimpleType(ast.newName("java.lang.String")), String.class,
+                    env.getClassResolver()); // String is the default type
         }
         Type type = types.get(0);
         type.addRefCount();
@@ -314,11 +367,6 @@ public class Enumerator {
         constructors.sort(Comparator.comparingInt(c -> c.getParameterTypes().length));
     }
 
-    private void sortMethodsByCost(List<Method> methods) {
-        Collections.shuffle(methods);
-        methods.sort(Comparator.comparingInt(c -> c.getParameterTypes().length));
-    }
-
     private void sortExecutablesByCost(List<Executable> exes) {
         Collections.shuffle(exes);
         exes.sort(Comparator.comparingInt(e -> e.getParameterTypes().length));
@@ -15,9 +15,7 @@ limitations under the License.
 */
 package edu.rice.cs.caper.bayou.core.synthesizer;
 
-import org.apache.commons.lang3.ClassUtils;
 import org.eclipse.jdt.core.dom.*;
-import org.reflections.Reflections;
 
 import java.util.*;
 
@@ -27,19 +25,24 @@ public class Environment {
     private Set<Class> imports;
     final AST ast;
     final Synthesizer.Mode mode;
-    final Reflections reflections;
+    final ApiTypeIndex apiTypeIndex;
+    final ClassResolver classResolver;
+    final EnumerationMemo enumerationMemo;
     final PredefinedConstants predefinedConstants;
 
     public AST ast() {
         return ast;
     }
 
-    public Environment(AST ast, List<Variable> variables, Synthesizer.Mode mode) {
+    public Environment(AST ast, List<Variable> variables, Synthesizer.Mode mode, ApiTypeIndex apiTypeIndex,
+                       ClassResolver classResolver, EnumerationMemo enumerationMemo) {
         this.ast = ast;
         this.scopes = new Stack<>();
         this.scopes.push(new Scope(variables));
         this.mode = mode;
-        this.reflections = new Reflections("java.io", "java.util");
+        this.apiTypeIndex = apiTypeIndex;
+        this.classResolver = classResolver;
+        this.enumerationMemo = enumerationMemo;
         this.predefinedConstants = new PredefinedConstants();
         imports = new HashSet<>();
     }
@@ -122,12 +125,12 @@ public class Environment {
         return scopes.pop();
     }
 
-    public static Class getClass(String name) {
-        try {
-            return ClassUtils.getClass(Synthesizer.classLoader, name);
-        } catch (ClassNotFoundException e) {
-            throw new SynthesisException(SynthesisException.ClassNotFoundInLoader, name);
-        }
+    public ClassResolver getClassResolver() {
+        return classResolver;
+    }
+
+    public Class getClass(String name) {
+        return classResolver.getClass(name);
     }
 
     public void addImport(Class c) {
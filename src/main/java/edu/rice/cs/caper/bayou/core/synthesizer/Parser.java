@@ -15,19 +15,13 @@ limitations under the License.
 */
 package edu.rice.cs.caper.bayou.core.synthesizer;
 
-import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.compiler.IProblem;
-import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 
-import java.io.File;
-import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -37,6 +31,7 @@ public class Parser {
     String source;
     String classpath;
     URL[] classpathURLs;
+    ParserEnvironment environment;
     CompilationUnit cu;
 
     /**
@@ -45,35 +40,21 @@ public class Parser {
     private static final Logger _logger = LogManager.getLogger(EvidenceExtractor.class.getName());
 
     public Parser(String source, String classpath) throws ParseException {
+        this(source, ParserEnvironment.forClasspath(classpath));
+    }
+
+    public Parser(String source, ParserEnvironment environment) {
         this.source = source;
-        this.classpath = classpath;
+        this.environment = environment;
+        this.classpath = environment.getClasspath();
+        this.classpathURLs = environment.getClasspathURLs();
 
         _logger.trace("source: " + source);
         _logger.trace("classpath:" + classpath);
-
-        List<URL> urlList = new ArrayList<>();
-        for (String cp : classpath.split(File.pathSeparator)) {
-            _logger.trace("cp: " + cp);
-            try {
-                urlList.add(new File(cp).toURI().toURL());
-            } catch (MalformedURLException e) {
-                throw new ParseException("Malformed URL in classpath.");
-            }
-        }
-        this.classpathURLs = urlList.toArray(new URL[0]);
     }
 
     public void parse() throws ParseException {
-        ASTParser parser = ASTParser.newParser(AST.JLS8);
-        parser.setSource(source.toCharArray());
-        Map<String, String> options = JavaCore.getOptions();
-        options.put("org.eclipse.jdt.core.compiler.source", "1.8");
-        parser.setCompilerOptions(options);
-        parser.setKind(ASTParser.K_COMPILATION_UNIT);
-        parser.setUnitName("Program.java");
-        parser.setEnvironment(new String[] { classpath != null? classpath : "" },
-                new String[] { "" }, new String[] { "UTF-8" }, true);
-        parser.setResolveBindings(true);
+        ASTParser parser = environment.newParser(source);
         cu = (CompilationUnit) parser.createAST(null);
 
         List<IProblem> problems = Arrays.stream(cu.getProblems()).filter(p ->
@@ -94,6 +75,10 @@ public class Parser {
         return classpath;
     }
 
+    public ParserEnvironment getEnvironment() {
+        return environment;
+    }
+
     public CompilationUnit getCompilationUnit() {
         return cu;
     }
@@ -0,0 +1,183 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipFile;
+
+/**
+ * The parts of setting up a JDT parser that only depend on the classpath, computed once per classpath and shared by
+ * all threads.
+ *
+ * JDT opens every JAR on the classpath anew for each parse. The environment keeps its own handle on each JAR open
+ * for the lifetime of the process, so that those re-opens share the already read JAR index instead of reading the
+ * (large) android.jar index on every request.
+ */
+public class ParserEnvironment {
+
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(ParserEnvironment.class.getName());
+
+    /**
+     * The environments created so far, keyed by their classpath
+     */
+    private static final ConcurrentMap<String, ParserEnvironment> environments = new ConcurrentHashMap<>();
+
+    /**
+     * The classpath, entries separated by File.pathSeparator
+     */
+    private final String classpath;
+
+    /**
+     * The classpath entries as URLs
+     */
+    private final URL[] classpathURLs;
+
+    /**
+     * The compiler options for Java 8 sources
+     */
+    private final Map<String, String> compilerOptions;
+
+    /**
+     * Open handles on the JARs of the classpath. Never closed.
+     */
+    private final List<ZipFile> openJars;
+
+    private ParserEnvironment(String classpath) throws ParseException {
+        this.classpath = classpath;
+
+        List<URL> urlList = new ArrayList<>();
+        List<ZipFile> jars = new ArrayList<>();
+        for (String cp : classpath.split(File.pathSeparator)) {
+            _logger.trace("cp: " + cp);
+            File file = new File(cp);
+            try {
+                urlList.add(file.toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new ParseException("Malformed URL in classpath.");
+            }
+
+            if (file.isFile()) {
+                try {
+                    jars.add(new ZipFile(file));
+                } catch (IOException e) {
+                    _logger.warn("could not open classpath entry " + file, e); // JDT will skip it, too
+                }
+            }
+        }
+        this.classpathURLs = urlList.toArray(new URL[0]);
+        this.openJars = Collections.unmodifiableList(jars);
+
+        Map<String, String> options = JavaCore.getOptions();
+        options.put("org.eclipse.jdt.core.compiler.source", "1.8");
+        this.compilerOptions = Collections.unmodifiableMap(new HashMap<>(options));
+    }
+
+    /**
+     * Returns the environment for the given classpath, creating it if this is the first request for the classpath
+     *
+     * @param classpath the classpath, entries separated by File.pathSeparator. May be null for an empty classpath.
+     * @return the environment
+     * @throws ParseException if the classpath is malformed
+     */
+    public static ParserEnvironment forClasspath(String classpath) throws ParseException {
+        String key = classpath != null ? classpath : "";
+        ParserEnvironment environment = environments.get(key);
+        if (environment != null)
+            return environment;
+
+        ParserEnvironment created = new ParserEnvironment(key);
+        environment = environments.putIfAbsent(key, created);
+        if (environment != null) {
+            created.close(); // lost the race
+            return environment;
+        }
+        return created;
+    }
+
+    /**
+     * Returns a new parser for the given source, configured for this environment with binding resolution enabled.
+     * The parser may only be used by one thread.
+     *
+     * @param source the source of a compilation unit
+     * @return the parser
+     */
+    public ASTParser newParser(String source) {
+        ASTParser parser = ASTParser.newParser(AST.JLS8);
+        parser.setSource(source.toCharArray());
+        parser.setCompilerOptions(new HashMap<>(compilerOptions));
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setUnitName("Program.java");
+        parser.setEnvironment(new String[] { classpath }, new String[] { "" }, new String[] { "UTF-8" }, true);
+        parser.setResolveBindings(true);
+        return parser;
+    }
+
+    private void close() {
+        for (ZipFile jar : openJars) {
+            try {
+                jar.close();
+            } catch (IOException e) {
+                _logger.warn("could not close " + jar.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Gets the classpath
+     *
+     * @return the classpath, entries separated by File.pathSeparator
+     */
+    public String getClasspath() {
+        return classpath;
+    }
+
+    /**
+     * Gets the classpath entries as URLs
+     *
+     * @return a copy of the URLs
+     */
+    public URL[] getClasspathURLs() {
+        return classpathURLs.clone();
+    }
+
+    /**
+     * Gets the number of classpath JARs kept open by this environment
+     *
+     * @return the number of open JARs
+     */
+    int getOpenJarCount() {
+        return openJars.size();
+    }
+}
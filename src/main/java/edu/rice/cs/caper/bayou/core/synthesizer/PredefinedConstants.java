@@ -56,47 +56,50 @@ public class PredefinedConstants {
     /**
      * Returns a typed expression representing a predefined constant for the given class (type), owned by the given AST
      *
-     * @param c   class to get the predefined constant for
-     * @param ast AST that owns the created expression
+     * @param c        class to get the predefined constant for
+     * @param ast      AST that owns the created expression
+     * @param resolver resolver for classes of the created expression's type
      * @return TypedExpression representing predefined constant (if any), or null
      */
-    public TypedExpression getTypedExpression(Class c, AST ast) {
+    public TypedExpression getTypedExpression(Class c, AST ast, ClassResolver resolver) {
         if (c == InputStream.class)
-            return getInputStreamExpr(ast);
+            return getInputStreamExpr(ast, resolver);
         if (c == PrintStream.class)
-            return getPrintStreamExpr(ast);
+            return getPrintStreamExpr(ast, resolver);
         return null;
     }
 
     /**
      * Returns a predefined constant for the InputStream class: "System.in"
      *
-     * @param ast AST that owns the returned expression
+     * @param ast      AST that owns the returned expression
+     * @param resolver resolver for classes of the returned expression's type
      * @return TypedExpression for "System.in"
      */
-    private TypedExpression getInputStreamExpr(AST ast) {
+    private TypedExpression getInputStreamExpr(AST ast, ClassResolver resolver) {
         FieldAccess access = ast.newFieldAccess();
         access.setExpression(ast.newSimpleName("System"));
         access.setName(ast.newSimpleName("in"));
 
         org.eclipse.jdt.core.dom.Type type = ast.newSimpleType(ast.newName("java.io.InputStream"));
-        TypedExpression tExpr = new TypedExpression(access, new Type(type, InputStream.class));
+        TypedExpression tExpr = new TypedExpression(access, new Type(type, InputStream.class, resolver));
         return tExpr;
     }
 
     /**
      * Returns a predefined constant for the PrintStream class: "System.out"
      *
-     * @param ast AST that owns the returned expression
+     * @param ast      AST that owns the returned expression
+     * @param resolver resolver for classes of the returned expression's type
      * @return TypedExpression for "System.out"
      */
-    private TypedExpression getPrintStreamExpr(AST ast) {
+    private TypedExpression getPrintStreamExpr(AST ast, ClassResolver resolver) {
         FieldAccess access = ast.newFieldAccess();
         access.setExpression(ast.newSimpleName("System"));
         access.setName(ast.newSimpleName("out"));
 
         org.eclipse.jdt.core.dom.Type type = ast.newSimpleType(ast.newName("java.io.PrintStream"));
-        TypedExpression tExpr = new TypedExpression(access, new Type(type, PrintStream.class));
+        TypedExpression tExpr = new TypedExpression(access, new Type(type, PrintStream.class, resolver));
         return tExpr;
     }
 }
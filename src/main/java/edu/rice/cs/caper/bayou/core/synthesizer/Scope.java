@@ -34,6 +34,11 @@ public class Scope {
      */
     private Set<Variable> phantomVariables;
 
+    /**
+     * The signature of the variables in the scope, or null if it has to be recomputed because the scope changed
+     */
+    private String signature;
+
     /**
      * Initializes the scope
      *
@@ -81,6 +86,7 @@ public class Scope {
         String uniqueName = makeUnique(var.getName());
         var.refactor(uniqueName);
         variables.add(var);
+        signature = null;
     }
 
     /**
@@ -92,6 +98,7 @@ public class Scope {
     public boolean removeVariable(Variable var) {
         if (variables.contains(var)) {
             variables.remove(var);
+            signature = null;
             return true;
         } else return false;
     }
@@ -111,6 +118,7 @@ public class Scope {
         String uniqueName = makeUnique(name);
         Variable var = new Variable(uniqueName, type, properties);
         variables.add(var);
+        signature = null;
         return var;
     }
 
@@ -208,5 +216,25 @@ public class Scope {
 
         for (Variable var : toRefactor)
             var.refactor(makeUnique(var.getName()));
+        signature = null;
+    }
+
+    /**
+     * Gets a signature of the variables in the current scope, consisting of their names, types and the
+     * properties relevant to the enumerator. Two scopes with the same signature offer the same variables
+     * to enumerative search.
+     *
+     * @return the signature
+     */
+    public String getSignature() {
+        if (signature == null) {
+            List<String> vars = new ArrayList<>();
+            for (Variable var : variables)
+                vars.add(var.getName() + ":" + var.getType() + (var.isUserVar()? ":u" : "")
+                        + (var.isSingleUseVar()? ":s" : ""));
+            Collections.sort(vars);
+            signature = String.join(",", vars);
+        }
+        return signature;
     }
 }
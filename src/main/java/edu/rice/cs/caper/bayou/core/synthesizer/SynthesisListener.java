@@ -0,0 +1,50 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+/**
+ * Receives the timings and outcomes of the sketches synthesized by a Synthesizer, e.g. to export them as metrics.
+ *
+ * The methods are called on the threads that synthesize the sketches, possibly concurrently, so implementations must
+ * be thread safe and cheap.
+ */
+public interface SynthesisListener {
+
+    /**
+     * Called after a sketch was synthesized without error
+     *
+     * @param nanos                    how long synthesizing the sketch took, including dead code elimination
+     * @param deadCodeEliminationNanos how long dead code elimination took
+     * @param producedProgram          false if nothing was left of the sketch after dead code elimination
+     */
+    void sketchSynthesized(long nanos, long deadCodeEliminationNanos, boolean producedProgram);
+
+    /**
+     * Called after synthesizing a sketch failed
+     *
+     * @param errorId the id of the SynthesisException
+     * @param nanos   how long synthesizing the sketch took until it failed
+     */
+    void sketchFailed(int errorId, long nanos);
+
+    /**
+     * Called after a synthesized program was formatted
+     *
+     * @param nanos     how long formatting took
+     * @param succeeded false if the program could not be formatted (and was skipped)
+     */
+    void programFormatted(long nanos, boolean succeeded);
+}
@@ -20,14 +20,29 @@ import com.google.googlejavaformat.java.FormatterException;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import edu.rice.cs.caper.bayou.core.dsl.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jface.text.Document;
-import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class Synthesizer {
 
-    static ClassLoader classLoader;
+    /**
+     * Place to send logging information.
+     */
+    private static final Logger _logger = LogManager.getLogger(Synthesizer.class.getName());
+
+    /**
+     * The maximum number of programs synthesized per request
+     */
+    static final int MAX_PROGRAMS = 10;
 
     public enum Mode {
         COMBINATORIAL_ENUMERATOR,
@@ -44,6 +59,26 @@ public class Synthesizer {
 
     Mode mode;
 
+    /**
+     * The index of API types used for enumerative search, shared across requests
+     */
+    final ApiTypeIndex apiTypeIndex;
+
+    /**
+     * The executor on which sketches are synthesized concurrently, or null to synthesize them one by one
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The maximum number of sketches of a request that are synthesized concurrently
+     */
+    private final int parallelism;
+
+    /**
+     * Receives the timings and outcomes of the sketches, or null if nobody listens
+     */
+    private SynthesisListener listener;
+
     class JSONInput {
         DSubTree ast;
         float probability;
@@ -53,12 +88,60 @@ public class Synthesizer {
         List<JSONInput> asts;
     }
 
+    /**
+     * The outcome of synthesizing a single sketch in parallel mode
+     */
+    private static class SketchOutcome {
+        /**
+         * The synthesized program without whitespace (used to detect duplicates), or null if there was none
+         */
+        String program;
+
+        /**
+         * The formatted program, or null if there was none or it could not be formatted
+         */
+        SynthesisResult result;
+
+        /**
+         * The synthesis error, or null if there was none
+         */
+        String error;
+    }
+
     public Synthesizer() {
-        this.mode = Mode.CONDITIONAL_PROGRAM_GENERATOR; // default mode
+        this(Mode.CONDITIONAL_PROGRAM_GENERATOR); // default mode
     }
 
     public Synthesizer(Mode mode) {
+        this(mode, ApiTypeIndex.getShared());
+    }
+
+    public Synthesizer(Mode mode, ApiTypeIndex apiTypeIndex) {
+        this(mode, apiTypeIndex, null, 1);
+    }
+
+    /**
+     * Initializes a synthesizer that synthesizes up to parallelism sketches of a request concurrently
+     *
+     * @param mode         the enumeration mode
+     * @param apiTypeIndex the index of API types used for enumerative search
+     * @param executor     the executor to run sketch synthesis on, or null to synthesize sketches one by one
+     * @param parallelism  the maximum number of concurrently synthesized sketches per request
+     */
+    public Synthesizer(Mode mode, ApiTypeIndex apiTypeIndex, ExecutorService executor, int parallelism) {
         this.mode = mode;
+        this.apiTypeIndex = apiTypeIndex;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the listener that receives the timings and outcomes of the sketches synthesized by this synthesizer
+     *
+     * @param listener the listener, or null to stop reporting
+     */
+    public void setListener(SynthesisListener listener) {
+        this.listener = listener;
     }
 
     private List<JSONInput> getASTsFromNN(String astJson) {
@@ -77,48 +160,226 @@ public class Synthesizer {
     }
 
     public List<String> execute(Parser parser, String astJson) {
+        Set<String> errors = new HashSet<>();
+        List<String> results = synthesize(parser, astJson, errors);
+
+        // if no programs were synthesized, return some meaningful errors
+        if (results.isEmpty())
+            results.add(describeFailure(errors));
+        return results;
+    }
+
+    /**
+     * Synthesizes programs from the sketches generated by the model
+     *
+     * @param parser  the parsed draft program
+     * @param astJson the sketches generated by the model
+     * @param errors  set to add the reasons to why sketches could not be synthesized
+     * @return the synthesized programs, or an empty list if no program could be synthesized
+     */
+    public List<String> synthesize(Parser parser, String astJson, Set<String> errors) {
         List<SynthesisResult> synthesizedPrograms = new ArrayList<>();
         List<JSONInput> asts = getASTsFromNN(astJson);
 
-        classLoader = URLClassLoader.newInstance(parser.classpathURLs);
+        ClassResolver classResolver = ClassResolver.forClasspath(parser.classpathURLs);
+        EnumerationMemo enumerationMemo = new EnumerationMemo();
+
+        if (asts.isEmpty())
+            errors.add("No sketches were generated by the model.");
+        else if (executor != null && parallelism > 1 && asts.size() > 1)
+            executeParallel(parser, asts, classResolver, enumerationMemo, synthesizedPrograms, errors);
+        else
+            executeSequential(parser, asts, classResolver, enumerationMemo, synthesizedPrograms, errors);
 
+        synthesizedPrograms.sort(Comparator.comparingInt(p -> p.getNum$Variables()));
+        List<String> results = new ArrayList<>();
+        for (SynthesisResult program : synthesizedPrograms)
+            results.add(program.getProgram());
+        return results;
+    }
+
+    /**
+     * Describes why no program could be synthesized
+     *
+     * @param errors the reasons, as collected by synthesize
+     * @return the description
+     */
+    public static String describeFailure(Set<String> errors) {
+        return "Your intended program could not be synthesized for the following reasons: \n- "
+                + String.join("\n- ", errors);
+    }
+
+    private void executeSequential(Parser parser, List<JSONInput> asts, ClassResolver classResolver,
+                                   EnumerationMemo enumerationMemo, List<SynthesisResult> synthesizedPrograms,
+                                   Set<String> errors) {
         CompilationUnit cu = parser.cu;
         List<String> programs = new ArrayList<>();
-        Set<String> errors = new HashSet<>();
         for (JSONInput ast : asts) {
-            Visitor visitor = new Visitor(ast.ast, new Document(parser.source), cu, mode);
+            Visitor visitor = new Visitor(ast.ast, new Document(parser.source), cu, mode, apiTypeIndex,
+                    classResolver, enumerationMemo);
+            long start = System.nanoTime();
             try {
                 cu.accept(visitor);
+                reportSynthesized(visitor, start);
                 if (visitor.synthesizedProgram == null)
                     continue;
                 String program = visitor.synthesizedProgram.replaceAll("\\s", "");
                 if (! programs.contains(program)) {
-                    String formattedProgram = new Formatter().formatSource(visitor.synthesizedProgram);
+                    String formattedProgram = format(visitor.synthesizedProgram);
                     programs.add(program);
                     synthesizedPrograms.add(new SynthesisResult(formattedProgram, visitor.num$Variables));
                 }
-                if (synthesizedPrograms.size() >= 10) // hard coded: synthesize a maximum of 10 programs
+                if (synthesizedPrograms.size() >= MAX_PROGRAMS)
                     break;
             } catch (SynthesisException e) {
+                reportFailed(e, start);
                 errors.add(e.getMessage());
             } catch (FormatterException e) {
                 // do nothing and try next sketch
             }
         }
+    }
 
-        // if no programs were synthesized, return some meaningful errors
-        List<String> results = new ArrayList<>();
-        if (synthesizedPrograms.isEmpty()) {
-            results.add(
-                    "Your intended program could not be synthesized for the following reasons: \n- "
-                            + (asts.isEmpty()? "No sketches were generated by the model." :
-                            String.join("\n- ", errors)));
-        } else {
-            synthesizedPrograms.sort(Comparator.comparingInt(p -> p.getNum$Variables()));
-            for (SynthesisResult program : synthesizedPrograms)
-                results.add(program.getProgram());
+    /**
+     * Synthesizes the sketches concurrently. Each worker synthesizes on its own copy of the draft program's
+     * compilation unit (JDT ASTs are not thread-safe) and takes the next unsynthesized sketch until all sketches are
+     * done or the sketches before it have already produced MAX_PROGRAMS distinct programs. Outcomes are collected
+     * in sketch order so that the result is the same as that of sequential synthesis.
+     */
+    private void executeParallel(Parser parser, List<JSONInput> asts, ClassResolver classResolver,
+                                 EnumerationMemo enumerationMemo, List<SynthesisResult> synthesizedPrograms,
+                                 Set<String> errors) {
+        int numSketches = asts.size();
+        AtomicReferenceArray<SketchOutcome> outcomes = new AtomicReferenceArray<>(numSketches);
+        AtomicInteger nextSketch = new AtomicInteger(0);
+        AtomicBoolean capReached = new AtomicBoolean(false);
+
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < Math.min(parallelism, numSketches); w++) {
+            boolean isFirstWorker = w == 0;
+            workers.add(executor.submit(() -> {
+                if (capReached.get())
+                    return;
+
+                // the first worker can use the original compilation unit since the caller is blocked meanwhile
+                CompilationUnit cu;
+                if (isFirstWorker)
+                    cu = parser.cu;
+                else {
+                    try {
+                        Parser copy = new Parser(parser.source, parser.environment);
+                        copy.parse();
+                        cu = copy.cu;
+                    } catch (ParseException e) {
+                        _logger.warn("could not re-parse draft program, worker exiting", e);
+                        return;
+                    }
+                }
+
+                int i;
+                while (!capReached.get() && (i = nextSketch.getAndIncrement()) < numSketches) {
+                    outcomes.set(i, synthesizeSketch(asts.get(i), parser.source, cu, classResolver,
+                            enumerationMemo));
+                    if (collectOutcomes(outcomes, new ArrayList<>(), new HashSet<>()))
+                        capReached.set(true);
+                }
+            }));
         }
 
-        return results;
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                capReached.set(true); // stop the workers from taking more sketches
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                capReached.set(true);
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        collectOutcomes(outcomes, synthesizedPrograms, errors);
+    }
+
+    /**
+     * Collects the outcomes of the sketches in order, up to the first sketch that has not been synthesized yet,
+     * skipping duplicate programs and stopping at MAX_PROGRAMS programs.
+     *
+     * @param outcomes            the sketch outcomes, where null denotes a sketch that has not been synthesized
+     * @param synthesizedPrograms list to add the synthesized programs to
+     * @param errors              set to add the synthesis errors to
+     * @return true if MAX_PROGRAMS programs were collected
+     */
+    private static boolean collectOutcomes(AtomicReferenceArray<SketchOutcome> outcomes,
+                                           List<SynthesisResult> synthesizedPrograms, Set<String> errors) {
+        List<String> programs = new ArrayList<>();
+        for (int i = 0; i < outcomes.length(); i++) {
+            SketchOutcome outcome = outcomes.get(i);
+            if (outcome == null)
+                return false;
+            if (outcome.error != null)
+                errors.add(outcome.error);
+            else if (outcome.program != null && outcome.result != null && ! programs.contains(outcome.program)) {
+                programs.add(outcome.program);
+                synthesizedPrograms.add(outcome.result);
+            }
+            if (synthesizedPrograms.size() >= MAX_PROGRAMS)
+                return true;
+        }
+        return false;
+    }
+
+    private SketchOutcome synthesizeSketch(JSONInput ast, String source, CompilationUnit cu,
+                                           ClassResolver classResolver, EnumerationMemo enumerationMemo) {
+        SketchOutcome outcome = new SketchOutcome();
+        Visitor visitor = new Visitor(ast.ast, new Document(source), cu, mode, apiTypeIndex, classResolver,
+                enumerationMemo);
+        long start = System.nanoTime();
+        try {
+            cu.accept(visitor);
+            reportSynthesized(visitor, start);
+            if (visitor.synthesizedProgram == null)
+                return outcome;
+            outcome.program = visitor.synthesizedProgram.replaceAll("\\s", "");
+            String formattedProgram = format(visitor.synthesizedProgram);
+            outcome.result = new SynthesisResult(formattedProgram, visitor.num$Variables);
+        } catch (SynthesisException e) {
+            reportFailed(e, start);
+            outcome.error = e.getMessage();
+        } catch (FormatterException e) {
+            // leave result empty so that the sketch is skipped
+        }
+        return outcome;
+    }
+
+    private String format(String program) throws FormatterException {
+        if (listener == null)
+            return new Formatter().formatSource(program);
+
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String formattedProgram = new Formatter().formatSource(program);
+            succeeded = true;
+            return formattedProgram;
+        } finally {
+            listener.programFormatted(System.nanoTime() - start, succeeded);
+        }
+    }
+
+    private void reportSynthesized(Visitor visitor, long startNanos) {
+        if (listener != null)
+            listener.sketchSynthesized(System.nanoTime() - startNanos, visitor.deadCodeEliminationNanos,
+                    visitor.synthesizedProgram != null);
+    }
+
+    private void reportFailed(SynthesisException e, long startNanos) {
+        if (listener != null)
+            listener.sketchFailed(e.getId(), System.nanoTime() - startNanos);
     }
 }
@@ -32,6 +32,7 @@ public class Type {
     private final Class c;
     private org.eclipse.jdt.core.dom.Type t;
     private Map<String, Type> concretization;
+    private ClassResolver resolver;
     int refCount;
 
     static final Map<PrimitiveType.Code,Class> primitiveToClass;
@@ -94,8 +95,9 @@ public class Type {
         primitiveToWrapperClass = Collections.unmodifiableMap(map);
     }
 
-    public Type(org.eclipse.jdt.core.dom.Type t) {
+    public Type(org.eclipse.jdt.core.dom.Type t, ClassResolver resolver) {
         this.t = t;
+        this.resolver = resolver;
         this.c = getClass(t);
         this.refCount = 0;
         autoConcretize();
@@ -104,9 +106,10 @@ public class Type {
             this.t = releaseBinding(t, t.getAST());
     }
 
-    public Type(org.eclipse.jdt.core.dom.Type t, Class c) {
+    public Type(org.eclipse.jdt.core.dom.Type t, Class c, ClassResolver resolver) {
         this.t = t;
         this.c = c;
+        this.resolver = resolver;
         this.refCount = 0;
         autoConcretize();
 
@@ -139,10 +142,11 @@ public class Type {
      *
      * @param typeStr the string to parse as a type
      * @param ast the AST that should own the type
+     * @param resolver the resolver for classes in the type
      * @return the Type after parsing
      * @throws TypeParseException if there was a parse error
      */
-    public static Type fromString(String typeStr, AST ast) throws TypeParseException {
+    public static Type fromString(String typeStr, AST ast, ClassResolver resolver) throws TypeParseException {
         if (typeStr.contains("\\$") || typeStr.contains("Tau_") || typeStr.contains("?"))
             throw new SynthesisException(SynthesisException.TypeParseException);
 
@@ -152,11 +156,11 @@ public class Type {
 
         // primitive type
         if (stringToPrimitive.containsKey(typeStr))
-            return new Type(ast.newPrimitiveType(stringToPrimitive.get(typeStr)));
+            return new Type(ast.newPrimitiveType(stringToPrimitive.get(typeStr)), resolver);
 
         // simple type
         if (sTypePattern.matches())
-            return new Type(ast.newSimpleType(ast.newName(typeStr)));
+            return new Type(ast.newSimpleType(ast.newName(typeStr)), resolver);
 
         // array type
         if (aTypePattern.matches()) {
@@ -164,7 +168,7 @@ public class Type {
             String dimensions = aTypePattern.group(2);
             org.eclipse.jdt.core.dom.Type baseType = ast.newSimpleType(ast.newName(base));
             ArrayType arrayType = ast.newArrayType(baseType, dimensions.length() / 2 /* number of []s */);
-            return new Type(arrayType);
+            return new Type(arrayType, resolver);
         }
 
         // generic type
@@ -172,7 +176,7 @@ public class Type {
             String base = pTypePattern.group(1);
             String args = pTypePattern.group(2);
             org.eclipse.jdt.core.dom.Type baseType = ast.newSimpleType(ast.newName(base));
-            Class baseClass = Environment.getClass(base);
+            Class baseClass = resolver.getClass(base);
             ParameterizedType pType = ast.newParameterizedType(baseType);
 
             // in principle there should be a (push-down) parser for this, but since we know that the arguments
@@ -181,13 +185,13 @@ public class Type {
             for (int i = 0; i < baseClass.getTypeParameters().length; i++) {
                 int nextIdx = currIdx;
                 if (i == baseClass.getTypeParameters().length - 1)
-                    pType.typeArguments().add(Type.fromString(args.substring(currIdx), ast).T());
+                    pType.typeArguments().add(Type.fromString(args.substring(currIdx), ast, resolver).T());
                 else
                     while (true)
                         try {
                             nextIdx = args.indexOf(",", nextIdx + 1);
                             String paramStr = args.substring(currIdx, nextIdx);
-                            Type param = Type.fromString(paramStr, ast);
+                            Type param = Type.fromString(paramStr, ast, resolver);
                             pType.typeArguments().add(param.T());
                             currIdx = nextIdx + 1;
                             break;
@@ -195,7 +199,7 @@ public class Type {
                             // try the next index of ,
                         }
             }
-            return new Type(pType);
+            return new Type(pType, resolver);
         }
 
         throw new TypeParseException();
@@ -205,6 +209,7 @@ public class Type {
         if (t != null)
             return;
         AST ast = env.ast;
+        resolver = env.getClassResolver();
 
         if (c.isPrimitive())
             t = ast.newPrimitiveType(PrimitiveType.toCode(c.getSimpleName()));
@@ -249,11 +254,11 @@ public class Type {
                     org.eclipse.jdt.core.dom.Type argType = getConcretization(arg).T();
                     retType.typeArguments().add(ASTNode.copySubtree(ast, argType));
                 } catch (SynthesisException e) {
-                    return new Type(rawType, (Class) rawType_);
+                    return new Type(rawType, (Class) rawType_, resolver);
                 }
             }
 
-            return new Type(retType, (Class) rawType_);
+            return new Type(retType, (Class) rawType_, resolver);
         }
         else if (type instanceof TypeVariable) {
             // return the type the generic name was concretized to
@@ -274,13 +279,13 @@ public class Type {
                 if (cls.getComponentType().isArray()) // no support for multidim arrays
                     throw new SynthesisException(SynthesisException.InvalidKindOfType, C().getName());
                 Type componentType = getConcretization(cls.getComponentType());
-                return new Type(ast.newArrayType(componentType.T(), 1), cls);
+                return new Type(ast.newArrayType(componentType.T(), 1), cls, resolver);
             } else if (cls.isPrimitive()) {
-                return new Type(ast.newPrimitiveType(PrimitiveType.toCode(cls.getSimpleName())), cls);
+                return new Type(ast.newPrimitiveType(PrimitiveType.toCode(cls.getSimpleName())), cls, resolver);
             } else {
                 // no generics, just return a simple type with the class
                 org.eclipse.jdt.core.dom.Type retType = ast.newSimpleType(ast.newName(cls.getCanonicalName()));
-                return new Type(retType, cls);
+                return new Type(retType, cls, resolver);
             }
         }
         else throw new SynthesisException(SynthesisException.InvalidKindOfType, C().getName());
@@ -289,7 +294,7 @@ public class Type {
     // same semantics as Class.isAssignableFrom for our type system but with generics
     // NOTE: assumes that the argument is a concretized type
     public boolean isAssignableFrom(Type type) {
-        if (! ClassUtils.isAssignable(type.C(), this.C()))
+        if (! ClassUtils.isAssignable(type.C(), this.C(), true))
             return false;
         if (t == null || ! t.isParameterizedType()) // this type is not yet concretized or not parametric
             return true;
@@ -305,8 +310,8 @@ public class Type {
             throw new SynthesisException(SynthesisException.GenericTypeVariableMismatch, C().getName());
 
         for (int i = 0; i < n1; i++) {
-            Type t1 = new Type((org.eclipse.jdt.core.dom.Type) pt1.typeArguments().get(i));
-            Type t2 = new Type((org.eclipse.jdt.core.dom.Type) pt2.typeArguments().get(i));
+            Type t1 = new Type((org.eclipse.jdt.core.dom.Type) pt1.typeArguments().get(i), resolver);
+            Type t2 = new Type((org.eclipse.jdt.core.dom.Type) pt2.typeArguments().get(i), resolver);
 
             // generic type arguments should always be invariant, not covariant
             // for example, a List<Dog> cannot be a List<Animal> even if Dog extends Animal
@@ -335,8 +340,8 @@ public class Type {
             throw new SynthesisException(SynthesisException.GenericTypeVariableMismatch);
 
         for (int i = 0; i < n1; i++) {
-            Type t1 = new Type((org.eclipse.jdt.core.dom.Type) pt1.typeArguments().get(i));
-            Type t2 = new Type((org.eclipse.jdt.core.dom.Type) pt2.typeArguments().get(i));
+            Type t1 = new Type((org.eclipse.jdt.core.dom.Type) pt1.typeArguments().get(i), resolver);
+            Type t2 = new Type((org.eclipse.jdt.core.dom.Type) pt2.typeArguments().get(i), resolver);
 
             if (! t1.isInvariant(t2))
                 return false;
@@ -346,7 +351,7 @@ public class Type {
 
     // Class objects are type-erased, so cannot do generics here
     public boolean isAssignableFrom(Class type) {
-        if (! ClassUtils.isAssignable(type, this.c))
+        if (! ClassUtils.isAssignable(type, this.c, true))
             return false;
         if (t == null || ! t.isParameterizedType()) // this type is not yet concretized or not parametric
             return true;
@@ -379,7 +384,7 @@ public class Type {
         // unify generic names with their actual types
         for (int i = 0; i < n1; i++) {
             String name = c.getTypeParameters()[i].getName();
-            Type type = new Type((org.eclipse.jdt.core.dom.Type) pType.typeArguments().get(i));
+            Type type = new Type((org.eclipse.jdt.core.dom.Type) pType.typeArguments().get(i), resolver);
             concretization.put(name, type);
         }
     }
@@ -390,26 +395,26 @@ public class Type {
             return primitiveToClass.get(((PrimitiveType) type).getPrimitiveTypeCode());
         else if (type.isSimpleType()) {
             if (binding != null)
-                return Environment.getClass(binding.getQualifiedName());
+                return resolver.getClass(binding.getQualifiedName());
             else {
                 String t = (((SimpleType) type).getName()).getFullyQualifiedName();
-                return Environment.getClass(t);
+                return resolver.getClass(t);
             }
         }
         else if (type.isParameterizedType()) {
             if (binding != null) {
                 ITypeBinding erased = binding.getErasure();
-                return Environment.getClass(erased.getQualifiedName());
+                return resolver.getClass(erased.getQualifiedName());
             }
             else {
                 org.eclipse.jdt.core.dom.Type baseType = ((ParameterizedType) type).getType();
                 String t = (((SimpleType) baseType).getName()).getFullyQualifiedName();
-                return Environment.getClass(t);
+                return resolver.getClass(t);
             }
         }
         else if (type.isArrayType()) {
             if (binding != null)
-                return Environment.getClass(binding.getErasure().getQualifiedName());
+                return resolver.getClass(binding.getErasure().getQualifiedName());
             else {
                 org.eclipse.jdt.core.dom.Type elementType = ((ArrayType) type).getElementType();
                 StringBuilder name = new StringBuilder();
@@ -423,7 +428,7 @@ public class Type {
                     throw new SynthesisException(SynthesisException.InvalidKindOfType, type.toString());
                 for (int i = ((ArrayType) type).getDimensions(); i > 0; i--)
                     name.append("[]"); // add "[]" to denote array type dimension
-                return Environment.getClass(name.toString());
+                return resolver.getClass(name.toString());
             }
         }
         else
@@ -490,7 +495,7 @@ public class Type {
                 simple = ast.newSimpleName(((QualifiedName) name).getName().getIdentifier());
             ParameterizedType pType = ast.newParameterizedType(ast.newSimpleType(simple));
             for (Object o : ((ParameterizedType) t).typeArguments()) {
-                Type p = new Type((org.eclipse.jdt.core.dom.Type) o);
+                Type p = new Type((org.eclipse.jdt.core.dom.Type) o, resolver);
                 if (env != null)
                     env.addImport(p.C());
                 pType.typeArguments().add(p.simpleT(ast, env));
@@ -499,7 +504,7 @@ public class Type {
         }
         if (t.isArrayType()) {
             org.eclipse.jdt.core.dom.Type elementType = ((ArrayType) t).getElementType();
-            org.eclipse.jdt.core.dom.Type simpleElementType = new Type(elementType).simpleT(ast, env);
+            org.eclipse.jdt.core.dom.Type simpleElementType = new Type(elementType, resolver).simpleT(ast, env);
             return ast.newArrayType((org.eclipse.jdt.core.dom.Type) ASTNode.copySubtree(ast, simpleElementType),
                     ((ArrayType) t).getDimensions());
         }
@@ -58,6 +58,11 @@ public class Visitor extends ASTVisitor {
      */
     int num$Variables;
 
+    /**
+     * Time in nanoseconds spent on dead code elimination of the sketch, or 0 if it was not reached.
+     */
+    long deadCodeEliminationNanos;
+
     /**
      * The rewriter for the document
      */
@@ -91,6 +96,21 @@ public class Visitor extends ASTVisitor {
      */
     private final Synthesizer.Mode mode;
 
+    /**
+     * The index of API types used for enumerative search
+     */
+    private final ApiTypeIndex apiTypeIndex;
+
+    /**
+     * The resolver for classes of the draft program's classpath
+     */
+    private final ClassResolver classResolver;
+
+    /**
+     * The memo table of enumerative search results, shared by the sketches of a synthesis request
+     */
+    private final EnumerationMemo enumerationMemo;
+
     /**
      * Initializes the visitor
      *
@@ -98,8 +118,12 @@ public class Visitor extends ASTVisitor {
      * @param document draft program document
      * @param cu       draft program compilation unit
      * @param mode     enumeration mode
+     * @param apiTypeIndex index of API types used for enumerative search
+     * @param classResolver resolver for classes of the draft program's classpath
+     * @param enumerationMemo memo table of enumerative search results
      */
-    public Visitor(DSubTree sketch, Document document, CompilationUnit cu, Synthesizer.Mode mode) {
+    public Visitor(DSubTree sketch, Document document, CompilationUnit cu, Synthesizer.Mode mode,
+                   ApiTypeIndex apiTypeIndex, ClassResolver classResolver, EnumerationMemo enumerationMemo) {
         this.sketch = sketch;
         this.document = document;
         this.cu = cu;
@@ -107,6 +131,9 @@ public class Visitor extends ASTVisitor {
         this.rewriter = ASTRewrite.create(this.cu.getAST());
         this.currentScope = new ArrayList<>();
         this.mode = mode;
+        this.apiTypeIndex = apiTypeIndex;
+        this.classResolver = classResolver;
+        this.enumerationMemo = enumerationMemo;
     }
 
     /**
@@ -127,7 +154,7 @@ public class Visitor extends ASTVisitor {
         for (Object o : method.parameters()) {
             SingleVariableDeclaration param = (SingleVariableDeclaration) o;
             String name = param.getName().getIdentifier();
-            Type type = new Type(param.getType());
+            Type type = new Type(param.getType(), classResolver);
             VariableProperties properties = new VariableProperties().setUserVar(true);
             Variable v = new Variable(name, type, properties);
             currentScope.add(v);
@@ -147,7 +174,7 @@ public class Visitor extends ASTVisitor {
             for (Object f : varDecl.fragments()) {
                 VariableDeclarationFragment frag = (VariableDeclarationFragment) f;
                 String name = frag.getName().getIdentifier();
-                Type type = new Type(varDecl.getType());
+                Type type = new Type(varDecl.getType(), classResolver);
                 VariableProperties properties = new VariableProperties().setUserVar(true);
                 Variable v = new Variable(name, type, properties);
                 currentScope.add(v);
@@ -155,7 +182,7 @@ public class Visitor extends ASTVisitor {
         }
 
         /* set the return type */
-        returnType = new Type(method.getReturnType2());
+        returnType = new Type(method.getReturnType2(), classResolver);
 
         /* store the current method */
         this.method = method;
@@ -197,12 +224,15 @@ public class Visitor extends ASTVisitor {
         if (!(name.equals("apicalls") || name.equals("types") || name.equals("keywords")))
             throw new SynthesisException(SynthesisException.InvalidEvidenceType, name);
 
-        Environment env = new Environment(invocation.getAST(), currentScope, mode);
+        Environment env = new Environment(invocation.getAST(), currentScope, mode, apiTypeIndex, classResolver,
+                enumerationMemo);
         Block body = sketch.synthesize(env);
 
         // Apply dead code elimination here
+        long dceStart = System.nanoTime();
         DCEOptimizor dce = new DCEOptimizor();
         body = dce.apply(body, sketch);
+        deadCodeEliminationNanos = System.nanoTime() - dceStart;
         if (body.statements().size() == 0)
             return false;
 
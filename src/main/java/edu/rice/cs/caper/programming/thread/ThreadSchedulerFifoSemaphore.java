@@ -0,0 +1,69 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.programming.thread;
+
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * A ThreadScheduler that allows up to a given number of operations at once and lets waiting threads go in arrival
+ * order.
+ *
+ * Built on a fair Semaphore, so waiting threads park without holding a monitor (and without pinning the carrier
+ * thread of a virtual thread) and are woken by the semaphore rather than by Thread.interrupt. An interrupt while
+ * waiting does not cut the wait short; the interrupt status is kept for the operation to see.
+ */
+public class ThreadSchedulerFifoSemaphore implements ThreadScheduler
+{
+    private final Semaphore _permits;
+
+    /**
+     * @param concurrentLimit the maximum number of operations that run at once. May not be null or zero.
+     */
+    public ThreadSchedulerFifoSemaphore(NatNum32 concurrentLimit)
+    {
+        if(concurrentLimit == null)
+            throw new NullPointerException("concurrentLimit");
+
+        if(concurrentLimit.AsInt == 0)
+            throw new IllegalArgumentException("concurrentLimit must be positive");
+
+        _permits = new Semaphore(concurrentLimit.AsInt, true);
+    }
+
+    @Override
+    public <V, T extends Throwable> V schedule(Operation<V, T> operation) throws T
+    {
+        _permits.acquireUninterruptibly();
+        try
+        {
+            return operation.apply();
+        }
+        finally
+        {
+            _permits.release();
+        }
+    }
+
+    /**
+     * @return the number of threads waiting for their turn (an estimate, for monitoring).
+     */
+    public int getQueueLength()
+    {
+        return _permits.getQueueLength();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.programming.thread;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads (JDK 21 and later, or JDK 19 and 20 with preview features enabled) from code that is
+ * compiled for older JDKs, via reflection.
+ */
+public class VirtualThreads
+{
+    /**
+     * Thread.ofVirtual(), or null if the running JDK has no virtual threads or does not enable them.
+     */
+    private static final Method OF_VIRTUAL;
+
+    /**
+     * Thread.Builder.OfVirtual.name(String, long), or null if the running JDK has no virtual threads.
+     */
+    private static final Method NAME;
+
+    /**
+     * Thread.Builder.factory(), or null if the running JDK has no virtual threads.
+     */
+    private static final Method FACTORY;
+
+    /**
+     * Executors.newThreadPerTaskExecutor(ThreadFactory), or null if the running JDK has no virtual threads.
+     */
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static
+    {
+        Method ofVirtual = null, name = null, factory = null, newThreadPerTaskExecutor = null;
+        try
+        {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = Class.forName("java.lang.Thread$Builder$OfVirtual").getMethod("name", String.class, long.class);
+            factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            newThreadPerTaskExecutor = Class.forName("java.util.concurrent.Executors")
+                                            .getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            ofVirtual.invoke(null); // JDK 19 and 20 throw UnsupportedOperationException unless preview is enabled
+        }
+        catch (NoSuchMethodException | ClassNotFoundException | IllegalAccessException |
+               InvocationTargetException e)
+        {
+            ofVirtual = null; // not supported
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads()
+    {
+    }
+
+    /**
+     * @return whether the running JDK has virtual threads and they are enabled.
+     */
+    public static boolean isSupported()
+    {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread. The threads are named namePrefix followed
+     * by a counter starting at 0.
+     *
+     * @param namePrefix the prefix of the thread names. May not be null.
+     * @return the executor
+     * @throws UnsupportedOperationException if the running JDK has no virtual threads or does not enable them.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix)
+    {
+        if(namePrefix == null)
+            throw new NullPointerException("namePrefix");
+
+        if(!isSupported())
+            throw new UnsupportedOperationException("virtual threads require JDK 21 or later");
+
+        try
+        {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new UnsupportedOperationException(e);
+        }
+        catch (InvocationTargetException e)
+        {
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new UnsupportedOperationException(e.getCause());
+        }
+    }
+}
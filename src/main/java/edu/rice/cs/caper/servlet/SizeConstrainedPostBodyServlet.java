@@ -20,17 +20,27 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.http.HttpStatus;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Optional base class for servlet that process POST requests but only tolerate a maximum number of bytes in the
  * request body. If larger requests are sent to the servlet, the servlet will respond with a JSON error message
  * as the body of the response.
+ *
+ * If constructed with a request executor, requests that support async processing (see
+ * ServletHolder.setAsyncSupported) are processed asynchronously: the body is read without blocking as it arrives and
+ * the request is then processed on the request executor, so that the container thread is free to serve other
+ * connections meanwhile.
  */
 public abstract class SizeConstrainedPostBodyServlet extends ServerIdHttpServlet
 {
@@ -54,16 +64,37 @@ public abstract class SizeConstrainedPostBodyServlet extends ServerIdHttpServlet
      */
     private final boolean _allowEmptyBody;
 
+    /**
+     * Where requests are processed once their body is read, or null if requests are processed synchronously on the
+     * container thread.
+     */
+    private final Executor _requestExecutor;
+
     /**
      * @param requestBodyMaxByteCount The maximum number of request body body bytes the handler will allow without
      *                                responding with an error.
      * @param allowEmptyBody Whether an error response should be generated if the request contains no body.
      */
     public SizeConstrainedPostBodyServlet(NatNum32 requestBodyMaxByteCount, boolean allowEmptyBody)
+    {
+        this(requestBodyMaxByteCount, allowEmptyBody, null);
+    }
+
+    /**
+     * @param requestBodyMaxByteCount The maximum number of request body body bytes the handler will allow without
+     *                                responding with an error.
+     * @param allowEmptyBody Whether an error response should be generated if the request contains no body.
+     * @param requestExecutor Where requests that support async processing are processed once their body is read.
+     *                        Requests it rejects are answered with 429 Too Many Requests. May be null, in which
+     *                        case all requests are processed synchronously on the container thread.
+     */
+    public SizeConstrainedPostBodyServlet(NatNum32 requestBodyMaxByteCount, boolean allowEmptyBody,
+                                          Executor requestExecutor)
     {
         _logger.debug("entering");
         _requestBodyMaxByteCount = requestBodyMaxByteCount;
         _allowEmptyBody = allowEmptyBody;
+        _requestExecutor = requestExecutor;
         _logger.debug("exiting");
     }
 
@@ -86,6 +117,13 @@ public abstract class SizeConstrainedPostBodyServlet extends ServerIdHttpServlet
             requestBodyCharset = Charset.forName(bodyEncoding);
         }
 
+        if(_requestExecutor != null && req.isAsyncSupported())
+        {
+            doPostAsync(req, resp, requestBodyCharset);
+            _logger.debug("exiting");
+            return;
+        }
+
         ServletInputStream requestBodyReader;
         try
         {
@@ -186,14 +224,239 @@ public abstract class SizeConstrainedPostBodyServlet extends ServerIdHttpServlet
         _logger.debug("exiting");
     }
 
+    // reads the body without blocking and then processes the request on _requestExecutor.
+    private void doPostAsync(HttpServletRequest req, HttpServletResponse resp, Charset requestBodyCharset)
+    {
+        _logger.debug("entering");
+
+        AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(0); // processing time is bounded by the subclass (e.g. its network timeouts)
+        asyncContext.addListener(new CompletionListener(req, resp, System.nanoTime()));
+
+        ServletInputStream requestBodyReader;
+        try
+        {
+            requestBodyReader = req.getInputStream();
+        }
+        catch (IOException e)
+        {
+            _logger.error(e.getMessage(), e);
+            writeErrorResponse(e.getMessage(), resp);
+            asyncContext.complete();
+            _logger.debug("exiting");
+            return;
+        }
+
+        // the container calls back on one of its threads as body bytes arrive
+        requestBodyReader.setReadListener(new BodyReader(asyncContext, req, resp, requestBodyReader,
+                                                         requestBodyCharset));
+        _logger.debug("exiting");
+    }
+
+    /**
+     * Reads the body of an async request as it arrives and hands the request to _requestExecutor once the whole
+     * body is read.
+     *
+     * The container calls the methods of a listener one at a time, so the fields need no synchronization.
+     */
+    private class BodyReader implements ReadListener
+    {
+        private final AsyncContext _asyncContext;
+
+        private final HttpServletRequest _req;
+
+        private final HttpServletResponse _resp;
+
+        private final ServletInputStream _requestBodyReader;
+
+        private final Charset _requestBodyCharset;
+
+        /**
+         * The body bytes read so far. One byte longer than _requestBodyMaxByteCount so that a too large body can be
+         * told apart from a body of exactly the max size.
+         */
+        private final byte[] _bodyBytes = new byte[_requestBodyMaxByteCount.AsInt + 1];
+
+        /**
+         * The number of bytes of _bodyBytes read so far.
+         */
+        private int _totalRequestBytesRead = 0;
+
+        /**
+         * Whether an error response was already sent.
+         */
+        private boolean _failed = false;
+
+        BodyReader(AsyncContext asyncContext, HttpServletRequest req, HttpServletResponse resp,
+                   ServletInputStream requestBodyReader, Charset requestBodyCharset)
+        {
+            _asyncContext = asyncContext;
+            _req = req;
+            _resp = resp;
+            _requestBodyReader = requestBodyReader;
+            _requestBodyCharset = requestBodyCharset;
+        }
+
+        @Override
+        public void onDataAvailable() throws IOException
+        {
+            while(!_failed && _requestBodyReader.isReady())
+            {
+                int numBytesRead = _requestBodyReader.read(_bodyBytes, _totalRequestBytesRead,
+                                                           _bodyBytes.length - _totalRequestBytesRead);
+                if(numBytesRead == -1)
+                    return; // onAllDataRead follows
+
+                _totalRequestBytesRead += numBytesRead;
+
+                if(_totalRequestBytesRead > _requestBodyMaxByteCount.AsInt)
+                    fail("Request body too large. Max " + _requestBodyMaxByteCount + " bytes.");
+            }
+        }
+
+        @Override
+        public void onAllDataRead()
+        {
+            if(_failed)
+                return;
+
+            if(_totalRequestBytesRead == 0 && !_allowEmptyBody)
+            {
+                fail("Body may not be empty.");
+                return;
+            }
+
+            String bodyString = new String(_bodyBytes, 0, _totalRequestBytesRead, _requestBodyCharset);
+            try
+            {
+                _requestExecutor.execute(() -> processAsync(_asyncContext, _req, _resp, bodyString));
+            }
+            catch (RejectedExecutionException e)
+            {
+                _logger.warn("Returning 429: no thread available to process request");
+                writeErrorResponse("Too many requests.", HttpStatus.TOO_MANY_REQUESTS_429, _resp);
+                _asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t)
+        {
+            if(!_failed)
+                fail("Could not read request body: " + t.getMessage());
+        }
+
+        private void fail(String errorMessage)
+        {
+            _logger.warn(errorMessage);
+            _failed = true;
+            writeErrorResponse(errorMessage, _resp);
+            _asyncContext.complete();
+        }
+    }
+
+    // runs on _requestExecutor
+    private void processAsync(AsyncContext asyncContext, HttpServletRequest req, HttpServletResponse resp,
+                              String requestBody)
+    {
+        _logger.debug("entering");
+        try
+        {
+            doPost(req, resp, requestBody);
+        }
+        catch (Throwable e)
+        {
+            _logger.error(e.getMessage(), e);
+            writeErrorResponse(e.getMessage(), resp);
+        }
+        finally
+        {
+            asyncContext.complete();
+            _logger.debug("exiting");
+        }
+    }
+
+    /**
+     * Reports the end of an async request to onRequestComplete.
+     */
+    private class CompletionListener implements AsyncListener
+    {
+        private final HttpServletRequest _req;
+
+        private final HttpServletResponse _resp;
+
+        /**
+         * The value of System.nanoTime() when the request was taken up.
+         */
+        private final long _startNanos;
+
+        CompletionListener(HttpServletRequest req, HttpServletResponse resp, long startNanos)
+        {
+            _req = req;
+            _resp = resp;
+            _startNanos = startNanos;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event)
+        {
+            try
+            {
+                onRequestComplete(_req, _resp, System.nanoTime() - _startNanos);
+            }
+            catch (Throwable e)
+            {
+                _logger.error(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event)
+        {
+            // not expected since the timeout is disabled
+            _logger.warn("async request timed out");
+            event.getAsyncContext().complete();
+        }
+
+        @Override
+        public void onError(AsyncEvent event)
+        {
+            Throwable error = event.getThrowable();
+            _logger.warn("async request failed: " + (error == null ? null : error.getMessage()));
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event)
+        {
+            // async is not restarted
+        }
+    }
+
+    /**
+     * Called after the response to an asynchronously processed request is complete, on some container thread.
+     * Does nothing by default.
+     *
+     * @param req the request
+     * @param resp the response
+     * @param durationNanos the time from taking up the request until the response was complete
+     */
+    protected void onRequestComplete(HttpServletRequest req, HttpServletResponse resp, long durationNanos)
+    {
+    }
+
     private void writeErrorResponse(String errorMessage, HttpServletResponse resp)
+    {
+        writeErrorResponse(errorMessage, HttpStatus.INTERNAL_SERVER_ERROR_500, resp);
+    }
+
+    private void writeErrorResponse(String errorMessage, int status, HttpServletResponse resp)
     {
         _logger.debug("entering");
         byte[] responseBodyBytes =
                 UTF_8.encode(new ErrorJsonResponse(errorMessage).toString()).array();
 
         resp.setHeader("Content-Type", "application/json");
-        resp.setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+        resp.setStatus(status);
         try
         {
             resp.getOutputStream().write(responseBodyBytes);
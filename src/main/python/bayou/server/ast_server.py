@@ -39,6 +39,9 @@ def _handle_http_post_request_index(predictor):
     if request_type == 'generate asts':
         asts = _handle_generate_asts_request(request_dict, predictor)
         return Response(asts, mimetype="application/json")
+    elif request_type == 'generate asts batch':
+        results = _handle_generate_asts_batch_request(request_dict, predictor)
+        return Response(results, mimetype="application/json")
     elif request_type == 'shutdown':
         _shutdown()  # does not return
 
@@ -60,7 +63,21 @@ def _handle_generate_asts_request(request_dict, predictor):
     return asts
 
 
+# handle a batched asts generation request by generating asts for each evidence string of the batch, in order
+def _handle_generate_asts_batch_request(request_dict, predictor):
+
+    evidence_json_strs = request_dict['evidences']  # get the evidence strings from the request (each also JSON)
+
+    results = [_generate_asts_dict(evidence_json_str, predictor) for evidence_json_str in evidence_json_strs]
+    logging.debug(results)
+    return json.dumps({'results': results})
+
+
 def _generate_asts(evidence_json: str, predictor, okay_check=False):
+    return json.dumps(_generate_asts_dict(evidence_json, predictor, okay_check), indent=2)
+
+
+def _generate_asts_dict(evidence_json: str, predictor, okay_check=False):
     logging.debug("entering")
 
     js = json.loads(evidence_json)  # parse evidence as a JSON string
@@ -89,7 +106,7 @@ def _generate_asts(evidence_json: str, predictor, okay_check=False):
         okay_asts = asts
 
     logging.debug("exiting")
-    return json.dumps({'evidences': js, 'asts': okay_asts}, indent=2)
+    return {'evidences': js, 'asts': okay_asts}
 
 
 # Include in here any conditions that dictate whether an AST should be returned or not
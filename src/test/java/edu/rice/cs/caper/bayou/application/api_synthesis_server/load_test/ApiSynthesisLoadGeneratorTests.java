@@ -0,0 +1,154 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.load_test;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ApiSynthesisLoadGeneratorTests
+{
+    /**
+     * Starts a server that answers /apisynthesis like the synthesis server, rejecting every other request with 429.
+     */
+    private static Server startSynthesisServer(AtomicInteger requestCount) throws Exception
+    {
+        Server server = new Server(0);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+                if(requestCount.incrementAndGet() % 2 == 0)
+                {
+                    response.setStatus(429);
+                    response.getWriter().write(new JSONObject().put("success", false).toString());
+                    return;
+                }
+
+                response.setStatus(200);
+                response.getWriter().write(new JSONObject().put("success", true)
+                                                           .put("results", new JSONArray().put("program"))
+                                                           .toString());
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static int getPort(Server server)
+    {
+        return ((ServerConnector)server.getConnectors()[0]).getLocalPort();
+    }
+
+    private static void assertReport(ApiSynthesisLoadGenerator.Report report, AtomicInteger requestCount)
+    {
+        Assert.assertEquals(0, report.failedCount.get());
+        Assert.assertEquals(0, report.synthesisErrorCount.get());
+        Assert.assertTrue(report.okCount.get() > 0);
+        Assert.assertTrue(report.rejectedCount.get() > 0);
+        Assert.assertTrue(report.getRequestCount() <= requestCount.get()); // warmup requests are not reported
+        Assert.assertEquals(report.okCount.get(), report.latency.getCount());
+        Assert.assertTrue(report.getThroughput() > 0);
+    }
+
+    @Test
+    public void testClosedLoop() throws Exception
+    {
+        AtomicInteger requestCount = new AtomicInteger();
+        Server server = startSynthesisServer(requestCount);
+        try
+        {
+            List<RecordedRequest> requests = Collections.singletonList(new RecordedRequest("class A {}", 1));
+            ApiSynthesisLoadGenerator.Report report =
+                    new ApiSynthesisLoadGenerator("localhost", getPort(server), requests, 2, 0, 100, 500).run();
+
+            assertReport(report, requestCount);
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testOpenLoop() throws Exception
+    {
+        AtomicInteger requestCount = new AtomicInteger();
+        Server server = startSynthesisServer(requestCount);
+        try
+        {
+            List<RecordedRequest> requests = Collections.singletonList(new RecordedRequest("class A {}", 1));
+            ApiSynthesisLoadGenerator.Report report =
+                    new ApiSynthesisLoadGenerator("localhost", getPort(server), requests, 2, 40, 250, 500).run();
+
+            assertReport(report, requestCount);
+            Assert.assertEquals(30, requestCount.get()); // every 25ms for 750ms
+            Assert.assertEquals(20, report.getRequestCount());
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testReadLog() throws IOException
+    {
+        File log = File.createTempFile("requests", ".jsonl");
+        log.deleteOnExit();
+        Files.write(log.toPath(), Arrays.asList(
+                new JSONObject().put("code", "class A {}").put("max program count", 3).toString(),
+                "",
+                new JSONObject().put("searchCode", "class B {}").toString()), StandardCharsets.UTF_8);
+
+        List<RecordedRequest> requests = RecordedRequest.readLog(log);
+
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals("class A {}", requests.get(0).code);
+        Assert.assertEquals(3, requests.get(0).maxProgramCount);
+        Assert.assertEquals("class B {}", requests.get(1).code);
+        Assert.assertEquals(RecordedRequest.DEFAULT_MAX_PROGRAM_COUNT, requests.get(1).maxProgramCount);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadLogMalformed() throws IOException
+    {
+        File log = File.createTempFile("requests", ".jsonl");
+        log.deleteOnExit();
+        Files.write(log.toPath(), Collections.singletonList("{\"other\": 1}"), StandardCharsets.UTF_8);
+
+        RecordedRequest.readLog(log);
+    }
+}
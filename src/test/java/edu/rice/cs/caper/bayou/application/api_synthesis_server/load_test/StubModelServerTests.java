@@ -0,0 +1,93 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.load_test;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis.AstServerClient;
+import edu.rice.cs.caper.programming.ContentString;
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StubModelServerTests
+{
+    private static final JSONArray ASTS = new JSONArray().put(new JSONObject().put("probability", 0.5));
+
+    private static AstServerClient makeClient(StubModelServer server)
+    {
+        return new AstServerClient(new ContentString("localhost"), new NatNum32(server.getPort()),
+                                   new NatNum32(5000), new NatNum32(2));
+    }
+
+    @Test
+    public void testGenerateAsts() throws Exception
+    {
+        try(StubModelServer server = new StubModelServer(0, ASTS, 0);
+            AstServerClient client = makeClient(server))
+        {
+            JSONObject response = client.send(new JSONObject().put("request type", "generate asts")
+                                                              .put("evidence", "{\"apicalls\":[\"readLine\"]}"));
+
+            Assert.assertEquals("readLine", response.getJSONObject("evidences").getJSONArray("apicalls").get(0));
+            Assert.assertEquals(1, response.getJSONArray("asts").length());
+        }
+    }
+
+    @Test
+    public void testGenerateAstsBatch() throws Exception
+    {
+        try(StubModelServer server = new StubModelServer(0, ASTS, 0);
+            AstServerClient client = makeClient(server))
+        {
+            JSONArray evidences = new JSONArray().put("{\"apicalls\":[\"a\"]}").put("{\"apicalls\":[\"b\"]}");
+            JSONObject response = client.send(new JSONObject().put("request type", "generate asts batch")
+                                                              .put("evidences", evidences));
+
+            JSONArray results = response.getJSONArray("results");
+            Assert.assertEquals(2, results.length());
+            Assert.assertEquals("b", results.getJSONObject(1).getJSONObject("evidences").getJSONArray("apicalls")
+                                            .get(0));
+            Assert.assertEquals(1, results.getJSONObject(1).getJSONArray("asts").length());
+        }
+    }
+
+    @Test
+    public void testDelay() throws Exception
+    {
+        try(StubModelServer server = new StubModelServer(0, ASTS, 200);
+            AstServerClient client = makeClient(server))
+        {
+            long start = System.nanoTime();
+            client.send(new JSONObject().put("request type", "generate asts").put("evidence", "{}"));
+            Assert.assertTrue(System.nanoTime() - start >= 200000000);
+        }
+    }
+
+    @Test
+    public void testDelayPerEvidence() throws Exception
+    {
+        try(StubModelServer server = new StubModelServer(0, ASTS, 100);
+            AstServerClient client = makeClient(server))
+        {
+            JSONArray evidences = new JSONArray().put("{}").put("{}").put("{}");
+            long start = System.nanoTime();
+            client.send(new JSONObject().put("request type", "generate asts batch").put("evidences", evidences));
+            Assert.assertTrue(System.nanoTime() - start >= 300000000);
+            Assert.assertEquals(1, server.getRequestBodies().size());
+        }
+    }
+}
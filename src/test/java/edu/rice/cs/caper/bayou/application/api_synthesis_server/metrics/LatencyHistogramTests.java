@@ -0,0 +1,74 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTests
+{
+    @Test
+    public void testEmpty()
+    {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testSmallValuesAreExact()
+    {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for(int i = 1; i <= 50; i++)
+            histogram.record(i);
+
+        Assert.assertEquals(50, histogram.getCount());
+        Assert.assertEquals(25, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(50, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testPercentilesWithinPrecision()
+    {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for(long i = 1; i <= 1000; i++)
+            histogram.record(i * 1000000); // 1ms to 1s
+
+        assertWithinPrecision(500000000, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(990000000, histogram.getValueAtPercentile(99));
+        assertWithinPrecision(999000000, histogram.getValueAtPercentile(99.9));
+        Assert.assertEquals(1000000000, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(1000000000, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void testExtremeValues()
+    {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE / 2);
+
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(Long.MAX_VALUE / 2, histogram.getValueAtPercentile(100));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual)
+    {
+        Assert.assertTrue(actual + " is below " + expected, actual >= expected);
+        Assert.assertTrue(actual + " is too far above " + expected, actual <= expected * 1.04);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.metrics;
+
+import edu.rice.cs.caper.bayou.core.synthesizer.SynthesisException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class SynthesisMetricsTests
+{
+    @Test
+    public void testSketchOutcomes()
+    {
+        SynthesisMetrics metrics = new SynthesisMetrics();
+        metrics.sketchSynthesized(1000, 100, true);
+        metrics.sketchSynthesized(1000, 100, false);
+        metrics.sketchFailed(SynthesisException.TypeNotFoundDuringSearch, 1000);
+        metrics.sketchFailed(SynthesisException.TypeNotFoundDuringSearch, 1000);
+        metrics.sketchFailed(SynthesisException.MoreThanOneHole, 1000);
+
+        Assert.assertEquals(1, metrics.getSketchesSucceededCount());
+        Assert.assertEquals(1, metrics.getSketchesEmptyCount());
+        Assert.assertEquals(2, metrics.getSketchesFailedCount(SynthesisException.TypeNotFoundDuringSearch));
+        Assert.assertEquals(1, metrics.getSketchesFailedCount(SynthesisException.MoreThanOneHole));
+        Assert.assertEquals(0, metrics.getSketchesFailedCount(SynthesisException.InvalidKindOfType));
+        Assert.assertEquals(5, metrics.getSketchesTriedCount());
+        Assert.assertEquals(5, metrics.getStageLatency(SynthesisMetrics.Stage.SYNTHESIZE_SKETCH).getCount());
+        Assert.assertEquals(2, metrics.getStageLatency(SynthesisMetrics.Stage.DEAD_CODE_ELIMINATION).getCount());
+    }
+
+    @Test
+    public void testDeadCodeEliminationNotReachedIsNotRecorded()
+    {
+        SynthesisMetrics metrics = new SynthesisMetrics();
+        metrics.sketchSynthesized(1000, 0, false);
+
+        Assert.assertEquals(1, metrics.getStageLatency(SynthesisMetrics.Stage.SYNTHESIZE_SKETCH).getCount());
+        Assert.assertEquals(0, metrics.getStageLatency(SynthesisMetrics.Stage.DEAD_CODE_ELIMINATION).getCount());
+    }
+
+    @Test
+    public void testCacheLookups()
+    {
+        SynthesisMetrics metrics = new SynthesisMetrics();
+        metrics.recordCacheLookup(SynthesisMetrics.Cache.AST_RESPONSE, true);
+        metrics.recordCacheLookup(SynthesisMetrics.Cache.AST_RESPONSE, false);
+        metrics.recordCacheLookup(SynthesisMetrics.Cache.AST_RESPONSE, false);
+
+        Assert.assertEquals(1, metrics.getCacheHitCount(SynthesisMetrics.Cache.AST_RESPONSE));
+        Assert.assertEquals(2, metrics.getCacheMissCount(SynthesisMetrics.Cache.AST_RESPONSE));
+        Assert.assertEquals(0, metrics.getCacheHitCount(SynthesisMetrics.Cache.SYNTHESIS_RESULT));
+    }
+
+    @Test
+    public void testWrite() throws IOException
+    {
+        SynthesisMetrics metrics = new SynthesisMetrics();
+        metrics.getStageLatency(SynthesisMetrics.Stage.PARSE).record(2000000);
+        metrics.sketchFailed(SynthesisException.TypeNotFoundDuringSearch, 1000);
+        metrics.programFormatted(500, false);
+        metrics.recordCacheLookup(SynthesisMetrics.Cache.SYNTHESIS_RESULT, true);
+
+        StringWriter writer = new StringWriter();
+        metrics.write(writer);
+        String text = writer.toString();
+
+        Assert.assertTrue(text, text.contains("bayou_synthesis_stage_seconds_count{stage=\"parse\"} 1\n"));
+        Assert.assertTrue(text, text.contains("bayou_synthesis_stage_seconds_sum{stage=\"parse\"} 0.002\n"));
+        Assert.assertTrue(text, text.contains("bayou_synthesis_stage_seconds{stage=\"parse\",quantile=\"0.99\"} "));
+        Assert.assertTrue(text, text.contains("bayou_synthesis_stage_seconds_count{stage=\"format\"} 1\n"));
+        Assert.assertTrue(text, text.contains("bayou_synthesis_sketches_total{outcome=\"failed\"} 1\n"));
+        Assert.assertTrue(text, text.contains("bayou_synthesis_sketch_failures_total{error_id=\"1007\"} 1\n"));
+        Assert.assertTrue(text, text.contains("bayou_synthesis_format_failures_total 1\n"));
+        Assert.assertTrue(text, text.contains(
+                "bayou_synthesis_cache_lookups_total{cache=\"synthesis_result\",result=\"hit\"} 1\n"));
+
+        for(String line : text.split("\n"))
+            Assert.assertTrue(line, line.startsWith("# ") || line.matches("[a-z_]+(\\{[^}]*\\})? [0-9.E-]+"));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ApiSynthesizerResultCacheDecoratorTests
+{
+    @Test
+    public void testNormalizeWhitespace() throws Exception
+    {
+        String a = ApiSynthesizerResultCacheDecorator.normalize("class A {\n  void m() {\n    /// read file\n  }\n}");
+        String b = ApiSynthesizerResultCacheDecorator.normalize("class A { void m() {\n/// read file\n}   }");
+        Assert.assertEquals(a, b);
+
+        Assert.assertEquals(ApiSynthesizerResultCacheDecorator.normalize("int a;\n\n\n  int b;"),
+                            ApiSynthesizerResultCacheDecorator.normalize("int a;\n\nint b;"));
+    }
+
+    @Test
+    public void testNormalizeKeepsCommentsAndBlankLines() throws Exception
+    {
+        Assert.assertNotEquals(ApiSynthesizerResultCacheDecorator.normalize("class A { // a class\n }"),
+                               ApiSynthesizerResultCacheDecorator.normalize("class A { // my class\n }"));
+
+        Assert.assertNotEquals(ApiSynthesizerResultCacheDecorator.normalize("class A { /* hole */ }"),
+                               ApiSynthesizerResultCacheDecorator.normalize("class A { }"));
+
+        Assert.assertNotEquals(ApiSynthesizerResultCacheDecorator.normalize("int a;\n\nint b;"),
+                               ApiSynthesizerResultCacheDecorator.normalize("int a;\nint b;"));
+
+        Assert.assertNotEquals(ApiSynthesizerResultCacheDecorator.normalize("// a\n\nint b;"),
+                               ApiSynthesizerResultCacheDecorator.normalize("// a\nint b;"));
+    }
+
+    @Test
+    public void testNormalizeKeepsEvidenceAndStrings() throws Exception
+    {
+        Assert.assertNotEquals(ApiSynthesizerResultCacheDecorator.normalize("/// read file\n"),
+                               ApiSynthesizerResultCacheDecorator.normalize("/// read  file\n"));
+
+        Assert.assertNotEquals(ApiSynthesizerResultCacheDecorator.normalize("String s = \"a b\";"),
+                               ApiSynthesizerResultCacheDecorator.normalize("String s = \"a  b\";"));
+    }
+
+    @Test
+    public void testSynthesiseCached() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        ApiSynthesizer inner = (code, maxProgramCount) ->
+        {
+            calls.incrementAndGet();
+            return Collections.singletonList(code);
+        };
+
+        SynthesisResultCache cache = new SynthesisResultCache(new NatNum32(10000));
+        ApiSynthesizer synthesizer = new ApiSynthesizerResultCacheDecorator(inner, cache);
+
+        Iterable<String> first = synthesizer.synthesise("class A { /// read file\n }", new NatNum32(1));
+        Iterable<String> second = synthesizer.synthesise("class A {\n/// read file\n}", new NatNum32(1));
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(first, second);
+
+        synthesizer.synthesise("class A {\n/// read file\n}", new NatNum32(2)); // different max program count
+        Assert.assertEquals(2, calls.get());
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testSynthesiseCommentsNotShared() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        ApiSynthesizer inner = (code, maxProgramCount) ->
+        {
+            calls.incrementAndGet();
+            return Collections.singletonList(code);
+        };
+
+        ApiSynthesizer synthesizer = new ApiSynthesizerResultCacheDecorator(inner,
+                                                                            new SynthesisResultCache(new NatNum32(10000)));
+
+        synthesizer.synthesise("class A { // first user\n/// read file\n}", new NatNum32(1));
+        Iterable<String> second = synthesizer.synthesise("class A { // second user\n/// read file\n}", new NatNum32(1));
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(Collections.singletonList("class A { // second user\n/// read file\n}"), second);
+    }
+
+    @Test
+    public void testSynthesiseErrorNotCached() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        ApiSynthesizer inner = (code, maxProgramCount) ->
+        {
+            calls.incrementAndGet();
+            throw new SynthesiseException("parse error");
+        };
+
+        ApiSynthesizer synthesizer = new ApiSynthesizerResultCacheDecorator(inner,
+                                                                            new SynthesisResultCache(new NatNum32(10000)));
+        for(int i = 0; i < 2; i++)
+        {
+            try
+            {
+                synthesizer.synthesise("class A {}", new NatNum32(1));
+                Assert.fail();
+            }
+            catch (SynthesiseException e)
+            {
+                // expected
+            }
+        }
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testSynthesiseNoProgramNotCached() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        ApiSynthesizer inner = (code, maxProgramCount) ->
+        {
+            calls.incrementAndGet();
+            return new UnsynthesizedResults("No sketches were generated by the model.");
+        };
+
+        SynthesisResultCache cache = new SynthesisResultCache(new NatNum32(10000));
+        ApiSynthesizer synthesizer = new ApiSynthesizerResultCacheDecorator(inner, cache);
+        for(int i = 0; i < 2; i++)
+        {
+            Iterable<String> results = synthesizer.synthesise("class A { /// read file\n }", new NatNum32(1));
+            Assert.assertEquals("No sketches were generated by the model.", results.iterator().next());
+        }
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.load_test.StubModelServer;
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class AstRequestBatcherTests
+{
+    private static AstRequestBatcher makeBatcher(StubModelServer server, int windowMs, int maxBatchSize)
+    {
+        return makeBatcher(server, windowMs, maxBatchSize, 5000);
+    }
+
+    private static AstRequestBatcher makeBatcher(StubModelServer server, int windowMs, int maxBatchSize,
+                                                 int maxNetworkWaitTimeMs)
+    {
+        AstServerEndpoint endpoint = AstServerEndpoint.parse("localhost:" + server.getPort(),
+                                                             new NatNum32(maxNetworkWaitTimeMs));
+        AstServerDispatcher dispatcher = new AstServerDispatcher(Collections.singletonList(endpoint),
+                                                                 new NatNum32(3), new NatNum32(10000));
+        return new AstRequestBatcher(dispatcher, new NatNum32(windowMs), new NatNum32(maxBatchSize));
+    }
+
+    private static List<Future<JSONObject>> generateConcurrently(AstRequestBatcher batcher, ExecutorService executor,
+                                                                 int count)
+    {
+        List<Future<JSONObject>> results = new ArrayList<>();
+        for(int i = 0; i < count; i++)
+        {
+            String evidence = new JSONObject().put("id", i).toString();
+            results.add(executor.submit(() -> batcher.generateAsts(evidence)));
+        }
+        return results;
+    }
+
+    @Test
+    public void testGenerateAstsBatched() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try(StubModelServer server = new StubModelServer(0, new JSONArray(), 0))
+        {
+            // long window, so only a full batch gets sent in time
+            AstRequestBatcher batcher = makeBatcher(server, 60000, 4);
+            List<Future<JSONObject>> results = generateConcurrently(batcher, executor, 4);
+
+            for(int i = 0; i < 4; i++)
+                Assert.assertEquals(i, results.get(i).get(5, TimeUnit.SECONDS).getJSONObject("evidences").getInt("id"));
+
+            Assert.assertEquals(1, server.getRequestBodies().size());
+            JSONObject request = new JSONObject(server.getRequestBodies().get(0));
+            Assert.assertEquals("generate asts batch", request.getString("request type"));
+            Assert.assertEquals(4, request.getJSONArray("evidences").length());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGenerateAstsBatchSizeLimited() throws Exception
+    {
+        int count = 64, maxBatchSize = 3;
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        try(StubModelServer server = new StubModelServer(0, new JSONArray(), 0))
+        {
+            AstRequestBatcher batcher = makeBatcher(server, 200, maxBatchSize);
+            List<Future<JSONObject>> results = generateConcurrently(batcher, executor, count);
+
+            for(int i = 0; i < count; i++)
+                Assert.assertEquals(i, results.get(i).get(5, TimeUnit.SECONDS).getJSONObject("evidences").getInt("id"));
+
+            int evidenceCount = 0;
+            for(String body : server.getRequestBodies())
+            {
+                JSONObject request = new JSONObject(body);
+                int batchSize = request.has("evidences") ? request.getJSONArray("evidences").length() : 1;
+                Assert.assertTrue("batch of " + batchSize, batchSize <= maxBatchSize);
+                evidenceCount += batchSize;
+            }
+            Assert.assertEquals(count, evidenceCount);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGenerateAstsBatchSlowerThanOneInference() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try(StubModelServer server = new StubModelServer(0, new JSONArray(), 300))
+        {
+            // each inference fits the network wait time, but the whole batch takes about 1200ms
+            AstRequestBatcher batcher = makeBatcher(server, 60000, 4, 500);
+            List<Future<JSONObject>> results = generateConcurrently(batcher, executor, 4);
+
+            for(int i = 0; i < 4; i++)
+                Assert.assertEquals(i, results.get(i).get(5, TimeUnit.SECONDS).getJSONObject("evidences").getInt("id"));
+
+            Assert.assertEquals(1, server.getRequestBodies().size());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGenerateAstsSingle() throws Exception
+    {
+        try(StubModelServer server = new StubModelServer(0, new JSONArray(), 0))
+        {
+            AstRequestBatcher batcher = makeBatcher(server, 10, 4);
+            JSONObject result = batcher.generateAsts(new JSONObject().put("id", 7).toString());
+
+            Assert.assertEquals(7, result.getJSONObject("evidences").getInt("id"));
+            JSONObject request = new JSONObject(server.getRequestBodies().get(0));
+            Assert.assertEquals("generate asts", request.getString("request type"));
+        }
+    }
+
+    @Test
+    public void testGenerateAstsBatchFailure() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try(StubModelServer server = new StubModelServer(0, new JSONArray(), 0))
+        {
+            server.setResponseStatus(500);
+            AstRequestBatcher batcher = makeBatcher(server, 60000, 2);
+
+            for(Future<JSONObject> result : generateConcurrently(batcher, executor, 2))
+            {
+                try
+                {
+                    result.get(5, TimeUnit.SECONDS);
+                    Assert.fail();
+                }
+                catch (ExecutionException e)
+                {
+                    Assert.assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+            Assert.assertEquals(1, server.getRequestBodies().size());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AstResponseCacheTests
+{
+    private static JSONObject makeResponse(String marker)
+    {
+        return new JSONObject().put("marker", marker).put("asts", new JSONArray());
+    }
+
+    @Test
+    public void testCanonicalize()
+    {
+        String a = AstResponseCache.canonicalize("{\"apicalls\":[\"readLine\"],\"types\":[],\"keywords\":[\"read\"]}");
+        String b = AstResponseCache.canonicalize("{\"keywords\":[\"read\"],\"types\":[],\"apicalls\":[\"readLine\"]}");
+        Assert.assertEquals(a, b);
+
+        String c = AstResponseCache.canonicalize("{\"keywords\":[\"file\"],\"types\":[],\"apicalls\":[\"readLine\"]}");
+        Assert.assertNotEquals(a, c);
+    }
+
+    @Test
+    public void testGetPut()
+    {
+        AstResponseCache cache = new AstResponseCache(new NatNum32(10), new NatNum32(60000), null);
+
+        Assert.assertNull(cache.get("{\"a\":1,\"b\":2}"));
+        cache.put("{\"a\":1,\"b\":2}", makeResponse("x"));
+        Assert.assertEquals("x", cache.get("{\"b\":2,\"a\":1}").getString("marker"));
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed()
+    {
+        AstResponseCache cache = new AstResponseCache(new NatNum32(2), new NatNum32(60000), null);
+
+        cache.put("{\"a\":1}", makeResponse("1"));
+        cache.put("{\"a\":2}", makeResponse("2"));
+        cache.get("{\"a\":1}"); // 2 is now least recently used
+        cache.put("{\"a\":3}", makeResponse("3"));
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertNotNull(cache.get("{\"a\":1}"));
+        Assert.assertNull(cache.get("{\"a\":2}"));
+        Assert.assertNotNull(cache.get("{\"a\":3}"));
+    }
+
+    @Test
+    public void testExpire()
+    {
+        AtomicLong now = new AtomicLong(0);
+        AstResponseCache cache = new AstResponseCache(new NatNum32(10), new NatNum32(1000), null, now::get);
+
+        cache.put("{\"a\":1}", makeResponse("1"));
+        now.set(999);
+        Assert.assertNotNull(cache.get("{\"a\":1}"));
+        now.set(1000);
+        Assert.assertNull(cache.get("{\"a\":1}"));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPersist() throws Exception
+    {
+        File path = File.createTempFile("astResponseCache", ".json");
+        try
+        {
+            Assert.assertTrue(path.delete()); // cache must start from a missing file
+
+            AstResponseCache cache = new AstResponseCache(new NatNum32(10), new NatNum32(60000), path);
+            cache.put("{\"a\":1}", makeResponse("1"));
+            cache.save();
+
+            AstResponseCache reloaded = new AstResponseCache(new NatNum32(10), new NatNum32(60000), path);
+            Assert.assertEquals("1", reloaded.get("{\"a\":1}").getString("marker"));
+        }
+        finally
+        {
+            path.delete();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.load_test.StubModelServer;
+import edu.rice.cs.caper.programming.ContentString;
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class AstServerClientTests
+{
+    private static StubModelServer startEmptyAstsServer() throws Exception
+    {
+        return new StubModelServer(0, request -> new JSONObject().put("evidences", new JSONObject())
+                                                                 .put("asts", new JSONArray()));
+    }
+
+    private static AstServerClient makeClient(StubModelServer server)
+    {
+        return new AstServerClient(new ContentString("localhost"), new NatNum32(server.getPort()),
+                                   new NatNum32(5000), new NatNum32(2));
+    }
+
+    @Test
+    public void testSend() throws Exception
+    {
+        try(StubModelServer server = new StubModelServer(0, request -> new JSONObject().put("echo", request));
+            AstServerClient client = makeClient(server))
+        {
+            JSONObject request = new JSONObject().put("request type", "generate asts").put("evidence", "{}");
+            JSONObject response = client.send(request);
+
+            Assert.assertEquals("generate asts", response.getJSONObject("echo").getString("request type"));
+            Assert.assertFalse(server.getRequestBodies().get(0).contains("\n")); // compact serialization
+            Assert.assertEquals(1, client.getWaitLatency().getCount());
+            Assert.assertEquals(1, client.getTransferLatency().getCount());
+        }
+    }
+
+    @Test
+    public void testSendReusesConnection() throws Exception
+    {
+        try(StubModelServer server = startEmptyAstsServer();
+            AstServerClient client = makeClient(server))
+        {
+            for(int i = 0; i < 3; i++)
+                client.send(new JSONObject().put("request type", "generate asts"));
+
+            Assert.assertEquals(3, server.getRequestBodies().size());
+            Assert.assertEquals(1, client.getConnectLatency().getCount());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testSendUnexpectedStatus() throws Exception
+    {
+        try(StubModelServer server = startEmptyAstsServer();
+            AstServerClient client = makeClient(server))
+        {
+            server.setResponseStatus(500);
+            client.send(new JSONObject());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.bayou.application.api_synthesis_server.load_test.StubModelServer;
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class AstServerDispatcherTests
+{
+    private static AstServerEndpoint makeEndpoint(int port, int concurrencyLimit)
+    {
+        return AstServerEndpoint.parse("localhost:" + port + "/" + concurrencyLimit, new NatNum32(5000));
+    }
+
+    private static StubModelServer startEmptyAstsServer() throws Exception
+    {
+        return new StubModelServer(0, request -> new JSONObject().put("evidences", new JSONObject())
+                                                                 .put("asts", new JSONArray()));
+    }
+
+    private static void await(CountDownLatch latch) throws IOException
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    @Test
+    public void testParseEndpoint()
+    {
+        AstServerEndpoint endpoint = AstServerEndpoint.parse("localhost:8084", new NatNum32(5000));
+        Assert.assertEquals("localhost:8084", endpoint.getAuthority());
+        Assert.assertEquals(1, endpoint.getConcurrencyLimit().AsInt);
+
+        Assert.assertEquals(4, AstServerEndpoint.parse("localhost:8084/4", new NatNum32(5000))
+                                                .getConcurrencyLimit().AsInt);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseEndpointBad()
+    {
+        AstServerEndpoint.parse("localhost", new NatNum32(5000));
+    }
+
+    @Test
+    public void testDispatchLeastOutstanding() throws Exception
+    {
+        AstServerEndpoint a = makeEndpoint(1, 2);
+        AstServerEndpoint b = makeEndpoint(2, 2);
+        AstServerDispatcher dispatcher = new AstServerDispatcher(Arrays.asList(a, b), new NatNum32(3),
+                                                                 new NatNum32(10000));
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<AstServerClient> busy = executor.submit(() -> dispatcher.dispatch(client ->
+            {
+                started.countDown();
+                await(release);
+                return client;
+            }));
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // whichever endpoint is busy, the next request must go to the other one
+            AstServerClient next = dispatcher.dispatch(client -> client);
+            release.countDown();
+            Assert.assertNotSame(busy.get(5, TimeUnit.SECONDS), next);
+            Assert.assertEquals(0, dispatcher.getOutstandingCount(a));
+            Assert.assertEquals(0, dispatcher.getOutstandingCount(b));
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDispatchWaitsForCapacity() throws Exception
+    {
+        AstServerEndpoint a = makeEndpoint(1, 1);
+        AstServerDispatcher dispatcher = new AstServerDispatcher(Collections.singletonList(a), new NatNum32(3),
+                                                                 new NatNum32(10000));
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            Future<Integer> first = executor.submit(() -> dispatcher.dispatch(client ->
+            {
+                started.countDown();
+                await(release);
+                return 1;
+            }));
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<Integer> second = executor.submit(() -> dispatcher.dispatch(client -> 2));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while(dispatcher.getQueueDepth() == 0 && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+
+            Assert.assertEquals(1, dispatcher.getQueueDepth());
+            Assert.assertFalse(second.isDone());
+
+            release.countDown();
+            Assert.assertEquals(1, (int)first.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(2, (int)second.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, dispatcher.getQueueDepth());
+            Assert.assertEquals(1, dispatcher.getMaxQueueDepth());
+            Assert.assertEquals(2, dispatcher.getQueueWaitLatency().getCount());
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDispatchUnlimitedIgnoresLimit() throws Exception
+    {
+        AstServerEndpoint a = makeEndpoint(1, 1);
+        AstServerDispatcher dispatcher = new AstServerDispatcher(Collections.singletonList(a), new NatNum32(3),
+                                                                 new NatNum32(10000));
+
+        int result = dispatcher.dispatch(client -> dispatcher.dispatchUnlimited(inner -> 7));
+        Assert.assertEquals(7, result);
+        Assert.assertEquals(0, dispatcher.getOutstandingCount(a));
+    }
+
+    @Test
+    public void testDispatchUnlimitedGetsConnectionAtLimit() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        try(StubModelServer server = new StubModelServer(0, request ->
+        {
+            if(request.getString("request type").equals("generate asts"))
+            {
+                try
+                {
+                    release.await(); // hold the endpoint's only regular connection
+                }
+                catch (InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+            return new JSONObject().put("evidences", new JSONObject()).put("asts", new JSONArray());
+        }))
+        {
+            AstServerEndpoint a = AstServerEndpoint.parse("localhost:" + server.getPort() + "/1", new NatNum32(3000));
+            AstServerDispatcher dispatcher = new AstServerDispatcher(Collections.singletonList(a), new NatNum32(3),
+                                                                     new NatNum32(10000));
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try
+            {
+                Future<JSONObject> first = executor.submit(() -> dispatcher.dispatch(
+                        client -> client.send(new JSONObject().put("request type", "generate asts"))));
+
+                long deadline = System.currentTimeMillis() + 5000;
+                while(server.getRequestBodies().isEmpty() && System.currentTimeMillis() < deadline)
+                    Thread.sleep(10);
+                Assert.assertEquals(1, server.getRequestBodies().size());
+
+                // the heartbeat must not wait for the pooled connection held by the first request
+                long start = System.currentTimeMillis();
+                dispatcher.dispatchUnlimited(client -> client.send(new JSONObject().put("request type", "heartbeat")));
+                Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+                Assert.assertFalse(dispatcher.isEjected(a));
+
+                release.countDown();
+                first.get(5, TimeUnit.SECONDS);
+            }
+            finally
+            {
+                release.countDown();
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testEjectFailingEndpoint() throws Exception
+    {
+        try(StubModelServer healthy = startEmptyAstsServer();
+            StubModelServer failing = startEmptyAstsServer())
+        {
+            failing.setResponseStatus(500);
+
+            AstServerEndpoint a = makeEndpoint(failing.getPort(), 1);
+            AstServerEndpoint b = makeEndpoint(healthy.getPort(), 1);
+            AstServerDispatcher dispatcher = new AstServerDispatcher(Arrays.asList(a, b), new NatNum32(2),
+                                                                     new NatNum32(60000));
+
+            int failures = 0;
+            for(int i = 0; i < 10; i++)
+            {
+                try
+                {
+                    dispatcher.dispatch(client -> client.send(new JSONObject().put("request type", "generate asts")));
+                }
+                catch (IOException e)
+                {
+                    failures++;
+                }
+            }
+
+            Assert.assertEquals(2, failures);
+            Assert.assertTrue(dispatcher.isEjected(a));
+            Assert.assertFalse(dispatcher.isEjected(b));
+            Assert.assertEquals(2, failing.getRequestBodies().size());
+            Assert.assertEquals(8, healthy.getRequestBodies().size());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.api_synthesis_server.synthesis;
+
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class SynthesisResultCacheTests
+{
+    @Test
+    public void testEvictLeastRecentlyUsed()
+    {
+        SynthesisResultCache cache = new SynthesisResultCache(new NatNum32(20));
+
+        cache.put("a", Collections.singletonList("123456789")); // 10 chars
+        cache.put("b", Collections.singletonList("123456789")); // 20 chars
+        cache.get("a"); // b is now least recently used
+        cache.put("c", Collections.singletonList("1234"));      // 25 chars, so b must go
+
+        Assert.assertEquals(15, cache.getCharCount());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testPutTooLarge()
+    {
+        SynthesisResultCache cache = new SynthesisResultCache(new NatNum32(5));
+        cache.put("a", Arrays.asList("123", "456"));
+
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testFlush()
+    {
+        SynthesisResultCache cache = new SynthesisResultCache(new NatNum32(100));
+        cache.put("a", Collections.singletonList("1"));
+        cache.put("b", Collections.singletonList("2"));
+
+        Assert.assertEquals(2, cache.flush());
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getCharCount());
+        Assert.assertNull(cache.get("a"));
+    }
+}
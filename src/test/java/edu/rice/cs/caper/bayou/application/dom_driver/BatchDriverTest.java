@@ -0,0 +1,119 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.dom_driver;
+
+import edu.rice.cs.caper.bayou.core.dom_driver.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+
+public class BatchDriverTest {
+
+    private Options getOptions() throws ParseException, IOException {
+        File projRoot = new File(System.getProperty("user.dir")).getParentFile().getParentFile().getParentFile();
+        String config = String.format("%s/src/test/resources/driver/config.json", projRoot.getAbsolutePath());
+        return new Options(new String[] { "-f", "batch", "-c", config });
+    }
+
+    @Test
+    public void testCheckpointResume() throws Exception {
+        File tmpDir = Files.createTempDirectory("batchDriver").toFile();
+        try {
+            // files that do not exist fail without needing a classpath
+            String missing1 = new File(tmpDir, "Missing1.java").getAbsolutePath();
+            String missing2 = new File(tmpDir, "Missing2.java").getAbsolutePath();
+            File checkpointFile = new File(tmpDir, "checkpoint.txt");
+
+            BatchDriver driver;
+            try (PrintWriter checkpoint = new PrintWriter(new FileWriter(checkpointFile, true))) {
+                driver = new BatchDriver(getOptions(), "", 2, 1, 60, null, null, checkpoint);
+                driver.execute(new BufferedReader(new StringReader(missing1 + "\n")), Collections.emptySet());
+            }
+            Assert.assertEquals(0, driver.numOk.get());
+            Assert.assertEquals(1, driver.numFailed.get());
+
+            Set<String> done = BatchDriver.readCheckpoint(checkpointFile);
+            Assert.assertEquals(Collections.singleton(missing1), done);
+
+            try (PrintWriter checkpoint = new PrintWriter(new FileWriter(checkpointFile, true))) {
+                driver = new BatchDriver(getOptions(), "", 2, 1, 60, null, null, checkpoint);
+                driver.execute(new BufferedReader(new StringReader(missing1 + "\n" + missing2 + "\n")), done);
+            }
+            Assert.assertEquals(1, driver.numSkipped.get());
+            Assert.assertEquals(1, driver.numFailed.get());
+            Assert.assertEquals(2, BatchDriver.readCheckpoint(checkpointFile).size());
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    @Test
+    public void testReadCheckpointIgnoresTruncatedLine() throws IOException {
+        File checkpointFile = File.createTempFile("checkpoint", ".txt");
+        try {
+            FileUtils.writeStringToFile(checkpointFile, "OK\tA.java\nTIMEOUT\tB.java\nFAI", "utf-8");
+            Set<String> done = BatchDriver.readCheckpoint(checkpointFile);
+            Assert.assertEquals(2, done.size());
+            Assert.assertTrue(done.contains("A.java"));
+            Assert.assertTrue(done.contains("B.java"));
+        } finally {
+            checkpointFile.delete();
+        }
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        File tmpDir = Files.createTempDirectory("batchDriver").toFile();
+        try {
+            File source = new File(tmpDir, "A.java");
+            FileUtils.writeStringToFile(source, "class A { }", "utf-8");
+            String list = source.getAbsolutePath() + "\n";
+            File manifestFile = new File(tmpDir, "manifest.txt");
+            String prefix = new File(tmpDir, "data").getAbsolutePath();
+
+            int[] expectedOk = { 1, 0, 1 };
+            for (int run = 0; run < 3; run++) {
+                if (run == 2)
+                    FileUtils.writeStringToFile(source, "class A { void m() { } }", "utf-8");
+
+                Options options = getOptions();
+                ExtractionManifest manifest = new ExtractionManifest(manifestFile, options.getConfigHash());
+                BatchDriver driver;
+                try (JsonLinesWriter output = new JsonLinesWriter(prefix, 1, 1)) {
+                    driver = new BatchDriver(options, "", 1, 1, 60, output, manifest, null);
+                    driver.execute(new BufferedReader(new StringReader(list)), Collections.emptySet());
+                }
+                manifest.save();
+
+                Assert.assertEquals(expectedOk[run], driver.numOk.get());
+                Assert.assertEquals(1 - expectedOk[run], driver.numUnchanged.get());
+            }
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+}
@@ -18,7 +18,9 @@ package edu.rice.cs.caper.bayou.application.dom_driver;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import edu.rice.cs.caper.bayou.core.dom_driver.Options;
 import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -27,6 +29,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DriverTest {
 
@@ -34,39 +38,42 @@ public class DriverTest {
         testExecute(input, output, "config");
     }
 
-    private void testExecute(String input, String output, String config)
-            throws ParseException, IOException {
-
-        File srcFolder;
-        {
-            File projRoot = new File(System.getProperty("user.dir")).getParentFile().getParentFile().getParentFile();
-            srcFolder = new File(projRoot.getAbsolutePath() + File.separator + "src");
-        }
+    private File getSrcFolder() {
+        File projRoot = new File(System.getProperty("user.dir")).getParentFile().getParentFile().getParentFile();
+        return new File(projRoot.getAbsolutePath() + File.separator + "src");
+    }
 
+    private String getClasspath() {
         File artifactsFolder;
         {
-            File mainResourcesFolder = new File(srcFolder.getAbsolutePath() + File.separator + "main" + File.separator +
-                    "resources");
+            File mainResourcesFolder = new File(getSrcFolder().getAbsolutePath() + File.separator + "main" +
+                    File.separator + "resources");
             artifactsFolder = new File(mainResourcesFolder + File.separator + "artifacts");
         }
 
-        String classpath;
-        {
-            File classesFolder = new File(artifactsFolder.getAbsolutePath() + File.separator + "classes");
-            File androidJar = new File(artifactsFolder.getAbsolutePath() + File.separator + "jar" + File.separator +
-                    "android.jar");
+        File classesFolder = new File(artifactsFolder.getAbsolutePath() + File.separator + "classes");
+        File androidJar = new File(artifactsFolder.getAbsolutePath() + File.separator + "jar" + File.separator +
+                "android.jar");
 
-            if(!classesFolder.exists())
-                throw new IllegalStateException();
+        if(!classesFolder.exists())
+            throw new IllegalStateException();
 
-            if(!androidJar.exists())
-                throw new IllegalStateException();
+        if(!androidJar.exists())
+            throw new IllegalStateException();
 
-            classpath = classesFolder.getAbsolutePath() + File.pathSeparator + androidJar.getAbsolutePath();
-        }
+        return classesFolder.getAbsolutePath() + File.pathSeparator + androidJar.getAbsolutePath();
+    }
 
-        String testDir = srcFolder.getAbsolutePath() + File.separator + "test" + File.separator + "resources" +
+    private String getTestDir() {
+        return getSrcFolder().getAbsolutePath() + File.separator + "test" + File.separator + "resources" +
                 File.separator + "driver";
+    }
+
+    private void testExecute(String input, String output, String config)
+            throws ParseException, IOException {
+
+        String classpath = getClasspath();
+        String testDir = getTestDir();
 
         // run the driver
         File inputFile = new File(String.format("%s/%s.java", testDir, input));
@@ -80,9 +87,13 @@ public class DriverTest {
                          "-o", tmpFile.getAbsolutePath()};
         new Driver(args).execute(classpath);
 
+        assertSameOutput(tmpFile, outputFile);
+    }
+
+    private void assertSameOutput(File outFile, File expFile) throws IOException {
         // match the output and expected JSON
-        String out = new String(Files.readAllBytes(Paths.get(tmpFile.getAbsolutePath())));
-        String exp = new String(Files.readAllBytes(Paths.get(outputFile.getAbsolutePath())));
+        String out = new String(Files.readAllBytes(Paths.get(outFile.getAbsolutePath())));
+        String exp = new String(Files.readAllBytes(Paths.get(expFile.getAbsolutePath())));
 
         JsonParser parser = new JsonParser();
         JsonArray expJSON = parser.parse(exp).getAsJsonObject().getAsJsonArray("programs");
@@ -290,4 +301,36 @@ public class DriverTest {
     public void test35() throws ParseException, IOException {
         testExecute("35f", "35o");
     }
+
+    @Test
+    public void test36() throws ParseException, IOException {
+        testExecute("36f", "36o");
+    }
+
+    @Test
+    public void testBatch() throws ParseException, IOException {
+        String classpath = getClasspath();
+        String testDir = getTestDir();
+
+        // copy the inputs, since outputs are written next to them
+        File tmpDir = Files.createTempDirectory("driverBatch").toFile();
+        List<String> files = new ArrayList<>();
+        for (String input : new String[] { "2f", "3f", "4f" }) {
+            File copy = new File(tmpDir, input + ".java");
+            FileUtils.copyFile(new File(String.format("%s/%s.java", testDir, input)), copy);
+            files.add(copy.getAbsolutePath());
+        }
+
+        Options options = new Options(new String[] { "-f", files.get(0),
+                                                     "-c", String.format("%s/config.json", testDir) });
+        try {
+            Driver.executeBatch(files, options, classpath, null);
+
+            assertSameOutput(new File(tmpDir, "2f.java.json"), new File(String.format("%s/2o.json", testDir)));
+            assertSameOutput(new File(tmpDir, "3f.java.json"), new File(String.format("%s/3o.json", testDir)));
+            assertSameOutput(new File(tmpDir, "4f.java.json"), new File(String.format("%s/4o.json", testDir)));
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
 }
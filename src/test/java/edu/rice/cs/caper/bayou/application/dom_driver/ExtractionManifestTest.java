@@ -0,0 +1,55 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.dom_driver;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class ExtractionManifestTest {
+
+    @Test
+    public void testSaveAndReload() throws IOException {
+        File tmpDir = Files.createTempDirectory("manifest").toFile();
+        try {
+            File source = new File(tmpDir, "A.java");
+            FileUtils.writeStringToFile(source, "class A { }", "utf-8");
+            String hash = ExtractionManifest.hashContent(source.getPath());
+
+            File manifestFile = new File(tmpDir, "manifest.txt");
+            ExtractionManifest manifest = new ExtractionManifest(manifestFile, "config1");
+            Assert.assertFalse(manifest.isCurrent(source.getPath(), hash));
+            manifest.update(source.getPath(), hash);
+            manifest.save();
+
+            Assert.assertTrue(new ExtractionManifest(manifestFile, "config1").isCurrent(source.getPath(), hash));
+
+            // a changed file or config is not current
+            FileUtils.writeStringToFile(source, "class A { void m() { } }", "utf-8");
+            String changedHash = ExtractionManifest.hashContent(source.getPath());
+            Assert.assertNotEquals(hash, changedHash);
+            Assert.assertFalse(new ExtractionManifest(manifestFile, "config1").isCurrent(source.getPath(),
+                    changedHash));
+            Assert.assertFalse(new ExtractionManifest(manifestFile, "config2").isCurrent(source.getPath(), hash));
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+}
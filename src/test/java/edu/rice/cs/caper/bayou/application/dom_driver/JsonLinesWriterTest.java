@@ -0,0 +1,72 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.application.dom_driver;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class JsonLinesWriterTest {
+
+    @Test
+    public void testShards() throws IOException {
+        File tmpDir = Files.createTempDirectory("jsonLines").toFile();
+        try {
+            String prefix = new File(tmpDir, "data").getAbsolutePath();
+            try (JsonLinesWriter writer = new JsonLinesWriter(prefix, 3, 2)) {
+                for (int i = 0; i < 20; i++)
+                    writer.write("File" + i + ".java", Arrays.asList("{\"file\":" + i + ",\"method\":1}",
+                                                                     "{\"file\":" + i + ",\"method\":2}"));
+                writer.write("Empty.java", Collections.emptyList());
+            }
+
+            List<String> allLines = new ArrayList<>();
+            for (int shard = 0; shard < 3; shard++) {
+                List<String> lines = Files.readAllLines(JsonLinesWriter.getShardFile(prefix, shard).toPath(),
+                        StandardCharsets.UTF_8);
+                // the lines of a file are adjacent in its shard
+                for (int i = 0; i < lines.size(); i += 2)
+                    Assert.assertEquals(lines.get(i).replace("\"method\":1", "\"method\":2"), lines.get(i + 1));
+                allLines.addAll(lines);
+            }
+            Assert.assertEquals(40, allLines.size());
+            Assert.assertFalse(JsonLinesWriter.getShardFile(prefix, 3).exists());
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteAfterClose() throws IOException {
+        File tmpDir = Files.createTempDirectory("jsonLines").toFile();
+        try {
+            JsonLinesWriter writer = new JsonLinesWriter(new File(tmpDir, "data").getAbsolutePath(), 1, 1);
+            writer.close();
+            writer.write("A.java", Collections.singletonList("{}"));
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+}
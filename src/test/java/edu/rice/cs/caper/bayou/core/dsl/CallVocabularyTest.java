@@ -0,0 +1,84 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.dsl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class CallVocabularyTest {
+
+    @Test
+    public void testIntern() {
+        CallVocabulary vocab = new CallVocabulary();
+        int a = vocab.intern("java.io.File.exists()");
+        int b = vocab.intern("java.io.File.delete()");
+
+        Assert.assertEquals(0, a);
+        Assert.assertEquals(1, b);
+        Assert.assertEquals(a, vocab.intern(new String("java.io.File.exists()")));
+        Assert.assertEquals("java.io.File.delete()", vocab.getCall(b));
+        Assert.assertEquals(2, vocab.size());
+    }
+
+    @Test
+    public void testCanonical() {
+        CallVocabulary vocab = new CallVocabulary();
+        String call = vocab.canonical("java.io.File.exists()");
+        Assert.assertSame(call, vocab.canonical(new String("java.io.File.exists()")));
+    }
+
+    @Test
+    public void testGrows() {
+        CallVocabulary vocab = new CallVocabulary();
+        for (int i = 0; i < 5000; i++)
+            Assert.assertEquals(i, vocab.intern("call" + i + "()"));
+        for (int i = 0; i < 5000; i++)
+            Assert.assertEquals("call" + i + "()", vocab.getCall(i));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        CallVocabulary vocab = new CallVocabulary();
+        for (String call : Arrays.asList("a()", "b(int)", "c(java.lang.String)"))
+            vocab.intern(call);
+
+        File file = File.createTempFile("vocab", ".json");
+        file.deleteOnExit();
+        vocab.save(file);
+
+        CallVocabulary loaded = new CallVocabulary();
+        loaded.load(file);
+        Assert.assertEquals(3, loaded.size());
+        for (int i = 0; i < 3; i++)
+            Assert.assertEquals(vocab.getCall(i), loaded.getCall(i));
+    }
+
+    @Test
+    public void testSequenceCallIds() {
+        CallVocabulary vocab = CallVocabulary.global();
+        Sequence seq = new Sequence(Arrays.asList("x()", "y()", "x()"));
+        int[] ids = seq.getCallIds();
+
+        Assert.assertEquals(3, ids.length);
+        Assert.assertEquals(vocab.intern("x()"), ids[0]);
+        Assert.assertEquals(vocab.intern("y()"), ids[1]);
+        Assert.assertEquals(ids[0], ids[2]);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.dsl;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SequenceTest {
+
+    @Test
+    public void testCopiesAreIndependent() {
+        Sequence a = new Sequence(Arrays.asList("x", "y"));
+        Sequence b = new Sequence(a);
+        a.addCall("z");
+        b.addCall("w");
+
+        Assert.assertEquals(Arrays.asList("x", "y", "z"), a.getCalls());
+        Assert.assertEquals(Arrays.asList("x", "y", "w"), b.getCalls());
+        Assert.assertEquals(3, b.size());
+        Assert.assertNotEquals(a, b);
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        Sequence a = new Sequence(Arrays.asList("x", "y"));
+        Sequence b = new Sequence();
+        b.addCall("x");
+        b.addCall("y");
+
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(a.hashCode(), b.hashCode());
+
+        // same hash code as a list-based sequence, so that hash based collections order sequences as before
+        int code = 17;
+        for (String call : Arrays.asList("x", "y"))
+            code = 31 * code + call.hashCode();
+        Assert.assertEquals(code, a.hashCode());
+    }
+
+    @Test
+    public void testIsSubsequenceOf() {
+        Sequence prefix = new Sequence(Arrays.asList("x", "y"));
+        Sequence seq = new Sequence(prefix);
+        seq.addCall("z");
+
+        Assert.assertTrue(prefix.isSubsequenceOf(seq));
+        Assert.assertTrue(new Sequence(Arrays.asList("x", "y")).isSubsequenceOf(seq));
+        Assert.assertFalse(new Sequence(Arrays.asList("y")).isSubsequenceOf(seq));
+        Assert.assertFalse(seq.isSubsequenceOf(prefix));
+    }
+
+    @Test
+    public void testJson() {
+        Gson gson = new GsonBuilder().serializeNulls().create();
+        List<Sequence> sequences = new ArrayList<>();
+        sequences.add(new Sequence(Arrays.asList("x", "y")));
+        sequences.add(new Sequence());
+
+        String json = gson.toJson(sequences);
+        Assert.assertEquals("[{\"calls\":[\"x\",\"y\"]},{\"calls\":[]}]", json);
+
+        List<Sequence> read = gson.fromJson(json, new TypeToken<List<Sequence>>(){}.getType());
+        Assert.assertEquals(sequences, read);
+    }
+}
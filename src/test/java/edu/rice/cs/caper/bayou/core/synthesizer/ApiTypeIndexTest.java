@@ -0,0 +1,111 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.*;
+
+public class ApiTypeIndexTest {
+
+    private ApiTypeIndex makeIndex() {
+        Map<String, List<String>> subTypes = new HashMap<>();
+        subTypes.put("java.util.AbstractList", Arrays.asList("java.util.Vector", "java.util.ArrayList"));
+        subTypes.put("java.io.Reader", Arrays.asList("java.io.FileReader", "java.io.BufferedReader",
+                "does.not.Exist"));
+        return new ApiTypeIndex(ApiTypeIndex.DEFAULT_PACKAGES, System.getProperty("java.version"), subTypes);
+    }
+
+    @Test
+    public void testGetSubTypesOf() {
+        ApiTypeIndex index = makeIndex();
+
+        Assert.assertEquals(Arrays.asList(ArrayList.class, Vector.class), index.getSubTypesOf(AbstractList.class));
+        Assert.assertEquals(Arrays.asList(java.io.BufferedReader.class, java.io.FileReader.class),
+                index.getSubTypesOf(java.io.Reader.class)); // unloadable class is skipped
+        Assert.assertTrue(index.getSubTypesOf(String.class).isEmpty());
+    }
+
+    @Test
+    public void testGetMembers() {
+        ApiTypeIndex index = new ApiTypeIndex(ApiTypeIndex.DEFAULT_PACKAGES, "", new HashMap<String, List<String>>());
+
+        ApiTypeIndex.ClassMembers members = index.getMembers(Integer.class);
+        Assert.assertSame(members, index.getMembers(Integer.class));
+        Assert.assertEquals(Integer.class.getConstructors().length, members.getConstructors().size());
+        for (Method m : members.getStaticFactories())
+            Assert.assertTrue(m.getName(), Integer.class.isAssignableFrom(m.getReturnType()) ||
+                    m.getReturnType() == int.class);
+        Assert.assertEquals(Integer.class.getMethods().length, members.getPublicMethods().size());
+        Assert.assertEquals(members.getConstructors().size() + members.getStaticFactories().size(),
+                index.getConstructorsAndFactories(Integer.class).size());
+    }
+
+    @Test
+    public void testGetMethodChains() {
+        ApiTypeIndex index = makeIndex();
+
+        List<List<Method>> chains = index.getMethodChains(java.io.File.class, String.class);
+        Assert.assertSame(chains, index.getMethodChains(java.io.File.class, String.class));
+        Assert.assertFalse(chains.isEmpty());
+        for (List<Method> chain : chains) {
+            Assert.assertTrue(chain.size() <= ExpressionChain.MAX_COMPOSE_LENGTH);
+            Assert.assertEquals(String.class, chain.get(chain.size() - 1).getReturnType());
+        }
+
+        // type variables are resolved only by the enumerator, so List.get(int) may produce anything
+        boolean found = false;
+        for (List<Method> chain : index.getMethodChains(List.class, String.class))
+            found |= chain.get(chain.size() - 1).getName().equals("get");
+        Assert.assertTrue(found);
+        Assert.assertTrue(index.getMethodChains(int.class, String.class).isEmpty());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        ApiTypeIndex index = makeIndex();
+        File file = File.createTempFile("api_type_index", ".bin");
+        try {
+            index.save(file);
+            ApiTypeIndex loaded = ApiTypeIndex.load(file);
+
+            Assert.assertEquals(index.getPackages(), loaded.getPackages());
+            Assert.assertEquals(index.getSubTypesOf(AbstractList.class), loaded.getSubTypesOf(AbstractList.class));
+            Assert.assertEquals(index.getSubTypesOf(java.io.Reader.class), loaded.getSubTypesOf(java.io.Reader.class));
+
+            // an up-to-date file is used instead of scanning the classpath
+            ApiTypeIndex warm = ApiTypeIndex.loadOrBuild(file, ApiTypeIndex.DEFAULT_PACKAGES);
+            Assert.assertEquals(index.getSubTypesOf(AbstractList.class), warm.getSubTypesOf(AbstractList.class));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadNotAnIndex() throws IOException {
+        File file = File.createTempFile("api_type_index", ".bin");
+        try {
+            java.nio.file.Files.write(file.toPath(), "not an index".getBytes());
+            ApiTypeIndex.load(file);
+        } finally {
+            file.delete();
+        }
+    }
+}
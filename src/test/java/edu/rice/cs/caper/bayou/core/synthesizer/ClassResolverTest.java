@@ -0,0 +1,55 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+public class ClassResolverTest {
+
+    @Test
+    public void testForClasspathReusesResolver() throws MalformedURLException {
+        URL[] classpath = new URL[] { new File(System.getProperty("java.io.tmpdir")).toURI().toURL() };
+        ClassResolver resolver = ClassResolver.forClasspath(classpath);
+        Assert.assertSame(resolver, ClassResolver.forClasspath(classpath.clone()));
+    }
+
+    @Test
+    public void testGetClass() {
+        ClassResolver resolver = new ClassResolver(getClass().getClassLoader());
+        Assert.assertEquals(String.class, resolver.getClass("java.lang.String"));
+        Assert.assertEquals(int.class, resolver.getClass("int"));
+        Assert.assertEquals(String[].class, resolver.getClass("java.lang.String[]"));
+        Assert.assertSame(resolver.getClass("java.util.ArrayList"), resolver.getClass("java.util.ArrayList"));
+    }
+
+    @Test
+    public void testGetClassNotFound() {
+        ClassResolver resolver = new ClassResolver(getClass().getClassLoader());
+        for (int i = 0; i < 2; i++) { // second lookup is served from the cache
+            try {
+                resolver.getClass("does.not.Exist");
+                Assert.fail();
+            } catch (SynthesisException e) {
+                Assert.assertEquals(SynthesisException.ClassNotFoundInLoader, e.getId());
+            }
+        }
+    }
+}
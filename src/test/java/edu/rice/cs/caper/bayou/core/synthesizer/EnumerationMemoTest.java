@@ -0,0 +1,83 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public class EnumerationMemoTest {
+
+    private Environment makeEnvironment(EnumerationMemo memo) {
+        ApiTypeIndex index = new ApiTypeIndex(ApiTypeIndex.DEFAULT_PACKAGES, "", new HashMap<String, List<String>>());
+        ClassResolver resolver = new ClassResolver(getClass().getClassLoader());
+        return new Environment(AST.newAST(AST.JLS8), new ArrayList<>(), Synthesizer.Mode.CONDITIONAL_PROGRAM_GENERATOR,
+                index, resolver, memo);
+    }
+
+    @Test
+    public void testScopeSignature() {
+        Scope scope = new Scope(new ArrayList<>());
+        String empty = scope.getSignature();
+
+        Variable var = scope.addVariable(new Type(String.class), new VariableProperties());
+        String withVar = scope.getSignature();
+        Assert.assertNotEquals(empty, withVar);
+        Assert.assertEquals(withVar, new Scope(scope).getSignature());
+
+        scope.removeVariable(var);
+        Assert.assertEquals(empty, scope.getSignature());
+    }
+
+    @Test
+    public void testSearchReusesExpansion() {
+        EnumerationMemo memo = new EnumerationMemo();
+
+        // same target in the same (empty) scope, as in two sketches of one request
+        TypedExpression first = makeEnvironment(memo).search(new SearchTarget(new Type(File.class)));
+        long hits = memo.getHits();
+        int expansions = memo.size();
+        Assert.assertTrue(expansions > 0);
+
+        TypedExpression second = makeEnvironment(memo).search(new SearchTarget(new Type(File.class)));
+        Assert.assertTrue(memo.getHits() > hits);
+        Assert.assertEquals(expansions, memo.size());
+        Assert.assertEquals(first.getExpression().toString(), second.getExpression().toString());
+    }
+
+    @Test
+    public void testKeyDistinguishesTypeArguments() throws Type.TypeParseException {
+        AST ast = AST.newAST(AST.JLS8);
+        ClassResolver resolver = new ClassResolver(getClass().getClassLoader());
+        Type listOfString = Type.fromString("java.util.List<java.lang.String>", ast, resolver);
+        Type listOfInteger = Type.fromString("java.util.List<java.lang.Integer>", ast, resolver);
+
+        EnumerationMemo.Key stringKey = new EnumerationMemo.Key(listOfString, 0, "");
+        Assert.assertEquals(stringKey,
+                new EnumerationMemo.Key(Type.fromString("java.util.List<java.lang.String>", ast, resolver), 0, ""));
+        Assert.assertNotEquals(stringKey, new EnumerationMemo.Key(listOfInteger, 0, ""));
+
+        // a failed expansion of one parameterization says nothing about another one
+        EnumerationMemo memo = new EnumerationMemo();
+        memo.put(stringKey, EnumerationMemo.Expansion.FAILED);
+        Assert.assertNull(memo.get(new EnumerationMemo.Key(listOfInteger, 0, "")));
+    }
+}
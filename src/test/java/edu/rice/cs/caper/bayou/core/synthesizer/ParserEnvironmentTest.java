@@ -0,0 +1,57 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.core.synthesizer;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class ParserEnvironmentTest {
+
+    private static String junitJarClasspath() throws Exception {
+        File junitJar = new File(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        return System.getProperty("java.io.tmpdir") + File.pathSeparator + junitJar.getAbsolutePath();
+    }
+
+    @Test
+    public void testForClasspathReusesEnvironment() throws Exception {
+        String classpath = junitJarClasspath();
+        ParserEnvironment environment = ParserEnvironment.forClasspath(classpath);
+
+        Assert.assertSame(environment, ParserEnvironment.forClasspath(classpath));
+        Assert.assertEquals(1, environment.getOpenJarCount()); // the directory is not a JAR
+        Assert.assertEquals(2, environment.getClasspathURLs().length);
+    }
+
+    @Test
+    public void testParsersShareEnvironment() throws Exception {
+        ParserEnvironment environment = ParserEnvironment.forClasspath(junitJarClasspath());
+
+        Parser first = new Parser("class A { }", environment);
+        Parser second = new Parser("class B { }", environment);
+        Assert.assertSame(first.getEnvironment(), second.getEnvironment());
+
+        for (String name : new String[] { "A", "B" }) {
+            CompilationUnit cu = (CompilationUnit) environment.newParser("class " + name + " { }").createAST(null);
+            TypeDeclaration type = (TypeDeclaration) cu.types().get(0);
+            Assert.assertEquals(name, type.getName().getIdentifier());
+            Assert.assertNotNull(type.resolveBinding());
+        }
+    }
+}
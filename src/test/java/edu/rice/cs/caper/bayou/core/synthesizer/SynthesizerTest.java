@@ -22,7 +22,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SynthesizerTest {
 
@@ -82,6 +85,26 @@ public class SynthesizerTest {
             Parser p = new Parser(resultProgram, classpath);
             p.parse(); // parse synthesized code and ensure no ParseException is thrown
         }
+
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Synthesizer synthesizerParallel = new Synthesizer(Synthesizer.Mode.CONDITIONAL_PROGRAM_GENERATOR,
+                    ApiTypeIndex.getShared(), executor, 4);
+            results = synthesizerParallel.execute(parser, asts);
+
+            Assert.assertTrue(results.size() > 0);
+            Assert.assertTrue(results.size() <= Synthesizer.MAX_PROGRAMS);
+            Assert.assertEquals(results.size(), new HashSet<>(results).size()); // deduplicated like sequential runs
+
+            for(String resultProgram : results) {
+                Assert.assertFalse(resultProgram.contains("Your intended program could not be synthesized"));
+                Parser p = new Parser(resultProgram, classpath);
+                p.parse(); // parse synthesized code and ensure no ParseException is thrown
+            }
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     @Test
@@ -1,29 +0,0 @@
-/*
-Copyright 2017 Rice University
-
-Licensed under the Apache License, Version 2.0 (the "License");
-you may not use this file except in compliance with the License.
-You may obtain a copy of the License at
-
-    http://www.apache.org/licenses/LICENSE-2.0
-
-Unless required by applicable law or agreed to in writing, software
-distributed under the License is distributed on an "AS IS" BASIS,
-WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
-See the License for the specific language governing permissions and
-limitations under the License.
-*/
-package edu.rice.cs.caper.bayou.programming.thread;
-
-import edu.rice.cs.caper.programming.numbers.NatNum32;
-import edu.rice.cs.caper.programming.thread.ThreadScheduler;
-import edu.rice.cs.caper.programming.thread.ThreadSchedulerFifoInterrupt;
-
-public class ThreadSchedulerFifoInterruptTest extends ThreadSchedulerTest
-{
-    @Override
-    protected ThreadScheduler makeScheduler()
-    {
-        return new ThreadSchedulerFifoInterrupt(new NatNum32(2));
-    }
-}
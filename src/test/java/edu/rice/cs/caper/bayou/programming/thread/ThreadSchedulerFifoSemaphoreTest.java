@@ -0,0 +1,83 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.programming.thread;
+
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import edu.rice.cs.caper.programming.thread.ThreadScheduler;
+import edu.rice.cs.caper.programming.thread.ThreadSchedulerFifoSemaphore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ThreadSchedulerFifoSemaphoreTest extends ThreadSchedulerTest
+{
+    @Override
+    protected ThreadScheduler makeScheduler()
+    {
+        return new ThreadSchedulerFifoSemaphore(new NatNum32(2));
+    }
+
+    @Test
+    public void interruptDoesNotSkipTurn() throws InterruptedException
+    {
+        ThreadSchedulerFifoSemaphore scheduler = new ThreadSchedulerFifoSemaphore(new NatNum32(1));
+
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> scheduler.schedule(() ->
+        {
+            holding.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new RuntimeException(e);
+            }
+            return null;
+        }));
+        holder.start();
+        Assert.assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        AtomicBoolean ranWhileHeld = new AtomicBoolean(false);
+        AtomicBoolean sawInterrupt = new AtomicBoolean(false);
+        Thread waiter = new Thread(() -> scheduler.schedule(() ->
+        {
+            ranWhileHeld.set(release.getCount() != 0);
+            sawInterrupt.set(Thread.currentThread().isInterrupted());
+            return null;
+        }));
+        waiter.start();
+
+        while(scheduler.getQueueLength() == 0)
+            Thread.sleep(1);
+
+        waiter.interrupt();
+        Thread.sleep(50);
+        Assert.assertTrue(waiter.isAlive()); // still waiting for its turn
+
+        release.countDown();
+        holder.join();
+        waiter.join();
+
+        Assert.assertFalse(ranWhileHeld.get());
+        Assert.assertTrue(sawInterrupt.get());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.programming.thread;
+
+import edu.rice.cs.caper.programming.thread.VirtualThreads;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+
+public class VirtualThreadsTest
+{
+    private static boolean jdkHasVirtualThreads()
+    {
+        try
+        {
+            Thread.class.getMethod("ofVirtual").invoke(null); // throws on JDK 19 and 20 unless preview is enabled
+            return true;
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return false;
+        }
+    }
+
+    @Test
+    public void isSupported()
+    {
+        Assert.assertEquals(jdkHasVirtualThreads(), VirtualThreads.isSupported());
+    }
+
+    @Test
+    public void newThreadPerTaskExecutor() throws Exception
+    {
+        if(!VirtualThreads.isSupported())
+        {
+            try
+            {
+                VirtualThreads.newThreadPerTaskExecutor("test-");
+                Assert.fail("expected UnsupportedOperationException");
+            }
+            catch (UnsupportedOperationException e)
+            {
+                // expected
+            }
+            return;
+        }
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        try
+        {
+            String name = executor.submit(() -> Thread.currentThread().getName()).get();
+            Assert.assertEquals("test-0", name);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package edu.rice.cs.caper.bayou.servlet;
+
+import edu.rice.cs.caper.programming.numbers.NatNum32;
+import edu.rice.cs.caper.servlet.SizeConstrainedPostBodyServlet;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class SizeConstrainedPostBodyServletTests
+{
+    private static final int MAX_BODY_BYTES = 16;
+
+    /**
+     * Responds with the request body and the name of the thread that processed it.
+     */
+    private static class EchoServlet extends SizeConstrainedPostBodyServlet
+    {
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        EchoServlet(Executor requestExecutor)
+        {
+            super(new NatNum32(MAX_BODY_BYTES), false, requestExecutor);
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp, String requestBody)
+                throws IOException
+        {
+            resp.setStatus(200);
+            resp.getOutputStream().write((Thread.currentThread().getName() + ":" + requestBody)
+                                                 .getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected void onRequestComplete(HttpServletRequest req, HttpServletResponse resp, long durationNanos)
+        {
+            completed.countDown();
+        }
+    }
+
+    private static class Response
+    {
+        final int status;
+
+        final String body;
+
+        Response(int status, String body)
+        {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static Server startServer(EchoServlet servlet, boolean asyncSupported) throws Exception
+    {
+        Server server = new Server(0);
+        ServletHandler handler = new ServletHandler();
+        ServletHolder holder = new ServletHolder(servlet);
+        holder.setAsyncSupported(asyncSupported);
+        handler.addServletWithMapping(holder, "/");
+        server.setHandler(handler);
+        server.start();
+        return server;
+    }
+
+    private static Response post(Server server, String body) throws IOException
+    {
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try(OutputStream out = connection.getOutputStream())
+        {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int status = connection.getResponseCode();
+        try(InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream())
+        {
+            return new Response(status, in == null ? "" : readAll(in));
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while((count = in.read(buffer)) != -1)
+            bytes.write(buffer, 0, count);
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testAsyncProcessedOnRequestExecutor() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "requests"));
+        EchoServlet servlet = new EchoServlet(executor);
+        Server server = startServer(servlet, true);
+        try
+        {
+            Response response = post(server, "hello");
+            Assert.assertEquals(200, response.status);
+            Assert.assertEquals("requests:hello", response.body);
+            Assert.assertTrue(servlet.completed.await(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            server.stop();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncBodyOfMaxSize() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "requests"));
+        Server server = startServer(new EchoServlet(executor), true);
+        try
+        {
+            Response response = post(server, "0123456789abcdef");
+            Assert.assertEquals(200, response.status);
+            Assert.assertEquals("requests:0123456789abcdef", response.body);
+        }
+        finally
+        {
+            server.stop();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncBodyTooLarge() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Server server = startServer(new EchoServlet(executor), true);
+        try
+        {
+            Response response = post(server, "0123456789abcdefg");
+            Assert.assertEquals(500, response.status);
+            Assert.assertTrue(response.body, response.body.contains("Request body too large"));
+        }
+        finally
+        {
+            server.stop();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncEmptyBody() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Server server = startServer(new EchoServlet(executor), true);
+        try
+        {
+            Response response = post(server, "");
+            Assert.assertEquals(500, response.status);
+            Assert.assertTrue(response.body, response.body.contains("Body may not be empty"));
+        }
+        finally
+        {
+            server.stop();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncRejected() throws Exception
+    {
+        Executor rejecting = runnable ->
+        {
+            throw new RejectedExecutionException();
+        };
+        Server server = startServer(new EchoServlet(rejecting), true);
+        try
+        {
+            Response response = post(server, "hello");
+            Assert.assertEquals(429, response.status);
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testSyncWhenAsyncNotSupported() throws Exception
+    {
+        Executor failing = runnable ->
+        {
+            throw new AssertionError("executor used for a request that does not support async");
+        };
+        Server server = startServer(new EchoServlet(failing), false);
+        try
+        {
+            Response response = post(server, "hello");
+            Assert.assertEquals(200, response.status);
+            Assert.assertTrue(response.body, response.body.endsWith(":hello"));
+            Assert.assertFalse(response.body, response.body.startsWith("requests:"));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+Copyright 2017 Rice University
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+// local methods called from many places, with recursion
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+class Test {
+    BufferedReader br;
+
+    public Test(String file) throws IOException {
+        br = new BufferedReader(new FileReader(file));
+        readAll();
+    }
+
+    public Test(FileReader reader) throws IOException {
+        br = new BufferedReader(reader);
+    }
+
+    public void readAll() throws IOException {
+        while (br.ready())
+            readOne();
+    }
+
+    public void readOne() throws IOException {
+        if (br.readLine() == null)
+            close();
+        else
+            readAll();
+    }
+
+    public void reset() throws IOException {
+        br.reset();
+        readOne();
+    }
+
+    public void close() throws IOException {
+        br.close();
+    }
+}
@@ -0,0 +1,28 @@
+#!/bin/bash
+
+# Copyright 2017 Rice University
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#    http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# Runs the synthesis benchmarks, reporting allocation rates along with throughput.
+# Any arguments are passed on to JMH, e.g., ./run.sh SynthesisBenchmark.parse -p program=TestIO1
+
+SCRIPT_DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+cd $SCRIPT_DIR
+
+mvn clean package
+if [ $? -ne 0 ]; then
+    exit 1
+fi
+
+java -jar target/benchmark-1.0-jar-with-dependencies.jar -prof gc -rf json -rff target/results.json "$@"